@@ -0,0 +1,87 @@
+package com.diplom.diplom.Client;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import com.diplom.diplom.Service.EmbeddingCache;
+
+/**
+ * Кэширующая обёртка над EmbeddingModel. Все методы интерфейса, в том числе
+ * пакетные вызовы из PgVectorStore и embed(query) из similaritySearch,
+ * сводятся к call(), поэтому кэшируются и векторы документов, и векторы
+ * запросов. В модель уходят только промахи, повторяющиеся в пачке тексты —
+ * один раз.
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final EmbeddingCache cache;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, EmbeddingCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        String model = request.getOptions() != null ? request.getOptions().getModel() : null;
+        List<String> texts = request.getInstructions();
+
+        float[][] vectors = new float[texts.size()][];
+        String[] keys = new String[texts.size()];
+        Map<String, String> missing = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            keys[i] = cache.key(model, texts.get(i));
+            vectors[i] = cache.get(keys[i]);
+            if (vectors[i] == null) {
+                missing.putIfAbsent(keys[i], texts.get(i));
+            }
+        }
+        if (missing.isEmpty()) {
+            return new EmbeddingResponse(toEmbeddings(vectors));
+        }
+
+        List<String> missingKeys = new ArrayList<>(missing.keySet());
+        EmbeddingResponse response = delegate.call(
+                new EmbeddingRequest(new ArrayList<>(missing.values()), request.getOptions()));
+        Map<String, float[]> loaded = new LinkedHashMap<>();
+        List<Embedding> results = response.getResults();
+        for (int i = 0; i < results.size(); i++) {
+            String key = missingKeys.get(results.get(i).getIndex() != null ? results.get(i).getIndex() : i);
+            loaded.put(key, results.get(i).getOutput());
+            cache.put(key, results.get(i).getOutput());
+        }
+        for (int i = 0; i < vectors.length; i++) {
+            if (vectors[i] == null) {
+                vectors[i] = loaded.get(keys[i]);
+            }
+        }
+        return new EmbeddingResponse(toEmbeddings(vectors), response.getMetadata());
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    private static List<Embedding> toEmbeddings(float[][] vectors) {
+        List<Embedding> embeddings = new ArrayList<>(vectors.length);
+        for (int i = 0; i < vectors.length; i++) {
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        return embeddings;
+    }
+}
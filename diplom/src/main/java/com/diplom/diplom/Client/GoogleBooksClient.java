@@ -0,0 +1,227 @@
+package com.diplom.diplom.Client;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+
+import com.diplom.diplom.Exception.ApiIntegrationException;
+import com.diplom.diplom.Metrics.OutboundCallMetrics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * HTTP-клиент Google Books поверх JDK HttpClient (HTTP/2, собственный пул
+ * соединений). Таймауты на соединение и чтение, не больше maxConcurrent
+ * одновременных запросов, повтор с экспоненциальной задержкой на 429/5xx и
+ * сетевые ошибки. Одинаковые запросы, пришедшие пока первый ещё выполняется,
+ * получают его результат вместо отдельного обращения к API.
+ */
+@Component
+@Slf4j
+public class GoogleBooksClient {
+
+    static final String CLIENT = "google_books";
+
+    private final RestClient restClient;
+    private final OutboundCallMetrics metrics;
+    private final String apiUrl;
+    private final String apiKey;
+    private final Semaphore permits;
+    private final Duration acquireTimeout;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+
+    private final ConcurrentMap<String, CompletableFuture<GoogleBooksVolumes>> inFlight = new ConcurrentHashMap<>();
+
+    public GoogleBooksClient(
+            OutboundCallMetrics metrics,
+            @Value("${google.books.api.url}") String apiUrl,
+            @Value("${google.books.api.key}") String apiKey,
+            @Value("${app.google-books.client.connect-timeout:PT2S}") Duration connectTimeout,
+            @Value("${app.google-books.client.read-timeout:PT5S}") Duration readTimeout,
+            @Value("${app.google-books.client.max-concurrent:8}") int maxConcurrent,
+            @Value("${app.google-books.client.acquire-timeout:PT2S}") Duration acquireTimeout,
+            @Value("${app.google-books.client.max-attempts:3}") int maxAttempts,
+            @Value("${app.google-books.client.initial-backoff:PT0.2S}") Duration initialBackoff,
+            @Value("${app.google-books.client.max-backoff:PT2S}") Duration maxBackoff) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+
+        this.restClient = RestClient.builder().requestFactory(requestFactory).build();
+        this.metrics = metrics;
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.acquireTimeout = acquireTimeout;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * GET volumes?q=... Ответ разбирается потоково, см. GoogleBooksResponseParser.
+     */
+    public GoogleBooksVolumes searchVolumes(String query, int startIndex, int maxResults) {
+        String requestKey = "q=" + URLEncoder.encode(query, StandardCharsets.UTF_8)
+                + "&langRestrict=ru"
+                + "&maxResults=" + maxResults
+                + "&startIndex=" + startIndex;
+
+        CompletableFuture<GoogleBooksVolumes> call = new CompletableFuture<>();
+        CompletableFuture<GoogleBooksVolumes> running = inFlight.putIfAbsent(requestKey, call);
+        if (running != null) {
+            log.debug("Запрос к Google Books уже выполняется, ждём его результат: {}", requestKey);
+            return await(running);
+        }
+        try {
+            call.complete(executeWithRetries(requestKey));
+        } catch (RuntimeException e) {
+            call.completeExceptionally(e);
+        } finally {
+            inFlight.remove(requestKey, call);
+        }
+        return await(call);
+    }
+
+    private GoogleBooksVolumes executeWithRetries(String requestKey) {
+        URI uri = URI.create(apiUrl + "?" + requestKey + "&key=" + apiKey);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                log.info("Запрос к Google Books API: {}?{}", apiUrl, requestKey);
+                return executeOnce(uri);
+            } catch (RetryableResponseException e) {
+                if (attempt >= maxAttempts) {
+                    throw new ApiIntegrationException(
+                            "Google Books API ответил " + e.status.value() + " после " + attempt + " попыток", e);
+                }
+                sleep(e.retryAfter != null ? e.retryAfter : backoff(attempt), attempt, e.getMessage());
+            } catch (ResourceAccessException e) {
+                if (attempt >= maxAttempts) {
+                    throw new ApiIntegrationException("Google Books API недоступен: " + e.getMessage(), e);
+                }
+                sleep(backoff(attempt), attempt, e.getMessage());
+            }
+        }
+    }
+
+    private GoogleBooksVolumes executeOnce(URI uri) {
+        acquirePermit();
+        try {
+            GoogleBooksVolumes body = metrics.record(CLIENT, "volumes", () -> restClient.get()
+                    .uri(uri)
+                    .exchange((request, response) -> {
+                        HttpStatusCode status = response.getStatusCode();
+                        if (status.value() == 429 || status.is5xxServerError()) {
+                            throw new RetryableResponseException(status,
+                                    parseRetryAfter(response.getHeaders().getFirst("Retry-After")));
+                        }
+                        if (status.isError()) {
+                            throw new ApiIntegrationException("Google Books API ответил " + status.value(),
+                                    null);
+                        }
+                        try {
+                            return GoogleBooksResponseParser.parse(response.getBody());
+                        } catch (JsonProcessingException e) {
+                            // Битый JSON повтором не исправить, в отличие от обрыва соединения
+                            throw new ApiIntegrationException("Некорректный ответ Google Books API", e);
+                        }
+                    }));
+            recordItems(body);
+            return body;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void recordItems(GoogleBooksVolumes body) {
+        metrics.recordSize("bookshelf.google.items", "Книг в ответе Google Books", CLIENT, body.items().size());
+    }
+
+    private void acquirePermit() {
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new ApiIntegrationException("Слишком много одновременных запросов к Google Books API", null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiIntegrationException("Ожидание запроса к Google Books API прервано", e);
+        }
+    }
+
+    /**
+     * Экспоненциальная задержка с "полным джиттером", чтобы повторы разных
+     * запросов не приходили в API одновременно.
+     */
+    private Duration backoff(int attempt) {
+        long ceiling = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempt - 1, 16));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+    }
+
+    private void sleep(Duration delay, int attempt, String reason) {
+        Duration capped = delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+        log.warn("Google Books API: попытка {} не удалась ({}), повтор через {} мс", attempt, reason,
+                capped.toMillis());
+        try {
+            Thread.sleep(capped.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiIntegrationException("Повтор запроса к Google Books API прерван", e);
+        }
+    }
+
+    private static Duration parseRetryAfter(String header) {
+        if (header == null) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(header.trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static GoogleBooksVolumes await(CompletableFuture<GoogleBooksVolumes> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static final class RetryableResponseException extends RuntimeException {
+        private final transient HttpStatusCode status;
+        private final transient Duration retryAfter;
+
+        private RetryableResponseException(HttpStatusCode status, Duration retryAfter) {
+            super("HTTP " + status.value());
+            this.status = status;
+            this.retryAfter = retryAfter;
+        }
+    }
+}
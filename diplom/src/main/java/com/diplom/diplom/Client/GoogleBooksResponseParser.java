@@ -0,0 +1,183 @@
+package com.diplom.diplom.Client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Потоковый разбор ответа volumes на Jackson JsonParser: материализуются только
+ * поля из GoogleBooksVolumes, всё остальное (saleInfo, accessInfo, searchInfo,
+ * panelization...) пропускается через skipChildren без построения дерева.
+ * Поля неожиданного типа пропускаются, а не роняют разбор всей страницы.
+ */
+public final class GoogleBooksResponseParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private GoogleBooksResponseParser() {
+    }
+
+    public static GoogleBooksVolumes parse(InputStream body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            return parse(parser);
+        }
+    }
+
+    public static GoogleBooksVolumes parse(byte[] body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            return parse(parser);
+        }
+    }
+
+    private static GoogleBooksVolumes parse(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return GoogleBooksVolumes.EMPTY;
+        }
+        int totalItems = 0;
+        List<GoogleBooksVolumes.Volume> items = List.of();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "totalItems" -> totalItems = parser.getValueAsInt(0);
+                case "items" -> items = value == JsonToken.START_ARRAY ? readVolumes(parser) : skip(parser, List.of());
+                default -> parser.skipChildren();
+            }
+        }
+        return new GoogleBooksVolumes(totalItems, items);
+    }
+
+    private static List<GoogleBooksVolumes.Volume> readVolumes(JsonParser parser) throws IOException {
+        List<GoogleBooksVolumes.Volume> volumes = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String id = null;
+            GoogleBooksVolumes.VolumeInfo volumeInfo = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "id" -> id = parser.getValueAsString();
+                    case "volumeInfo" -> volumeInfo = value == JsonToken.START_OBJECT
+                            ? readVolumeInfo(parser)
+                            : skip(parser, null);
+                    default -> parser.skipChildren();
+                }
+            }
+            volumes.add(new GoogleBooksVolumes.Volume(id, volumeInfo));
+        }
+        return volumes;
+    }
+
+    private static GoogleBooksVolumes.VolumeInfo readVolumeInfo(JsonParser parser) throws IOException {
+        String title = null;
+        List<String> authors = null;
+        String description = null;
+        List<String> categories = null;
+        Integer pageCount = null;
+        String publishedDate = null;
+        List<GoogleBooksVolumes.IndustryIdentifier> identifiers = null;
+        GoogleBooksVolumes.ImageLinks imageLinks = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "title" -> title = scalar(parser);
+                case "authors" -> authors = readStrings(parser);
+                case "description" -> description = scalar(parser);
+                case "categories" -> categories = readStrings(parser);
+                case "pageCount" -> pageCount = value == JsonToken.VALUE_NUMBER_INT ? parser.getIntValue() : skip(parser, null);
+                case "publishedDate" -> publishedDate = scalar(parser);
+                case "industryIdentifiers" -> identifiers = readIdentifiers(parser);
+                case "imageLinks" -> imageLinks = readImageLinks(parser);
+                default -> parser.skipChildren();
+            }
+        }
+        return new GoogleBooksVolumes.VolumeInfo(title, authors, description, categories, pageCount,
+                publishedDate, identifiers, imageLinks);
+    }
+
+    private static List<GoogleBooksVolumes.IndustryIdentifier> readIdentifiers(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            return skip(parser, null);
+        }
+        List<GoogleBooksVolumes.IndustryIdentifier> identifiers = new ArrayList<>(2);
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String type = null;
+            String identifier = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "type" -> type = scalar(parser);
+                    case "identifier" -> identifier = scalar(parser);
+                    default -> parser.skipChildren();
+                }
+            }
+            identifiers.add(new GoogleBooksVolumes.IndustryIdentifier(type, identifier));
+        }
+        return identifiers;
+    }
+
+    private static GoogleBooksVolumes.ImageLinks readImageLinks(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            return skip(parser, null);
+        }
+        String smallThumbnail = null;
+        String thumbnail = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "smallThumbnail" -> smallThumbnail = scalar(parser);
+                case "thumbnail" -> thumbnail = scalar(parser);
+                default -> parser.skipChildren();
+            }
+        }
+        return new GoogleBooksVolumes.ImageLinks(smallThumbnail, thumbnail);
+    }
+
+    private static List<String> readStrings(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            return skip(parser, null);
+        }
+        List<String> values = new ArrayList<>(2);
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            String value = scalar(parser);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Строковое значение скаляра; объект или массив на месте строки пропускается.
+     */
+    private static String scalar(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        return token == JsonToken.VALUE_NULL ? null : parser.getText();
+    }
+
+    private static <T> T skip(JsonParser parser, T fallback) throws IOException {
+        parser.skipChildren();
+        return fallback;
+    }
+}
@@ -0,0 +1,52 @@
+package com.diplom.diplom.Client;
+
+import java.util.List;
+
+/**
+ * Ответ volumes Google Books — только те поля, которые мы реально используем.
+ * Заполняется потоковым GoogleBooksResponseParser.
+ */
+public record GoogleBooksVolumes(int totalItems, List<Volume> items) {
+
+    public static final GoogleBooksVolumes EMPTY = new GoogleBooksVolumes(0, List.of());
+
+    public record Volume(String id, VolumeInfo volumeInfo) {
+    }
+
+    public record VolumeInfo(
+            String title,
+            List<String> authors,
+            String description,
+            List<String> categories,
+            Integer pageCount,
+            String publishedDate,
+            List<IndustryIdentifier> industryIdentifiers,
+            ImageLinks imageLinks) {
+
+        /**
+         * ISBN-13, если он есть, иначе ISBN-10, иначе первый идентификатор
+         * (у старых изданий бывает только OTHER).
+         */
+        public String preferredIsbn() {
+            if (industryIdentifiers == null || industryIdentifiers.isEmpty()) {
+                return null;
+            }
+            String isbn10 = null;
+            for (IndustryIdentifier identifier : industryIdentifiers) {
+                if ("ISBN_13".equals(identifier.type())) {
+                    return identifier.identifier();
+                }
+                if (isbn10 == null && "ISBN_10".equals(identifier.type())) {
+                    isbn10 = identifier.identifier();
+                }
+            }
+            return isbn10 != null ? isbn10 : industryIdentifiers.get(0).identifier();
+        }
+    }
+
+    public record IndustryIdentifier(String type, String identifier) {
+    }
+
+    public record ImageLinks(String smallThumbnail, String thumbnail) {
+    }
+}
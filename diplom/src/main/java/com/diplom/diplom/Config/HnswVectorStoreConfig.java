@@ -0,0 +1,53 @@
+package com.diplom.diplom.Config;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.diplom.diplom.Search.HnswIndex;
+import com.diplom.diplom.Search.HnswVectorStore;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Векторы в процессе приложения вместо таблицы vector_store: включается
+ * spring.ai.vectorstore.type=hnsw, автоконфигурация pgvector при этом не
+ * срабатывает. Файл индекса — единственное хранилище векторов в этом режиме;
+ * если он потерян, векторы восстанавливаются перегенерацией
+ * (POST /api/v1/admin/regenerate-embeddings), эмбеддинги в основном берутся из кэша.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.ai.vectorstore.type", havingValue = "hnsw")
+@Slf4j
+public class HnswVectorStoreConfig {
+
+    @Bean(destroyMethod = "close")
+    public HnswIndex hnswIndex(
+            MeterRegistry meterRegistry,
+            @Value("${app.vector.hnsw.path:data/vector-index.hnsw}") Path path,
+            @Value("${app.vector.hnsw.dimensions:768}") int dimensions,
+            @Value("${app.vector.hnsw.m:16}") int m,
+            @Value("${app.vector.hnsw.ef-construction:100}") int efConstruction,
+            @Value("${app.vector.hnsw.compact-ratio:0.3}") double compactRatio) throws IOException {
+        HnswIndex index = HnswIndex.open(path, new HnswIndex.Params(dimensions, m, efConstruction, compactRatio));
+        Gauge.builder("bookshelf.vector.hnsw.size", index, HnswIndex::size)
+                .description("Векторов в индексе HNSW")
+                .register(meterRegistry);
+        log.info("Индекс HNSW {} открыт, векторов: {}", path, index.size());
+        return index;
+    }
+
+    @Bean
+    public VectorStore vectorStore(EmbeddingModel embeddingModel, HnswIndex hnswIndex,
+            @Value("${app.search.vector.ef-search:40}") int defaultEfSearch) {
+        return new HnswVectorStore(embeddingModel, hnswIndex, defaultEfSearch);
+    }
+}
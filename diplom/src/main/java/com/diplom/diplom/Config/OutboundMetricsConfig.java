@@ -0,0 +1,44 @@
+package com.diplom.diplom.Config;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.diplom.diplom.Client.CachingEmbeddingModel;
+import com.diplom.diplom.Metrics.MeteredEmbeddingModel;
+import com.diplom.diplom.Metrics.MeteredVectorStore;
+import com.diplom.diplom.Metrics.OutboundCallMetrics;
+import com.diplom.diplom.Service.EmbeddingCache;
+
+@Configuration
+public class OutboundMetricsConfig {
+
+    /**
+     * Оборачивает бины Spring AI из автоконфигурации в метрики. Метод static,
+     * чтобы BeanPostProcessor не тянул за собой раннюю инициализацию конфигурации.
+     * Кэш эмбеддингов стоит перед метриками, поэтому bookshelf.outbound.calls
+     * считает только реальные обращения к модели.
+     */
+    @Bean
+    public static BeanPostProcessor outboundMetricsPostProcessor(ObjectProvider<OutboundCallMetrics> metrics,
+            ObjectProvider<EmbeddingCache> embeddingCache) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof EmbeddingModel embeddingModel && !(bean instanceof MeteredEmbeddingModel)
+                        && !(bean instanceof CachingEmbeddingModel)) {
+                    EmbeddingModel metered = new MeteredEmbeddingModel(embeddingModel, metrics.getObject());
+                    EmbeddingCache cache = embeddingCache.getIfAvailable();
+                    return cache != null ? new CachingEmbeddingModel(metered, cache) : metered;
+                }
+                if (bean instanceof VectorStore vectorStore && !(bean instanceof MeteredVectorStore)) {
+                    return new MeteredVectorStore(vectorStore, metrics.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
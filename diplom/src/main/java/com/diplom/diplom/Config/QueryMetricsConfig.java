@@ -0,0 +1,58 @@
+package com.diplom.diplom.Config;
+
+import javax.sql.DataSource;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.diplom.diplom.Metrics.HibernateEntityCounter;
+import com.diplom.diplom.Metrics.JdbcQueryCounter;
+import com.diplom.diplom.Metrics.QueryMetricsInterceptor;
+
+import lombok.RequiredArgsConstructor;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+
+@Configuration
+@RequiredArgsConstructor
+public class QueryMetricsConfig implements WebMvcConfigurer {
+
+    private final QueryMetricsInterceptor queryMetricsInterceptor;
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCounterCustomizer() {
+        return properties -> properties.put(AvailableSettings.INTERCEPTOR, new HibernateEntityCounter());
+    }
+
+    /**
+     * Оборачивает DataSource в datasource-proxy: SQL считаются на уровне JDBC,
+     * поэтому в статистику попадают и запросы через JdbcTemplate (pgvector,
+     * куски текста, фрагменты, book_neighbours), а не только Hibernate.
+     * Метод static — постпроцессор создаётся раньше остальных бинов конфигурации.
+     */
+    @Bean
+    public static BeanPostProcessor queryCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .name(beanName)
+                            .listener(new JdbcQueryCounter())
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(queryMetricsInterceptor).addPathPatterns("/api/**");
+    }
+}
@@ -1,17 +1,23 @@
 package com.diplom.diplom.Controller;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 
+import com.diplom.diplom.Entity.JobType;
+import com.diplom.diplom.Entity.DTO.BackgroundJobDTO;
 import com.diplom.diplom.Entity.DTO.BookCreateUpdateDTO;
 import com.diplom.diplom.Entity.DTO.BookReadDTO;
+import com.diplom.diplom.Entity.DTO.EmbeddingQueueStatusDTO;
+import com.diplom.diplom.Entity.DTO.EmbeddingTaskDTO;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.diplom.diplom.Job.JobRunner;
 import com.diplom.diplom.Service.BookService;
+import com.diplom.diplom.Service.EmbeddingOutboxService;
 
 import lombok.RequiredArgsConstructor;
 
@@ -21,12 +27,52 @@ import lombok.RequiredArgsConstructor;
 public class AdminController {
 
     private final BookService bookService;
+    private final EmbeddingOutboxService embeddingOutboxService;
+    private final JobRunner jobRunner;
 
+    /**
+     * Перегенерация идёт фоновой задачей, прогресс — GET /api/v1/admin/jobs/{id}.
+     */
     @PostMapping("/regenerate-embeddings")
-    public ResponseEntity<String> regenerateEmbeddings() {
-        // Лучше запускать асинхронно, если книг много, но для простоты можно синхронно
-        bookService.regenerateAllEmbeddings();
-        return ResponseEntity.ok("Процесс перегенерации векторов запущен/завершен.");
+    public ResponseEntity<BackgroundJobDTO> regenerateEmbeddings() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(BackgroundJobDTO.toDTO(jobRunner.submit(JobType.EMBEDDING_REINDEX, null)));
+    }
+
+    @PostMapping("/reindex-search")
+    public ResponseEntity<BackgroundJobDTO> reindexSearch() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(BackgroundJobDTO.toDTO(jobRunner.submit(JobType.SEARCH_REINDEX, null)));
+    }
+
+    /**
+     * Полная перестройка book_neighbours, например после смены модели эмбеддингов.
+     */
+    @PostMapping("/rebuild-similar")
+    public ResponseEntity<BackgroundJobDTO> rebuildSimilarBooks() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(BackgroundJobDTO.toDTO(jobRunner.submit(JobType.SIMILAR_BOOKS_REBUILD, null)));
+    }
+
+    @GetMapping("/embeddings/status")
+    public ResponseEntity<EmbeddingQueueStatusDTO> getEmbeddingQueueStatus() {
+        return ResponseEntity.ok(EmbeddingQueueStatusDTO.builder()
+                .counts(embeddingOutboxService.countByStatus())
+                .recentFailures(embeddingOutboxService.recentFailures().stream()
+                        .map(EmbeddingTaskDTO::toDTO)
+                        .toList())
+                .build());
+    }
+
+    @GetMapping("/embeddings/books/{bookId}")
+    public ResponseEntity<EmbeddingTaskDTO> getBookEmbeddingStatus(@PathVariable Long bookId) {
+        return ResponseEntity.ok(EmbeddingTaskDTO.toDTO(embeddingOutboxService.getStatus(bookId)));
+    }
+
+    @PostMapping("/embeddings/retry-failed")
+    public ResponseEntity<String> retryFailedEmbeddings() {
+        int count = embeddingOutboxService.retryFailed();
+        return ResponseEntity.ok("Повторно поставлено в очередь: " + count);
     }
 
     @PostMapping("/books")
@@ -47,10 +93,8 @@ public class AdminController {
             @PathVariable Long bookId,
             @RequestPart("file") MultipartFile file) {
 
-        try {
-            String contentText = new String(file.getBytes(), StandardCharsets.UTF_8);
-
-            bookService.uploadContentAsAdmin(bookId, contentText);
+        try (InputStream content = file.getInputStream()) {
+            bookService.uploadContentAsAdmin(bookId, content);
 
             return ResponseEntity.ok("Текст успешно сохранен для книги ID " + bookId);
 
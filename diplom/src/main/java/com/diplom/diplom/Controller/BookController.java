@@ -1,19 +1,38 @@
 package com.diplom.diplom.Controller;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.diplom.diplom.Entity.DTO.BookContentPageDTO;
 import com.diplom.diplom.Entity.DTO.BookDetailDTO;
+import com.diplom.diplom.Entity.DTO.BookPassageDTO;
 import com.diplom.diplom.Entity.DTO.BookReadDTO;
+import com.diplom.diplom.Entity.DTO.BookSuggestionDTO;
+import com.diplom.diplom.Entity.DTO.CursorPageDTO;
+import com.diplom.diplom.Entity.DTO.SemanticSearchFilter;
+import com.diplom.diplom.Service.BookContentStore;
 import com.diplom.diplom.Service.BookService;
+import com.diplom.diplom.Service.HybridSearchService;
 
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.RequiredArgsConstructor;
@@ -24,7 +43,13 @@ import lombok.RequiredArgsConstructor;
 @SecurityRequirement(name = "BearerAuth")
 public class BookController {
 
+    private static final String CHAR_RANGE_UNIT = "chars";
+    private static final MediaType TEXT_PLAIN_UTF8 = MediaType.parseMediaType("text/plain;charset=UTF-8");
+    private static final Pattern CHAR_RANGE = Pattern.compile(CHAR_RANGE_UNIT + "=(\\d*)-(\\d*)",
+            Pattern.CASE_INSENSITIVE);
+
     private final BookService bookService;
+    private final HybridSearchService hybridSearchService;
 
     @GetMapping
     public ResponseEntity<Page<BookReadDTO>> getAllBooks(
@@ -35,6 +60,18 @@ public class BookController {
         return ResponseEntity.ok(books);
     }
 
+    /**
+     * Курсорная пагинация каталога: первый запрос с пустым cursor,
+     * дальше — с nextCursor из ответа.
+     */
+    @GetMapping(params = "cursor")
+    public ResponseEntity<CursorPageDTO<BookReadDTO>> getAllBooksByCursor(
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        return ResponseEntity.ok(bookService.getAllBooksByCursor(cursor, size, withTotal));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<BookDetailDTO> getBookById(@PathVariable Long id) {
         BookDetailDTO book = bookService.getBookById(id);
@@ -49,13 +86,48 @@ public class BookController {
         return ResponseEntity.ok(books);
     }
 
+    @GetMapping("/suggest")
+    public ResponseEntity<List<BookSuggestionDTO>> suggestBooks(@RequestParam String query,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(bookService.suggestBooks(query, limit));
+    }
+
+    @GetMapping("/search/hybrid")
+    public ResponseEntity<Page<BookReadDTO>> hybridSearch(@RequestParam String query,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(hybridSearchService.search(query, page, size));
+    }
+
+    /**
+     * Поиск по содержимому: фрагменты текста книг с позицией в тексте. Без
+     * bookId — по всем книгам, с текстом, проиндексированным задачей PASSAGE_INDEX.
+     */
+    @GetMapping("/passages/search")
+    public ResponseEntity<List<BookPassageDTO>> searchPassages(@RequestParam String query,
+            @RequestParam(required = false) Long bookId,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(bookService.searchPassages(query, bookId, limit));
+    }
+
     @GetMapping("/similar")
     public ResponseEntity<Page<BookReadDTO>> findSimilarBooksByQuery(
             @RequestParam String query,
-            @RequestParam(defaultValue = "5") int topK, @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer topK,
+            @RequestParam(defaultValue = "VISIBLE") SemanticSearchFilter.Scope scope,
+            @RequestParam(required = false) List<String> genres,
+            @RequestParam(required = false) Boolean hasContent,
+            @RequestParam(required = false) Integer efSearch,
+            @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
 
-        Page<BookReadDTO> similarBooks = bookService.findSimilarBooks(query, topK, page, size);
+        SemanticSearchFilter filter = SemanticSearchFilter.builder()
+                .scope(scope)
+                .genres(genres)
+                .hasContent(hasContent)
+                .efSearch(efSearch)
+                .build();
+        Page<BookReadDTO> similarBooks = bookService.findSimilarBooks(query, topK, filter, page, size);
         return ResponseEntity.ok(similarBooks);
     }
 
@@ -68,6 +140,10 @@ public class BookController {
         return ResponseEntity.ok(similarBooks);
     }
 
+    /**
+     * Весь текст одной строкой JSON — для старых клиентов; читалке нужны
+     * /content/pages или /content/text с Range.
+     */
     @GetMapping("/{id}/content")
     public ResponseEntity<Map<String, String>> getBookContent(@PathVariable Long id) {
         String content = bookService.getBookContent(id);
@@ -79,4 +155,109 @@ public class BookController {
         return ResponseEntity.ok(Map.of("content", content));
     }
 
+    /**
+     * Страница текста для читалки: по номеру (его хранит UserBook.currentPage)
+     * или по смещению символа, например из поиска по содержимому. Ответ 304,
+     * если у клиента та же версия (If-None-Match), — без чтения текста.
+     */
+    @GetMapping("/{id}/content/pages")
+    public ResponseEntity<BookContentPageDTO> getBookContentPage(@PathVariable Long id,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer offset,
+            WebRequest request) {
+        BookContentStore.Header header = bookService.getBookContentHeader(id);
+        if (request.checkNotModified(bookService.getBookContentPageETag(header))) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(bookService.getBookContentPage(id, page, offset));
+    }
+
+    /**
+     * Текст книги как text/plain с поддержкой Range в символах UTF-16:
+     * "Range: chars=0-3999", "chars=4000-", "chars=-500" (последние 500).
+     * Без Range — весь текст. Тело пишется потоком по кускам, целиком в
+     * памяти текст не собирается.
+     */
+    @GetMapping(value = "/{id}/content/text", produces = "text/plain;charset=UTF-8")
+    public ResponseEntity<StreamingResponseBody> getBookContentText(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            WebRequest request) {
+        BookContentStore.Header header = bookService.getBookContentHeader(id);
+        if (request.checkNotModified(header.etag())) {
+            return null;
+        }
+        int length = header.length();
+        Matcher matcher = range == null ? null : CHAR_RANGE.matcher(range.trim());
+        // Другие единицы (bytes=...), несколько диапазонов и неразборчивый или
+        // недопустимый (last < first) Range игнорируются (RFC 9110, 14.2)
+        if (matcher == null || !matcher.matches() || !isValidCharRange(matcher)) {
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.ACCEPT_RANGES, CHAR_RANGE_UNIT)
+                    .contentType(TEXT_PLAIN_UTF8)
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(contentText(id, 0, length));
+        }
+        int[] bounds = charRangeBounds(matcher, length);
+        if (bounds == null) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, CHAR_RANGE_UNIT + " */" + length)
+                    .build();
+        }
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .header(HttpHeaders.ACCEPT_RANGES, CHAR_RANGE_UNIT)
+                .header(HttpHeaders.CONTENT_RANGE,
+                        CHAR_RANGE_UNIT + " " + bounds[0] + "-" + (bounds[1] - 1) + "/" + length)
+                .contentType(TEXT_PLAIN_UTF8)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(contentText(id, bounds[0], bounds[1]));
+    }
+
+    private StreamingResponseBody contentText(Long id, int start, int end) {
+        return out -> bookService.writeBookContentRange(id, start, end,
+                new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Синтаксически верный диапазон: задана хотя бы одна граница и last не
+     * меньше first.
+     */
+    private static boolean isValidCharRange(Matcher matcher) {
+        String first = matcher.group(1);
+        String last = matcher.group(2);
+        if (first.isEmpty() || last.isEmpty()) {
+            return !(first.isEmpty() && last.isEmpty());
+        }
+        return bound(last) >= bound(first);
+    }
+
+    /**
+     * Разобранный и допустимый "chars=first-last" (last включительно) в [start, end);
+     * null, если диапазон не пересекается с текстом.
+     */
+    private static int[] charRangeBounds(Matcher matcher, int length) {
+        if (matcher.group(1).isEmpty()) {
+            long suffix = bound(matcher.group(2));
+            return suffix == 0 || length == 0 ? null : new int[] { (int) Math.max(0, length - suffix), length };
+        }
+        long first = bound(matcher.group(1));
+        long last = matcher.group(2).isEmpty() ? length - 1 : bound(matcher.group(2));
+        if (first >= length) {
+            return null;
+        }
+        return new int[] { (int) first, (int) Math.min(last, length - 1) + 1 };
+    }
+
+    /**
+     * Граница из одних цифр; не влезающая в long — заведомо за концом текста.
+     */
+    private static long bound(String digits) {
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
 }
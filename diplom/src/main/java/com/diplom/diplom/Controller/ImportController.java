@@ -1,5 +1,7 @@
 package com.diplom.diplom.Controller;
 
+import java.util.List;
+
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -14,8 +16,12 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.diplom.diplom.Entity.Book;
+import com.diplom.diplom.Entity.JobType;
+import com.diplom.diplom.Entity.DTO.BackgroundJobDTO;
 import com.diplom.diplom.Entity.DTO.BookCreateUpdateDTO;
 import com.diplom.diplom.Entity.DTO.BookReadDTO;
+import com.diplom.diplom.Job.IsbnImportJob;
+import com.diplom.diplom.Job.JobRunner;
 import com.diplom.diplom.Service.BookService;
 
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -30,6 +36,7 @@ import lombok.RequiredArgsConstructor;
 public class ImportController {
 
     private final BookService bookService;
+    private final JobRunner jobRunner;
 
     /**
      * (АДМИН) Поиск книг в Google Books для импорта.
@@ -55,6 +62,15 @@ public class ImportController {
         return ResponseEntity.status(HttpStatus.CREATED).body(bookDTO); // 201 Created ResponseEntity;
     }
 
+    /**
+     * (АДМИН) Массовый импорт по списку ISBN фоновой задачей.
+     */
+    @PostMapping("/isbn")
+    public ResponseEntity<BackgroundJobDTO> importByIsbns(@RequestBody List<String> isbns) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(BackgroundJobDTO.toDTO(jobRunner.submit(JobType.ISBN_IMPORT, new IsbnImportJob.Params(isbns))));
+    }
+
     /**
      * (АДМИН) Обновить данные существующей книги.
      */
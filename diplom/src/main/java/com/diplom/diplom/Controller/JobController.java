@@ -0,0 +1,67 @@
+package com.diplom.diplom.Controller;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.diplom.diplom.Entity.JobType;
+import com.diplom.diplom.Entity.DTO.BackgroundJobDTO;
+import com.diplom.diplom.Job.JobRunner;
+import com.diplom.diplom.Service.BackgroundJobService;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/v1/admin/jobs")
+@RequiredArgsConstructor
+@SecurityRequirement(name = "BearerAuth")
+public class JobController {
+
+    private final JobRunner jobRunner;
+    private final BackgroundJobService backgroundJobService;
+
+    public record SubmitJobRequest(JobType type, JsonNode params) {
+    }
+
+    /**
+     * (АДМИН) Поставить задачу в очередь. Ответ сразу, прогресс — через GET /{id}.
+     */
+    @PostMapping
+    public ResponseEntity<BackgroundJobDTO> submit(@RequestBody SubmitJobRequest request) {
+        if (request.type() == null) {
+            throw new IllegalArgumentException("Тип задачи не задан");
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(BackgroundJobDTO.toDTO(jobRunner.submit(request.type(), request.params())));
+    }
+
+    @GetMapping
+    public ResponseEntity<Page<BackgroundJobDTO>> list(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(backgroundJobService.list(PageRequest.of(page, size)).map(BackgroundJobDTO::toDTO));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<BackgroundJobDTO> get(@PathVariable Long id) {
+        return ResponseEntity.ok(BackgroundJobDTO.toDTO(backgroundJobService.get(id)));
+    }
+
+    /**
+     * (АДМИН) Отменить задачу: из очереди — сразу, выполняющуюся — на ближайшей контрольной точке.
+     */
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<BackgroundJobDTO> cancel(@PathVariable Long id) {
+        return ResponseEntity.ok(BackgroundJobDTO.toDTO(backgroundJobService.cancel(id)));
+    }
+}
@@ -1,7 +1,7 @@
 package com.diplom.diplom.Controller;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -30,12 +30,10 @@ public class ShelfController {
             @PathVariable Long userBookId,
             @RequestPart("file") MultipartFile file) {
 
-        try {
-            String contentText = new String(file.getBytes(), StandardCharsets.UTF_8);
-
+        try (InputStream content = file.getInputStream()) {
             User currentUser = bookService.getCurrentUser();
 
-            bookService.uploadPersonalBookContent(userBookId, contentText, currentUser);
+            bookService.uploadPersonalBookContent(userBookId, content, currentUser);
 
             return ResponseEntity.ok("Текст успешно загружен. Создана личная копия книги.");
 
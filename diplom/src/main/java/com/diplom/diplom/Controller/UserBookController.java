@@ -15,6 +15,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.diplom.diplom.Entity.Status;
+import com.diplom.diplom.Entity.DTO.CursorPageDTO;
 import com.diplom.diplom.Entity.DTO.UserBookCreateDTO;
 import com.diplom.diplom.Entity.DTO.UserBookReadDTO;
 import com.diplom.diplom.Entity.DTO.UserBookUpdateDTO;
@@ -60,6 +61,25 @@ public class UserBookController {
     }
 
 
+    /**
+     * Курсорная пагинация полки для бесконечной прокрутки: первый запрос с
+     * пустым cursor, дальше — с nextCursor из ответа.
+     */
+    @GetMapping(params = "cursor")
+    public ResponseEntity<CursorPageDTO<UserBookReadDTO>> getMyShelfByCursor(
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) Status status,
+            @RequestParam(required = false) String tag,
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(defaultValue = "DESC") String direction,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+
+        String username = getCurrentUsername();
+        return ResponseEntity.ok(userBookService.getMyShelfByCursor(
+                username, cursor, size, status, tag, sort, direction, withTotal));
+    }
+
     @DeleteMapping("/{id}")
     public void deleteMyUserBook(@PathVariable Long id) {
         userBookService.deleteMyUserBook(id, getCurrentUsername());
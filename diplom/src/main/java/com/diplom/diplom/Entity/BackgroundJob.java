@@ -0,0 +1,85 @@
+package com.diplom.diplom.Entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Долгая административная операция. Состояние и контрольная точка хранятся в
+ * таблице, поэтому после рестарта задача продолжается с checkpoint.
+ */
+@Entity
+@Table(name = "background_jobs", indexes = {
+        @Index(name = "idx_background_jobs_status", columnList = "status, id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BackgroundJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private JobType type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private JobStatus status;
+
+    // Параметры задачи в JSON, формат определяет JobHandler
+    @Column(columnDefinition = "TEXT")
+    private String params;
+
+    // Место, с которого задача продолжится после рестарта, формат определяет JobHandler
+    @Column(columnDefinition = "TEXT")
+    private String checkpoint;
+
+    private Long total;
+
+    @Column(nullable = false)
+    private long processed;
+
+    @Column(nullable = false)
+    private long failed;
+
+    @Column(name = "cancel_requested", nullable = false)
+    private boolean cancelRequested;
+
+    @Column(columnDefinition = "TEXT")
+    private String message;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    // Начало текущего запуска и сколько было обработано к нему — для скорости и ETA после рестарта
+    @Column(name = "run_started_at")
+    private LocalDateTime runStartedAt;
+
+    @Column(name = "processed_at_run_start", nullable = false)
+    private long processedAtRunStart;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
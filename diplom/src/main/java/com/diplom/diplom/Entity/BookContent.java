@@ -27,6 +27,28 @@ public class BookContent {
     @JoinColumn(name = "book_id")
     private Book book;
 
+    /**
+     * Текст целиком — так хранились книги до загрузки по кускам; у новых
+     * загрузок пусто, текст в book_content_chunks.
+     */
     @Column(columnDefinition = "TEXT")
     private String content;
+
+    /**
+     * Длина текста в символах (char); null у книг, загруженных до хранения по кускам.
+     */
+    @Column(name = "content_length")
+    private Integer length;
+
+    /**
+     * Кодировка, в которой был загружен файл.
+     */
+    @Column(length = 32)
+    private String charset;
+
+    /**
+     * SHA-256 текста — версия для ETag; null, пока не посчитан.
+     */
+    @Column(name = "content_hash", length = 64)
+    private String hash;
 }
\ No newline at end of file
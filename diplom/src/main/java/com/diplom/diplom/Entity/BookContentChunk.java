@@ -0,0 +1,51 @@
+package com.diplom.diplom.Entity;
+
+import java.io.Serializable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Кусок текста книги. Загружаемый текст пишется потоком по кускам, а не одним
+ * значением в book_contents.content, поэтому ни загрузка, ни чтение по частям
+ * не держат в памяти весь файл.
+ */
+@Entity
+@Table(name = "book_content_chunks")
+@IdClass(BookContentChunk.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookContentChunk {
+
+    @Id
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Id
+    @Column(name = "chunk_no")
+    private Integer chunkNo;
+
+    /**
+     * Смещение первого символа куска во всём тексте (в единицах char).
+     */
+    @Column(name = "start_offset", nullable = false)
+    private int startOffset;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String text;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long bookId;
+        private Integer chunkNo;
+    }
+}
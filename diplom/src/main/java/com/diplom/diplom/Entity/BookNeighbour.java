@@ -0,0 +1,76 @@
+package com.diplom.diplom.Entity;
+
+import java.io.Serializable;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Заранее посчитанная похожая книга: для каждой книги хранится top-N соседей
+ * по косинусной близости векторов. Строки удаляются каскадом вместе с любой
+ * из двух книг.
+ */
+@Entity
+@Table(name = "book_neighbours", indexes = {
+        @Index(name = "idx_book_neighbours_neighbour", columnList = "neighbour_id")
+})
+@IdClass(BookNeighbour.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookNeighbour {
+
+    @Id
+    @Column(name = "book_id")
+    private Long bookId;
+
+    @Id
+    @Column(name = "neighbour_id")
+    private Long neighbourId;
+
+    @Column(nullable = false)
+    private int position;
+
+    @Column(nullable = false)
+    private double score;
+
+    // Только ради внешних ключей с ON DELETE CASCADE, значения пишутся через bookId/neighbourId
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_id", insertable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Book book;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "neighbour_id", insertable = false, updatable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Book neighbour;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long bookId;
+        private Long neighbourId;
+    }
+}
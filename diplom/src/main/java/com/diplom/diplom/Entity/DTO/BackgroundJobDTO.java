@@ -0,0 +1,73 @@
+package com.diplom.diplom.Entity.DTO;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import com.diplom.diplom.Entity.BackgroundJob;
+import com.diplom.diplom.Entity.JobStatus;
+import com.diplom.diplom.Entity.JobType;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Состояние фоновой задачи. Скорость считается по текущему запуску, чтобы
+ * простой между рестартами не занижал её; ETA — по оставшимся единицам работы.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BackgroundJobDTO {
+    private Long id;
+    private JobType type;
+    private JobStatus status;
+    private Long total;
+    private long processed;
+    private long failed;
+    private Double percent;
+    private Double throughputPerSecond;
+    private Long etaSeconds;
+    private boolean cancelRequested;
+    private String message;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime finishedAt;
+
+    public static BackgroundJobDTO toDTO(BackgroundJob job) {
+        long done = job.getProcessed() + job.getFailed();
+        BackgroundJobDTOBuilder builder = BackgroundJobDTO.builder()
+                .id(job.getId())
+                .type(job.getType())
+                .status(job.getStatus())
+                .total(job.getTotal())
+                .processed(job.getProcessed())
+                .failed(job.getFailed())
+                .cancelRequested(job.isCancelRequested())
+                .message(job.getMessage())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .updatedAt(job.getUpdatedAt())
+                .finishedAt(job.getFinishedAt());
+
+        if (job.getTotal() != null && job.getTotal() > 0) {
+            builder.percent(Math.min(100.0, 100.0 * done / job.getTotal()));
+        }
+        if (job.getRunStartedAt() != null) {
+            LocalDateTime end = job.getFinishedAt() != null ? job.getFinishedAt() : LocalDateTime.now();
+            double seconds = Duration.between(job.getRunStartedAt(), end).toMillis() / 1000.0;
+            long doneInRun = done - job.getProcessedAtRunStart();
+            if (seconds > 0 && doneInRun > 0) {
+                double throughput = doneInRun / seconds;
+                builder.throughputPerSecond(throughput);
+                if (job.getStatus() == JobStatus.RUNNING && job.getTotal() != null) {
+                    builder.etaSeconds(Math.round(Math.max(0, job.getTotal() - done) / throughput));
+                }
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,24 @@
+package com.diplom.diplom.Entity.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Страница текста книги. startOffset/endOffset — позиция страницы во всём
+ * тексте, в единицах UTF-16, как у BookPassageDTO.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookContentPageDTO {
+    private Long bookId;
+    private int page;
+    private int totalPages;
+    private int startOffset;
+    private int endOffset;
+    private int length;
+    private String text;
+}
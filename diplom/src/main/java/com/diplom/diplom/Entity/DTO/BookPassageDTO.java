@@ -0,0 +1,38 @@
+package com.diplom.diplom.Entity.DTO;
+
+import com.diplom.diplom.Repository.BookPassageRepository;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Найденный фрагмент текста книги. startOffset/endOffset — позиция в тексте
+ * GET /books/{id}/content, в единицах UTF-16 (как индексы строки в JS).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookPassageDTO {
+    private Long bookId;
+    private String title;
+    private int ordinal;
+    private int startOffset;
+    private int endOffset;
+    private String text;
+    private double score;
+
+    public static BookPassageDTO toDTO(BookPassageRepository.Hit hit) {
+        return BookPassageDTO.builder()
+                .bookId(hit.bookId())
+                .title(hit.title())
+                .ordinal(hit.ordinal())
+                .startOffset(hit.start())
+                .endOffset(hit.end())
+                .text(hit.text())
+                .score(hit.score())
+                .build();
+    }
+}
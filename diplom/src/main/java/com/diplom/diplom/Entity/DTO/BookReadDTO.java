@@ -5,11 +5,15 @@ import java.util.List;
 
 import com.diplom.diplom.Entity.Book;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class BookReadDTO {
     private Long id;
     private String title;
@@ -46,4 +50,21 @@ public class BookReadDTO {
                 .source("MY_LIBRARY")
                 .build();
     }
+
+    /**
+     * Краткая карточка книги для списков похожих и результатов поиска.
+     */
+    public static BookReadDTO toShortDTO(Book book) {
+        return BookReadDTO.builder()
+                .id(book.getId())
+                .title(book.getTitle())
+                .author(book.getAuthor())
+                .annotation(book.getAnnotation())
+                .pageCount(book.getPageCount())
+                .isbn(book.getIsbn())
+                .publishedDate(book.getPublishedDate())
+                .coverUrl(book.getCoverUrl())
+                .googleBookId(book.getGoogleBookId())
+                .build();
+    }
 }
@@ -0,0 +1,23 @@
+package com.diplom.diplom.Entity.DTO;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Страница для курсорной (keyset) пагинации. nextCursor передаётся в следующий
+ * запрос как есть; totalElements заполняется только по запросу (withTotal=true).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+    private List<T> content;
+    private String nextCursor;
+    private boolean hasNext;
+    private Long totalElements;
+}
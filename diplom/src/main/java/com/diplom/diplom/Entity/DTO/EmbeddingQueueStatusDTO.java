@@ -0,0 +1,23 @@
+package com.diplom.diplom.Entity.DTO;
+
+import java.util.List;
+import java.util.Map;
+
+import com.diplom.diplom.Entity.EmbeddingStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Состояние очереди пересчёта векторов: число задач по статусам и последние ошибки.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmbeddingQueueStatusDTO {
+    private Map<EmbeddingStatus, Long> counts;
+    private List<EmbeddingTaskDTO> recentFailures;
+}
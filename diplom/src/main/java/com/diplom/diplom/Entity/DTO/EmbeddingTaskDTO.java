@@ -0,0 +1,35 @@
+package com.diplom.diplom.Entity.DTO;
+
+import java.time.LocalDateTime;
+
+import com.diplom.diplom.Entity.EmbeddingStatus;
+import com.diplom.diplom.Entity.EmbeddingTask;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmbeddingTaskDTO {
+    private Long bookId;
+    private EmbeddingStatus status;
+    private int attempts;
+    private String lastError;
+    private LocalDateTime nextAttemptAt;
+    private LocalDateTime updatedAt;
+
+    public static EmbeddingTaskDTO toDTO(EmbeddingTask task) {
+        return EmbeddingTaskDTO.builder()
+                .bookId(task.getBookId())
+                .status(task.getStatus())
+                .attempts(task.getAttempts())
+                .lastError(task.getLastError())
+                .nextAttemptAt(task.getNextAttemptAt())
+                .updatedAt(task.getUpdatedAt())
+                .build();
+    }
+}
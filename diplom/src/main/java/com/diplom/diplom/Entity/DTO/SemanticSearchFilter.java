@@ -0,0 +1,39 @@
+package com.diplom.diplom.Entity.DTO;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Фильтры семантического поиска, применяемые в самом pgvector-запросе.
+ * Пустые поля не фильтруют.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SemanticSearchFilter {
+
+    public enum Scope {
+        /** Общий каталог и личные копии текущего пользователя */
+        VISIBLE,
+        /** Только общий каталог */
+        PUBLIC,
+        /** Только личные копии текущего пользователя */
+        PERSONAL
+    }
+
+    @Builder.Default
+    private Scope scope = Scope.VISIBLE;
+
+    // Книга подходит, если у неё есть хотя бы один из жанров
+    private List<String> genres;
+
+    private Boolean hasContent;
+
+    // hnsw.ef_search для запроса; не меньше offset + limit, иначе глубокие страницы будут неполными
+    private Integer efSearch;
+}
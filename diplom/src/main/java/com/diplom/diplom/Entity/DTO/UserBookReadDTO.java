@@ -1,6 +1,7 @@
 package com.diplom.diplom.Entity.DTO;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.diplom.diplom.Entity.Status;
@@ -17,6 +18,7 @@ public class UserBookReadDTO {
     private Long id;
     private BookReadDTO book;
     private UserReadDTO user;
+    private Long userId;
     private Integer progress;
     private Integer currentPage;
     private Integer totalPages;
@@ -33,6 +35,7 @@ public class UserBookReadDTO {
                 .id(userBook.getId())
                 .book(BookReadDTO.toDTO(userBook.getBook()))
                 .user(UserReadDTO.toDTO(userBook.getUser()))
+                .userId(userBook.getUser().getId())
                 .progress(userBook.getProgress())
                 .currentPage(userBook.getCurrentPage())
                 .totalPages(userBook.getTotalPages())
@@ -44,4 +47,27 @@ public class UserBookReadDTO {
                 .isFavorite(userBook.getIsFavorite())
                 .build();
     }
+
+    /**
+     * Облегчённый вариант для списков полки: владелец у всех строк один и тот же,
+     * поэтому вместо полного UserReadDTO (аватар, роли) отдаётся только userId.
+     * Теги копируются внутри транзакции: так ленивые коллекции всей страницы
+     * догружаются одной пачкой, а не по запросу на строку при сериализации.
+     */
+    public static UserBookReadDTO toShelfDTO(UserBook userBook) {
+        return UserBookReadDTO.builder()
+                .id(userBook.getId())
+                .book(BookReadDTO.toDTO(userBook.getBook()))
+                .userId(userBook.getUser().getId())
+                .progress(userBook.getProgress())
+                .currentPage(userBook.getCurrentPage())
+                .totalPages(userBook.getTotalPages())
+                .status(userBook.getStatus())
+                .rating(userBook.getRating())
+                .addedAt(userBook.getAddedAt())
+                .updatedAt(userBook.getUpdatedAt())
+                .tags(new ArrayList<>(userBook.getTags()))
+                .isFavorite(userBook.getIsFavorite())
+                .build();
+    }
 }
@@ -0,0 +1,8 @@
+package com.diplom.diplom.Entity;
+
+public enum EmbeddingStatus {
+    PENDING,
+    PROCESSING,
+    DONE,
+    FAILED
+}
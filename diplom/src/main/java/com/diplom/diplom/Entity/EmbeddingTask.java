@@ -0,0 +1,64 @@
+package com.diplom.diplom.Entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Строка outbox "книга изменилась, вектор нужно пересчитать". На каждую книгу
+ * одна строка: повторные изменения до обработки сливаются, а после обработки
+ * строка остаётся и показывает статус вектора книги.
+ */
+@Entity
+@Table(name = "embedding_outbox", indexes = {
+        @Index(name = "idx_embedding_outbox_status", columnList = "status, next_attempt_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmbeddingTask {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "book_id", nullable = false, unique = true)
+    private Long bookId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private EmbeddingStatus status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    /**
+     * Для удалённой книги — id книг через запятую, в списках похожих которых
+     * она была. Эти строки book_neighbours удаляются каскадом вместе с книгой,
+     * а пересчитать списки можно только после удаления её вектора.
+     */
+    @Column(name = "referrer_ids", columnDefinition = "TEXT")
+    private String referrerIds;
+}
@@ -0,0 +1,33 @@
+package com.diplom.diplom.Entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Второй уровень кэша ответов Google Books: переживает рестарт приложения,
+ * чтобы прогрев кэша не расходовал квоту API.
+ */
+@Entity
+@Table(name = "google_books_cache")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GoogleBooksCacheEntry {
+
+    @Id
+    @Column(name = "cache_key", length = 512)
+    private String cacheKey;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
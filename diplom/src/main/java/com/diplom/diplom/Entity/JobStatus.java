@@ -0,0 +1,9 @@
+package com.diplom.diplom.Entity;
+
+public enum JobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED,
+    CANCELLED
+}
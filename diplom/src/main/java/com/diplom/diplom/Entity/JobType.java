@@ -0,0 +1,9 @@
+package com.diplom.diplom.Entity;
+
+public enum JobType {
+    EMBEDDING_REINDEX,
+    ISBN_IMPORT,
+    PASSAGE_INDEX,
+    SEARCH_REINDEX,
+    SIMILAR_BOOKS_REBUILD
+}
@@ -0,0 +1,58 @@
+package com.diplom.diplom.Job;
+
+import org.springframework.stereotype.Component;
+
+import com.diplom.diplom.Entity.JobType;
+import com.diplom.diplom.Repository.BookRepository;
+import com.diplom.diplom.Service.BackgroundJobService;
+import com.diplom.diplom.Service.EmbeddingReindexService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Перегенерация векторов всего каталога: в модель уходят только устаревшие и
+ * отсутствующие векторы. Контрольная точка — id книги, до
+ * которого все пачки уже обработаны. Если векторы менялись, по завершении
+ * ставится одна перестройка списков похожих книг.
+ */
+@Component
+@RequiredArgsConstructor
+public class EmbeddingReindexJob implements JobHandler {
+
+    private final EmbeddingReindexService embeddingReindexService;
+    private final BookRepository bookRepository;
+    private final BackgroundJobService backgroundJobService;
+
+    @Override
+    public JobType type() {
+        return JobType.EMBEDDING_REINDEX;
+    }
+
+    @Override
+    public String run(JobContext context) {
+        context.setTotalIfUnknown(bookRepository.count());
+        long afterId = context.checkpoint() == null ? 0 : Long.parseLong(context.checkpoint());
+
+        EmbeddingReindexService.Result result = embeddingReindexService.reindex(afterId,
+                new EmbeddingReindexService.Listener() {
+                    @Override
+                    public void batchCompleted(long checkpointId, int processed, int failed) {
+                        context.progress(processed, failed, Long.toString(checkpointId));
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return context.isCancelled();
+                    }
+                });
+        if (result.cancelled()) {
+            return "Остановлено на книге id=" + result.lastBookId() + ", пересчитано векторов: " + result.embedded();
+        }
+        // Продолженный прогон мог пересчитать векторы до прерывания
+        if (result.embedded() > 0 || afterId > 0) {
+            backgroundJobService.submit(JobType.SIMILAR_BOOKS_REBUILD, null);
+        }
+        return "Пересчитано векторов: " + result.embedded()
+                + ", остальные без изменений; книги с ошибкой переданы в embedding_outbox";
+    }
+}
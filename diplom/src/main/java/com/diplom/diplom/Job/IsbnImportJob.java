@@ -0,0 +1,67 @@
+package com.diplom.diplom.Job;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+import com.diplom.diplom.Entity.JobType;
+import com.diplom.diplom.Exception.ApiIntegrationException;
+import com.diplom.diplom.Exception.DuplicateResourceException;
+import com.diplom.diplom.Exception.ResourceNotFoundException;
+import com.diplom.diplom.Service.BookService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Массовый импорт книг из Google Books по списку ISBN. Контрольная точка —
+ * номер следующего ISBN в списке. Дубликаты и ненайденные ISBN считаются
+ * ошибками, но импорт не останавливают.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IsbnImportJob implements JobHandler {
+
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final BookService bookService;
+
+    public record Params(List<String> isbns) {
+    }
+
+    @Override
+    public JobType type() {
+        return JobType.ISBN_IMPORT;
+    }
+
+    @Override
+    public String run(JobContext context) {
+        List<String> isbns = context.params(Params.class).isbns();
+        if (isbns == null) {
+            throw new IllegalArgumentException("Список ISBN не задан");
+        }
+        context.setTotalIfUnknown(isbns.size());
+
+        List<String> errors = new ArrayList<>();
+        int next = context.checkpoint() == null ? 0 : Integer.parseInt(context.checkpoint());
+        while (next < isbns.size() && !context.isCancelled()) {
+            String isbn = isbns.get(next++);
+            try {
+                bookService.importBookByIsbn(isbn);
+                context.progress(1, 0, Integer.toString(next));
+            } catch (DuplicateResourceException | ResourceNotFoundException | ApiIntegrationException
+                    | IllegalArgumentException e) {
+                log.warn("ISBN {} не импортирован: {}", isbn, e.getMessage());
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(isbn + ": " + e.getMessage());
+                }
+                context.progress(0, 1, Integer.toString(next));
+            }
+        }
+        return errors.isEmpty()
+                ? "Обработано ISBN: " + next
+                : "Обработано ISBN: " + next + ", ошибки: " + String.join("; ", errors);
+    }
+}
@@ -0,0 +1,70 @@
+package com.diplom.diplom.Job;
+
+import com.diplom.diplom.Entity.BackgroundJob;
+import com.diplom.diplom.Service.BackgroundJobService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Связь выполняющейся задачи с её строкой в background_jobs.
+ */
+public class JobContext {
+
+    private final BackgroundJob job;
+    private final BackgroundJobService backgroundJobService;
+    private final ObjectMapper objectMapper;
+    private volatile boolean cancelled;
+
+    JobContext(BackgroundJob job, BackgroundJobService backgroundJobService, ObjectMapper objectMapper) {
+        this.job = job;
+        this.backgroundJobService = backgroundJobService;
+        this.objectMapper = objectMapper;
+        this.cancelled = job.isCancelRequested();
+    }
+
+    public Long jobId() {
+        return job.getId();
+    }
+
+    public <T> T params(Class<T> type) {
+        if (job.getParams() == null) {
+            throw new IllegalArgumentException("У задачи #" + job.getId() + " нет параметров");
+        }
+        try {
+            return objectMapper.readValue(job.getParams(), type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Некорректные параметры задачи #" + job.getId() + ": "
+                    + e.getOriginalMessage(), e);
+        }
+    }
+
+    /**
+     * @return контрольная точка прошлого запуска или null, если задача начинается с нуля
+     */
+    public String checkpoint() {
+        return job.getCheckpoint();
+    }
+
+    /**
+     * Общее число единиц работы — для процента и ETA. Задаётся один раз за всю
+     * жизнь задачи, продолжение после рестарта его не пересчитывает.
+     */
+    public void setTotalIfUnknown(long total) {
+        if (job.getTotal() == null) {
+            job.setTotal(total);
+            backgroundJobService.setTotal(job.getId(), total);
+        }
+    }
+
+    /**
+     * Сохраняет прирост счётчиков и новую контрольную точку одной транзакцией.
+     */
+    public void progress(long processed, long failed, String checkpoint) {
+        job.setCheckpoint(checkpoint);
+        cancelled = backgroundJobService.recordProgress(job.getId(), processed, failed, checkpoint);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,18 @@
+package com.diplom.diplom.Job;
+
+import com.diplom.diplom.Entity.JobType;
+
+/**
+ * Выполнение задачи одного типа. Реализация должна регулярно вызывать
+ * JobContext.progress — это и контрольная точка для продолжения после
+ * рестарта, и место, где замечается отмена.
+ */
+public interface JobHandler {
+
+    JobType type();
+
+    /**
+     * @return итоговое сообщение для BackgroundJob.message
+     */
+    String run(JobContext context);
+}
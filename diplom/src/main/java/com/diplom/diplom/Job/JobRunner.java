@@ -0,0 +1,164 @@
+package com.diplom.diplom.Job;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.diplom.diplom.Entity.BackgroundJob;
+import com.diplom.diplom.Entity.JobStatus;
+import com.diplom.diplom.Entity.JobType;
+import com.diplom.diplom.Service.BackgroundJobService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Выполняет задачи из background_jobs на ограниченном пуле потоков. Из
+ * таблицы забирается не больше задач, чем свободных потоков, остальные ждут в
+ * очереди. Пока задача выполняется, её updated_at обновляется при каждом
+ * опросе; задачи, которые давно не обновлялись (экземпляр упал или был
+ * перезапущен), возвращаются в очередь и продолжаются с контрольной точки.
+ */
+@Component
+@Slf4j
+public class JobRunner {
+
+    private final BackgroundJobService backgroundJobService;
+    private final ObjectMapper objectMapper;
+    private final Map<JobType, JobHandler> handlers = new EnumMap<>(JobType.class);
+
+    private final Duration lease;
+    private final Semaphore freeWorkers;
+    private final ExecutorService executor;
+    private final Set<Long> active = ConcurrentHashMap.newKeySet();
+
+    public JobRunner(
+            BackgroundJobService backgroundJobService,
+            ObjectMapper objectMapper,
+            List<JobHandler> handlers,
+            @Value("${app.jobs.workers:2}") int workers,
+            @Value("${app.jobs.lease:PT1M}") Duration lease) {
+        this.backgroundJobService = backgroundJobService;
+        this.objectMapper = objectMapper;
+        handlers.forEach(handler -> this.handlers.put(handler.type(), handler));
+        this.lease = lease;
+        this.freeWorkers = new Semaphore(workers);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "background-job-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Ставит задачу в очередь и сразу пытается её запустить, не дожидаясь опроса.
+     */
+    public BackgroundJob submit(JobType type, Object params) {
+        if (!handlers.containsKey(type)) {
+            throw new IllegalArgumentException("Нет обработчика для задач типа " + type);
+        }
+        BackgroundJob job = backgroundJobService.submit(type, writeParams(params));
+        dispatch();
+        return job;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterrupted() {
+        poll();
+    }
+
+    @Scheduled(fixedDelayString = "${app.jobs.poll-interval:PT5S}", initialDelayString = "${app.jobs.poll-interval:PT5S}")
+    public void poll() {
+        try {
+            backgroundJobService.heartbeat(Set.copyOf(active));
+            int requeued = backgroundJobService.requeueStale(lease);
+            if (requeued > 0) {
+                log.info("Возвращено в очередь прерванных фоновых задач: {}", requeued);
+            }
+        } catch (RuntimeException e) {
+            log.error("Не удалось обновить состояние фоновых задач: {}", e.getMessage());
+            return;
+        }
+        dispatch();
+    }
+
+    private void dispatch() {
+        while (freeWorkers.tryAcquire()) {
+            Optional<BackgroundJob> claimed;
+            try {
+                claimed = backgroundJobService.claimNext();
+            } catch (RuntimeException e) {
+                freeWorkers.release();
+                log.error("Не удалось забрать фоновую задачу: {}", e.getMessage());
+                return;
+            }
+            if (claimed.isEmpty()) {
+                freeWorkers.release();
+                return;
+            }
+            BackgroundJob job = claimed.get();
+            active.add(job.getId());
+            executor.execute(() -> {
+                try {
+                    run(job);
+                } finally {
+                    active.remove(job.getId());
+                    freeWorkers.release();
+                }
+            });
+        }
+    }
+
+    private void run(BackgroundJob job) {
+        JobHandler handler = handlers.get(job.getType());
+        if (handler == null) {
+            backgroundJobService.finish(job.getId(), JobStatus.FAILED, "Нет обработчика для задач типа " + job.getType());
+            return;
+        }
+        log.info("Фоновая задача {} #{} запущена, контрольная точка: {}", job.getType(), job.getId(), job.getCheckpoint());
+        JobContext context = new JobContext(job, backgroundJobService, objectMapper);
+        try {
+            String message = handler.run(context);
+            JobStatus status = context.isCancelled() ? JobStatus.CANCELLED : JobStatus.SUCCEEDED;
+            backgroundJobService.finish(job.getId(), status, message);
+            log.info("Фоновая задача {} #{} завершена: {} ({})", job.getType(), job.getId(), status, message);
+        } catch (RuntimeException e) {
+            log.error("Фоновая задача {} #{} завершилась ошибкой", job.getType(), job.getId(), e);
+            backgroundJobService.finish(job.getId(), JobStatus.FAILED, e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    private String writeParams(Object params) {
+        if (params == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(params);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Некорректные параметры задачи: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Прерванные задачи остаются RUNNING и после истечения lease продолжатся с контрольной точки
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,88 @@
+package com.diplom.diplom.Job;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.stereotype.Component;
+
+import com.diplom.diplom.Entity.JobType;
+import com.diplom.diplom.Repository.BookContentRepository;
+import com.diplom.diplom.Service.BookPassageService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Индексация фрагментов текста книг для поиска по содержимому. Без bookIds —
+ * все книги с загруженным текстом. Контрольная точка — id последней
+ * проиндексированной книги; прерванная на середине книга при продолжении
+ * пересчитывает только недостающие фрагменты.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PassageIndexJob implements JobHandler {
+
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final BookPassageService bookPassageService;
+    private final BookContentRepository bookContentRepository;
+
+    public record Params(List<Long> bookIds) {
+    }
+
+    @Override
+    public JobType type() {
+        return JobType.PASSAGE_INDEX;
+    }
+
+    @Override
+    public String run(JobContext context) {
+        List<Long> requested = context.params(Params.class).bookIds();
+        List<Long> bookIds = requested == null
+                ? bookContentRepository.findAllIds()
+                : requested.stream().distinct().sorted().toList();
+        context.setTotalIfUnknown(bookIds.size());
+
+        long afterId = context.checkpoint() == null ? 0 : Long.parseLong(context.checkpoint());
+        long passages = 0;
+        List<String> errors = new ArrayList<>();
+        for (Long bookId : bookIds) {
+            if (bookId <= afterId) {
+                continue;
+            }
+            if (context.isCancelled()) {
+                break;
+            }
+            String checkpoint = Long.toString(afterId);
+            try {
+                BookPassageService.Result result = bookPassageService.index(bookId, new BookPassageService.Listener() {
+                    @Override
+                    public void batchCompleted(int embedded) {
+                        context.progress(0, 0, checkpoint);
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return context.isCancelled();
+                    }
+                });
+                if (result.cancelled()) {
+                    break;
+                }
+                passages += result.embedded();
+                context.progress(1, 0, Long.toString(bookId));
+            } catch (RuntimeException e) {
+                log.warn("Фрагменты книги {} не проиндексированы: {}", bookId, e.getMessage());
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(bookId + ": " + e.getMessage());
+                }
+                context.progress(0, 1, Long.toString(bookId));
+            }
+            afterId = bookId;
+        }
+        return errors.isEmpty()
+                ? "Новых фрагментов: " + passages
+                : "Новых фрагментов: " + passages + ", ошибки: " + String.join("; ", errors);
+    }
+}
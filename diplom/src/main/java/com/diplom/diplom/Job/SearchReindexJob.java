@@ -0,0 +1,42 @@
+package com.diplom.diplom.Job;
+
+import org.springframework.stereotype.Component;
+
+import com.diplom.diplom.Entity.JobType;
+import com.diplom.diplom.Search.BookSearchIndex;
+import com.diplom.diplom.Search.BookSuggestIndex;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Перестроение индексов в памяти: поискового и автодополнения. Каждый индекс
+ * строится целиком и подменяется атомарно, поэтому контрольная точка — номер
+ * уже перестроенного индекса.
+ */
+@Component
+@RequiredArgsConstructor
+public class SearchReindexJob implements JobHandler {
+
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSuggestIndex bookSuggestIndex;
+
+    @Override
+    public JobType type() {
+        return JobType.SEARCH_REINDEX;
+    }
+
+    @Override
+    public String run(JobContext context) {
+        context.setTotalIfUnknown(2);
+        int done = context.checkpoint() == null ? 0 : Integer.parseInt(context.checkpoint());
+        if (done < 1 && !context.isCancelled()) {
+            bookSearchIndex.rebuild();
+            context.progress(1, 0, "1");
+        }
+        if (done < 2 && !context.isCancelled()) {
+            bookSuggestIndex.rebuild();
+            context.progress(1, 0, "2");
+        }
+        return "Поисковый индекс и автодополнение перестроены";
+    }
+}
@@ -0,0 +1,64 @@
+package com.diplom.diplom.Job;
+
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import com.diplom.diplom.Entity.Book;
+import com.diplom.diplom.Entity.JobType;
+import com.diplom.diplom.Repository.BookRepository;
+import com.diplom.diplom.Service.BookNeighbourService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Пересчёт списков похожих книг для всего каталога. Обычно списки
+ * обновляются точечно при изменении векторов; полная перестройка нужна после
+ * смены модели или параметров app.similar.*. Контрольная точка — id последней
+ * обработанной книги.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SimilarBooksRebuildJob implements JobHandler {
+
+    private static final int PAGE_SIZE = 100;
+
+    private final BookRepository bookRepository;
+    private final BookNeighbourService bookNeighbourService;
+
+    @Override
+    public JobType type() {
+        return JobType.SIMILAR_BOOKS_REBUILD;
+    }
+
+    @Override
+    public String run(JobContext context) {
+        context.setTotalIfUnknown(bookRepository.count());
+        long lastId = context.checkpoint() == null ? 0 : Long.parseLong(context.checkpoint());
+
+        while (!context.isCancelled()) {
+            List<Book> page = bookRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(PAGE_SIZE));
+            if (page.isEmpty()) {
+                break;
+            }
+            int failed = 0;
+            for (Book book : page) {
+                try {
+                    bookNeighbourService.refresh(book.getId());
+                } catch (RuntimeException e) {
+                    log.warn("Список похожих для книги {} не пересчитан: {}", book.getId(), e.getMessage());
+                    failed++;
+                }
+            }
+            lastId = page.get(page.size() - 1).getId();
+            context.progress(page.size() - failed, failed, Long.toString(lastId));
+        }
+        bookNeighbourService.invalidateCache();
+        return context.isCancelled()
+                ? "Остановлено на книге id=" + lastId
+                : "Списки похожих книг перестроены";
+    }
+}
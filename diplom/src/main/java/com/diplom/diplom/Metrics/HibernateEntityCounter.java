@@ -0,0 +1,17 @@
+package com.diplom.diplom.Metrics;
+
+import org.hibernate.Interceptor;
+import org.hibernate.type.Type;
+
+/**
+ * Подключается к Hibernate как Interceptor: считает каждую загруженную из
+ * результата сущность. SQL считает JdbcQueryCounter на уровне DataSource.
+ */
+public class HibernateEntityCounter implements Interceptor {
+
+    @Override
+    public boolean onLoad(Object entity, Object id, Object[] state, String[] propertyNames, Type[] types) {
+        QueryStatistics.entityLoaded();
+        return false;
+    }
+}
@@ -0,0 +1,24 @@
+package com.diplom.diplom.Metrics;
+
+import java.util.List;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+/**
+ * Слушатель datasource-proxy: считает каждое выполнение JDBC-оператора —
+ * и от Hibernate, и от JdbcTemplate. Пачка (executeBatch) — одно обращение к
+ * базе и считается один раз.
+ */
+public class JdbcQueryCounter implements QueryExecutionListener {
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        QueryStatistics.statementExecuted();
+    }
+}
@@ -0,0 +1,52 @@
+package com.diplom.diplom.Metrics;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+/**
+ * Обёртка над EmbeddingModel (Ollama). Пакетные методы интерфейса по умолчанию
+ * сводятся к call(), поэтому замеряются и вызовы изнутри PgVectorStore.
+ */
+public class MeteredEmbeddingModel implements EmbeddingModel {
+
+    static final String CLIENT = "embedding";
+
+    private final EmbeddingModel delegate;
+    private final OutboundCallMetrics metrics;
+
+    public MeteredEmbeddingModel(EmbeddingModel delegate, OutboundCallMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        metrics.recordSize("bookshelf.embedding.texts", "Текстов в одном запросе к модели эмбеддингов",
+                CLIENT, request.getInstructions().size());
+        metrics.recordSize("bookshelf.embedding.chars", "Символов в одном запросе к модели эмбеддингов",
+                CLIENT, request.getInstructions().stream().mapToInt(String::length).sum());
+
+        EmbeddingResponse response = metrics.record(CLIENT, "embed", () -> delegate.call(request));
+
+        if (response.getMetadata() != null && response.getMetadata().getUsage() != null) {
+            Integer promptTokens = response.getMetadata().getUsage().getPromptTokens();
+            if (promptTokens != null && promptTokens > 0) {
+                metrics.recordSize("bookshelf.embedding.tokens", "Токенов в одном запросе к модели эмбеддингов",
+                        CLIENT, promptTokens);
+            }
+        }
+        return response;
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return metrics.record(CLIENT, "embed", () -> delegate.embed(document));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
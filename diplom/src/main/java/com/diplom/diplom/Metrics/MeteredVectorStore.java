@@ -0,0 +1,60 @@
+package com.diplom.diplom.Metrics;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+/**
+ * Обёртка над VectorStore: время add/delete/similaritySearch и размеры пакетов.
+ * Время самого эмбеддинга внутри этих вызовов отдельно пишет MeteredEmbeddingModel.
+ */
+public class MeteredVectorStore implements VectorStore {
+
+    static final String CLIENT = "vector_store";
+
+    private final VectorStore delegate;
+    private final OutboundCallMetrics metrics;
+
+    public MeteredVectorStore(VectorStore delegate, OutboundCallMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        metrics.recordSize("bookshelf.vector.documents", "Документов в одном вызове VectorStore.add",
+                CLIENT, documents.size());
+        metrics.run(CLIENT, "add", () -> delegate.add(documents));
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        metrics.run(CLIENT, "delete", () -> delegate.delete(idList));
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        metrics.run(CLIENT, "delete", () -> delegate.delete(filterExpression));
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        List<Document> result = metrics.record(CLIENT, "similarity_search", () -> delegate.similaritySearch(request));
+        metrics.recordSize("bookshelf.vector.hits", "Документов в ответе similaritySearch", CLIENT, result.size());
+        return result;
+    }
+
+    @Override
+    public <T> Optional<T> getNativeClient() {
+        return delegate.getNativeClient();
+    }
+}
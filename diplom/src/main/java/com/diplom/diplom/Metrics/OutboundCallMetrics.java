@@ -0,0 +1,66 @@
+package com.diplom.diplom.Metrics;
+
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Таймеры и счётчики ошибок для внешних вызовов: Google Books, Ollama,
+ * VectorStore и "сырые" SQL по vector_store. Все вызовы пишутся в
+ * bookshelf.outbound.calls с тегами client/operation/outcome.
+ * MeterRegistry берётся лениво, т.к. класс используется из BeanPostProcessor.
+ */
+@Component
+@RequiredArgsConstructor
+public class OutboundCallMetrics {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public <T> T record(String client, String operation, Supplier<T> call) {
+        MeterRegistry registry = meterRegistry.getObject();
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "error";
+        try {
+            T result = call.get();
+            outcome = "success";
+            return result;
+        } catch (RuntimeException e) {
+            Counter.builder("bookshelf.outbound.errors")
+                    .description("Ошибки внешних вызовов")
+                    .tags("client", client, "operation", operation, "exception", e.getClass().getSimpleName())
+                    .register(registry)
+                    .increment();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("bookshelf.outbound.calls")
+                    .description("Время внешних вызовов")
+                    .tags("client", client, "operation", operation, "outcome", outcome)
+                    .register(registry));
+        }
+    }
+
+    public void run(String client, String operation, Runnable call) {
+        record(client, operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Размер полезной нагрузки (книг в ответе, токенов, документов) для оценки ёмкости.
+     */
+    public void recordSize(String name, String description, String client, double amount) {
+        DistributionSummary.builder(name)
+                .description(description)
+                .tags("client", client)
+                .register(meterRegistry.getObject())
+                .record(amount);
+    }
+}
@@ -0,0 +1,78 @@
+package com.diplom.diplom.Metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Для каждого запроса к контроллеру записывает число SQL, число загруженных
+ * сущностей и время обработки в Micrometer с тегами controller/method.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class QueryMetricsInterceptor implements HandlerInterceptor {
+
+    private static final String START_SNAPSHOT = QueryMetricsInterceptor.class.getName() + ".snapshot";
+    private static final String START_NANOS = QueryMetricsInterceptor.class.getName() + ".start";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.metrics.sql-warn-threshold:30}")
+    private long sqlWarnThreshold;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod) {
+            request.setAttribute(START_SNAPSHOT, QueryStatistics.snapshot());
+            request.setAttribute(START_NANOS, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        if (!(handler instanceof HandlerMethod handlerMethod)
+                || !(request.getAttribute(START_SNAPSHOT) instanceof QueryStatistics.Snapshot start)) {
+            return;
+        }
+        long elapsed = System.nanoTime() - (Long) request.getAttribute(START_NANOS);
+        QueryStatistics.Snapshot used = QueryStatistics.snapshot().since(start);
+
+        String controller = handlerMethod.getBeanType().getSimpleName();
+        String method = handlerMethod.getMethod().getName();
+
+        DistributionSummary.builder("bookshelf.http.sql.statements")
+                .description("SQL-запросов на один HTTP-запрос")
+                .tags("controller", controller, "method", method)
+                .register(meterRegistry)
+                .record(used.statements());
+        DistributionSummary.builder("bookshelf.http.sql.entities")
+                .description("Сущностей, загруженных Hibernate за один HTTP-запрос")
+                .tags("controller", controller, "method", method)
+                .register(meterRegistry)
+                .record(used.entitiesLoaded());
+        Timer.builder("bookshelf.http.handler")
+                .description("Время обработки запроса контроллером")
+                .tags("controller", controller, "method", method)
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+
+        if (used.statements() > sqlWarnThreshold) {
+            log.warn("{}.{}: {} SQL-запросов, {} сущностей — возможен N+1",
+                    controller, method, used.statements(), used.entitiesLoaded());
+        }
+    }
+}
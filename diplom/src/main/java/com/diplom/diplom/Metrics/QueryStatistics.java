@@ -0,0 +1,34 @@
+package com.diplom.diplom.Metrics;
+
+/**
+ * Счётчики SQL-запросов и загруженных сущностей для текущего потока.
+ * Значения только растут; чтобы узнать стоимость участка кода, берут
+ * snapshot() до и после и вычитают.
+ */
+public final class QueryStatistics {
+
+    private static final ThreadLocal<long[]> COUNTERS = ThreadLocal.withInitial(() -> new long[2]);
+
+    private QueryStatistics() {
+    }
+
+    public static Snapshot snapshot() {
+        long[] counters = COUNTERS.get();
+        return new Snapshot(counters[0], counters[1]);
+    }
+
+    static void statementExecuted() {
+        COUNTERS.get()[0]++;
+    }
+
+    static void entityLoaded() {
+        COUNTERS.get()[1]++;
+    }
+
+    public record Snapshot(long statements, long entitiesLoaded) {
+
+        public Snapshot since(Snapshot start) {
+            return new Snapshot(statements - start.statements, entitiesLoaded - start.entitiesLoaded);
+        }
+    }
+}
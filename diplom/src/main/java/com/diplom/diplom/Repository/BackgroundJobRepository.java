@@ -0,0 +1,88 @@
+package com.diplom.diplom.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.diplom.diplom.Entity.BackgroundJob;
+import com.diplom.diplom.Entity.JobStatus;
+import com.diplom.diplom.Entity.JobType;
+
+@Repository
+public interface BackgroundJobRepository extends JpaRepository<BackgroundJob, Long> {
+
+    Page<BackgroundJob> findAllByOrderByIdDesc(Pageable pageable);
+
+    Optional<BackgroundJob> findFirstByTypeAndParamsIsNullAndStatusInOrderByIdAsc(JobType type,
+            Collection<JobStatus> statuses);
+
+    @Query(value = """
+            SELECT * FROM background_jobs
+            WHERE status = 'QUEUED'
+            ORDER BY id
+            LIMIT 1
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<BackgroundJob> lockNextQueued();
+
+    @Modifying
+    @Query("""
+            UPDATE BackgroundJob j
+            SET j.processed = j.processed + :processed, j.failed = j.failed + :failed,
+                j.checkpoint = :checkpoint, j.updatedAt = :now
+            WHERE j.id = :id
+            """)
+    int addProgress(Long id, long processed, long failed, String checkpoint, LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE BackgroundJob j SET j.total = :total, j.updatedAt = :now WHERE j.id = :id")
+    int updateTotal(Long id, Long total, LocalDateTime now);
+
+    /**
+     * Отмена задачи из очереди — только если её ещё не забрали: иначе
+     * выполняющаяся задача была бы записана как CANCELLED.
+     */
+    @Modifying
+    @Query("""
+            UPDATE BackgroundJob j
+            SET j.status = com.diplom.diplom.Entity.JobStatus.CANCELLED, j.finishedAt = :now, j.updatedAt = :now
+            WHERE j.id = :id AND j.status = com.diplom.diplom.Entity.JobStatus.QUEUED
+            """)
+    int cancelQueued(Long id, LocalDateTime now);
+
+    @Modifying
+    @Query("""
+            UPDATE BackgroundJob j SET j.cancelRequested = true, j.updatedAt = :now
+            WHERE j.id = :id AND j.status = com.diplom.diplom.Entity.JobStatus.RUNNING
+            """)
+    int requestCancel(Long id, LocalDateTime now);
+
+    @Query("SELECT j.cancelRequested FROM BackgroundJob j WHERE j.id = :id")
+    boolean isCancelRequested(Long id);
+
+    @Modifying
+    @Query("""
+            UPDATE BackgroundJob j SET j.updatedAt = :now
+            WHERE j.id IN :ids AND j.status = com.diplom.diplom.Entity.JobStatus.RUNNING
+            """)
+    int heartbeat(Collection<Long> ids, LocalDateTime now);
+
+    /**
+     * Задачи экземпляра, который упал или был перезапущен: давно не сообщали о
+     * прогрессе — возвращаем в очередь, они продолжат с checkpoint.
+     */
+    @Modifying
+    @Query("""
+            UPDATE BackgroundJob j SET j.status = com.diplom.diplom.Entity.JobStatus.QUEUED, j.updatedAt = :now
+            WHERE j.status = com.diplom.diplom.Entity.JobStatus.RUNNING AND j.updatedAt < :staleBefore
+            """)
+    int requeueStale(LocalDateTime staleBefore, LocalDateTime now);
+}
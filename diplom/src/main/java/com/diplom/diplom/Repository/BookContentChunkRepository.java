@@ -0,0 +1,36 @@
+package com.diplom.diplom.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.diplom.diplom.Entity.BookContentChunk;
+
+@Repository
+public interface BookContentChunkRepository extends JpaRepository<BookContentChunk, BookContentChunk.Key> {
+
+    @Query("SELECT c.startOffset FROM BookContentChunk c WHERE c.bookId = :bookId ORDER BY c.chunkNo")
+    List<Integer> findStartOffsets(Long bookId);
+
+    @Query("SELECT c.text FROM BookContentChunk c WHERE c.bookId = :bookId AND c.chunkNo = :chunkNo")
+    Optional<String> findText(Long bookId, int chunkNo);
+
+    /**
+     * Вставка мимо контекста персистентности: сохранённые через save куски
+     * оставались бы в нём до конца транзакции, то есть весь текст — в памяти.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO book_content_chunks (book_id, chunk_no, start_offset, text)
+            VALUES (:bookId, :chunkNo, :startOffset, :text)
+            """, nativeQuery = true)
+    void insert(Long bookId, int chunkNo, int startOffset, String text);
+
+    @Modifying
+    @Query("DELETE FROM BookContentChunk c WHERE c.bookId = :bookId")
+    int deleteByBookId(Long bookId);
+}
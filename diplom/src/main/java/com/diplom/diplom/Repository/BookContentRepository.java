@@ -1,10 +1,48 @@
 package com.diplom.diplom.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.diplom.diplom.Entity.BookContent;
 
+import jakarta.persistence.LockModeType;
+
 @Repository
 public interface BookContentRepository extends JpaRepository<BookContent, Long> {
+
+    @Query("SELECT c.id FROM BookContent c ORDER BY c.id")
+    List<Long> findAllIds();
+
+    /**
+     * Заголовок текста без самого content: у старых книг он целиком лежит в этой строке.
+     */
+    @Query("SELECT c.length FROM BookContent c WHERE c.id = :bookId")
+    Optional<Integer> findLength(Long bookId);
+
+    @Query("SELECT c.content FROM BookContent c WHERE c.id = :bookId")
+    Optional<String> findContent(Long bookId);
+
+    /**
+     * Блокирует строку на время переноса старого текста в куски.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM BookContent c WHERE c.id = :bookId")
+    Optional<BookContent> findByIdForUpdate(Long bookId);
+
+    @Modifying
+    @Query("""
+            UPDATE BookContent c SET c.content = NULL, c.length = :length, c.charset = :charset, c.hash = :hash
+            WHERE c.id = :bookId
+            """)
+    int updateHeader(Long bookId, int length, String charset, String hash);
+
+    @Modifying
+    @Query("UPDATE BookContent c SET c.hash = :hash WHERE c.id = :bookId")
+    int updateHash(Long bookId, String hash);
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.diplom.diplom.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.diplom.diplom.Entity.BookNeighbour;
+
+@Repository
+public interface BookNeighbourRepository extends JpaRepository<BookNeighbour, BookNeighbour.Key> {
+
+    List<BookNeighbour> findByBookIdOrderByPosition(Long bookId);
+
+    /**
+     * Книги, в списках похожих которых есть хотя бы одна из указанных.
+     */
+    @Query("SELECT DISTINCT n.bookId FROM BookNeighbour n WHERE n.neighbourId IN :neighbourIds")
+    List<Long> findBookIdsByNeighbourIdIn(Collection<Long> neighbourIds);
+
+    @Modifying
+    @Query("DELETE FROM BookNeighbour n WHERE n.bookId = :bookId")
+    int deleteByBookId(Long bookId);
+}
@@ -0,0 +1,135 @@
+package com.diplom.diplom.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.diplom.diplom.Metrics.OutboundCallMetrics;
+
+/**
+ * Фрагменты текста книг с векторами (таблица book_passages из schema-postgres.sql).
+ * Близость — 1 - косинусное расстояние, как в vector_store.
+ */
+@Repository
+public class BookPassageRepository {
+
+    private static final String CLIENT = "book_passages";
+    private static final int MAX_EF_SEARCH = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboundCallMetrics outboundCallMetrics;
+
+    public BookPassageRepository(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            OutboundCallMetrics outboundCallMetrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.outboundCallMetrics = outboundCallMetrics;
+    }
+
+    /**
+     * Положение фрагмента в тексте книги; смещения — в единицах char.
+     */
+    public record Passage(int ordinal, int start, int end, String contentHash, String text) {
+    }
+
+    public record Stored(long id, int ordinal, int start, int end, String contentHash) {
+    }
+
+    public record Hit(Long bookId, String title, int ordinal, int start, int end, String text, double score) {
+    }
+
+    public List<Stored> findByBook(Long bookId) {
+        return outboundCallMetrics.record(CLIENT, "jdbc_find_by_book", () -> jdbcTemplate.query("""
+                SELECT id, ordinal, start_offset, end_offset, content_hash FROM book_passages WHERE book_id = ?
+                """,
+                (row, rowNumber) -> new Stored(row.getLong(1), row.getInt(2), row.getInt(3), row.getInt(4),
+                        row.getString(5)),
+                bookId));
+    }
+
+    /**
+     * Одной транзакцией удаляет фрагменты, которых больше нет в тексте, и
+     * переносит сохранившиеся (тот же текст, другое место) без пересчёта вектора.
+     */
+    public void update(Collection<Long> removedIds, Map<Long, Passage> moved) {
+        if (removedIds.isEmpty() && moved.isEmpty()) {
+            return;
+        }
+        List<Object[]> moves = new ArrayList<>(moved.size());
+        moved.forEach((id, passage) -> moves.add(new Object[] {
+                passage.ordinal(), passage.start(), passage.end(), id }));
+        outboundCallMetrics.run(CLIENT, "jdbc_update", () -> transactionTemplate.executeWithoutResult(status -> {
+            if (!removedIds.isEmpty()) {
+                jdbcTemplate.update("DELETE FROM book_passages WHERE id = ANY(?)",
+                        (Object) removedIds.toArray(Long[]::new));
+            }
+            if (!moves.isEmpty()) {
+                jdbcTemplate.batchUpdate(
+                        "UPDATE book_passages SET ordinal = ?, start_offset = ?, end_offset = ? WHERE id = ?", moves);
+            }
+        }));
+    }
+
+    public void insert(Long bookId, List<Passage> passages, List<float[]> vectors) {
+        List<Object[]> rows = new ArrayList<>(passages.size());
+        for (int i = 0; i < passages.size(); i++) {
+            Passage passage = passages.get(i);
+            rows.add(new Object[] { bookId, passage.ordinal(), passage.start(), passage.end(), passage.contentHash(),
+                    passage.text(), PgBookVectorRepository.toLiteral(vectors.get(i)) });
+        }
+        outboundCallMetrics.run(CLIENT, "jdbc_insert", () -> jdbcTemplate.batchUpdate("""
+                INSERT INTO book_passages (book_id, ordinal, start_offset, end_offset, content_hash, text, embedding)
+                VALUES (?, ?, ?, ?, ?, ?, ?::vector)
+                """, rows));
+    }
+
+    /**
+     * Ближайшие к вектору запроса фрагменты среди публичных книг и личных копий
+     * userId. По всему каталогу — через HNSW-индекс; внутри одной книги
+     * фрагментов немного, и они перебираются точно (MATERIALIZED не даёт
+     * планировщику уйти в HNSW-индекс, который отфильтровал бы почти всех кандидатов).
+     *
+     * @param bookId null — по всем книгам
+     */
+    public List<Hit> search(float[] vector, Long userId, Long bookId, double minScore, int limit) {
+        String literal = PgBookVectorRepository.toLiteral(vector);
+        String sql = (bookId == null ? "" : "WITH p AS MATERIALIZED (SELECT * FROM book_passages WHERE book_id = ?)\n")
+                + """
+                SELECT * FROM (
+                    SELECT p.book_id, b.title, p.ordinal, p.start_offset, p.end_offset, p.text,
+                           1 - (p.embedding <=> ?::vector) AS score
+                    FROM %s
+                    JOIN books b ON b.id = p.book_id
+                    WHERE (b.owner_id IS NULL OR b.owner_id = ?)
+                    ORDER BY p.embedding <=> ?::vector
+                    LIMIT ?) h
+                WHERE h.score >= ?
+                ORDER BY h.score DESC
+                """.formatted(bookId == null ? "book_passages p" : "p");
+        List<Object> params = new ArrayList<>();
+        if (bookId != null) {
+            params.add(bookId);
+        }
+        params.add(literal);
+        params.add(userId);
+        params.add(literal);
+        params.add(limit);
+        params.add(minScore);
+
+        return outboundCallMetrics.record(CLIENT, "jdbc_search", () -> transactionTemplate.execute(status -> {
+            jdbcTemplate.queryForObject("SELECT set_config('hnsw.ef_search', ?, true)", String.class,
+                    Integer.toString(Math.min(MAX_EF_SEARCH, Math.max(40, limit))));
+            return jdbcTemplate.query(sql,
+                    (row, rowNumber) -> new Hit(row.getLong("book_id"), row.getString("title"), row.getInt("ordinal"),
+                            row.getInt("start_offset"), row.getInt("end_offset"), row.getString("text"),
+                            row.getDouble("score")),
+                    params.toArray());
+        }));
+    }
+}
@@ -1,10 +1,14 @@
 package com.diplom.diplom.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -17,19 +21,54 @@ public interface BookRepository extends JpaRepository<Book, Long> {
 
         Optional<Book> findByIsbn(String isbn);
 
+        Window<Book> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+        /**
+         * Keyset-страница каталога по id для фоновых обходов всех книг.
+         */
+        List<Book> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
         Optional<Book> findByGoogleBookId(String googleBookId);
 
         Optional<Book> findByTitleAndAuthor(String title, String author);
 
-        @Query("""
-                        SELECT b
-                        FROM Book b
-                        WHERE LOWER(b.title)  LIKE LOWER(CONCAT('%', :query, '%'))
-                           OR LOWER(b.author) LIKE LOWER(CONCAT('%', :query, '%'))
-                           OR LOWER(b.isbn)   LIKE LOWER(CONCAT('%', :query, '%'))
-                        """)
-        Page<Book> searchByTitleOrAuthorOrIsbn(@org.springframework.data.repository.query.Param("query") String query,
-                        org.springframework.data.domain.Pageable pageable);
+        /**
+         * Полнотекстовый поиск по search_vector (см. schema-postgres.sql) с
+         * триграммным fallback для опечаток. Возвращает только id в порядке
+         * релевантности и общее число совпадений, посчитанное в том же проходе.
+         */
+        @Query(value = """
+                        SELECT b.id AS id, count(*) OVER () AS total
+                        FROM books b
+                        WHERE b.search_vector @@ (to_tsquery('russian', :tsQuery) || to_tsquery('simple', :tsQuery))
+                           OR lower(b.title) % lower(:query)
+                           OR lower(b.author) % lower(:query)
+                           OR b.isbn = :query
+                        ORDER BY ts_rank_cd(b.search_vector,
+                                         to_tsquery('russian', :tsQuery) || to_tsquery('simple', :tsQuery)) DESC,
+                                 greatest(similarity(lower(b.title), lower(:query)),
+                                          similarity(lower(b.author), lower(:query))) DESC,
+                                 b.id
+                        LIMIT :limit OFFSET :offset
+                        """, nativeQuery = true)
+        List<SearchHit> fullTextSearch(@Param("query") String query,
+                        @Param("tsQuery") String tsQuery,
+                        @Param("limit") int limit,
+                        @Param("offset") long offset);
+
+        /**
+         * Число совпадений fullTextSearch — для страницы за последним
+         * совпадением, где строк с total нет.
+         */
+        @Query(value = """
+                        SELECT count(*)
+                        FROM books b
+                        WHERE b.search_vector @@ (to_tsquery('russian', :tsQuery) || to_tsquery('simple', :tsQuery))
+                           OR lower(b.title) % lower(:query)
+                           OR lower(b.author) % lower(:query)
+                           OR b.isbn = :query
+                        """, nativeQuery = true)
+        long countFullTextSearch(@Param("query") String query, @Param("tsQuery") String tsQuery);
 
         @Query("SELECT b FROM Book b WHERE b.isbn = :query OR " +
                         "LOWER(b.title) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
@@ -38,4 +77,20 @@ public interface BookRepository extends JpaRepository<Book, Long> {
 
         @Query("SELECT b.isbn FROM Book b WHERE b.isbn IN :isbns")
         Set<String> findExistingIsbns(@Param("isbns") List<String> isbns);
+
+        @Query("SELECT b.id FROM Book b WHERE b.id IN :ids")
+        Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+        /**
+         * Из ids — те, что видны пользователю: общие книги и его личные копии
+         * (как scope VISIBLE семантического поиска). userId null — только общие.
+         */
+        @Query("SELECT b.id FROM Book b WHERE b.id IN :ids AND (b.owner IS NULL OR b.owner.id = :userId)")
+        Set<Long> findVisibleIds(@Param("ids") Collection<Long> ids, @Param("userId") Long userId);
+
+        interface SearchHit {
+                Long getId();
+
+                Long getTotal();
+        }
 }
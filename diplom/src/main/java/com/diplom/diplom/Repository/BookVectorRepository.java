@@ -0,0 +1,97 @@
+package com.diplom.diplom.Repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import com.diplom.diplom.Entity.DTO.SemanticSearchFilter;
+
+/**
+ * Векторы книг по id книги. VectorStore из Spring AI ищет только по тексту
+ * запроса, который каждый раз уходит в модель; здесь — вектор книги и поиск
+ * соседей по уже сохранённому вектору. Реализация выбирается вместе с
+ * VectorStore по spring.ai.vectorstore.type: таблица vector_store
+ * (PgBookVectorRepository) или индекс HNSW в процессе (HnswBookVectorRepository).
+ * Близость — косинусная, 1 - косинусное расстояние.
+ */
+public interface BookVectorRepository {
+
+    record Hit(Long bookId, double score) {
+    }
+
+    /**
+     * id документа книги в хранилище: у книги ровно один вектор, и повторная
+     * запись — upsert по id, а не DELETE + INSERT. Совпадает с
+     * md5('book:' || book_id)::uuid в Postgres (см. PgBookVectorRepository.migrate).
+     */
+    static UUID documentId(Long bookId) {
+        try {
+            byte[] md5 = MessageDigest.getInstance("MD5").digest(("book:" + bookId).getBytes(StandardCharsets.UTF_8));
+            ByteBuffer buffer = ByteBuffer.wrap(md5);
+            return new UUID(buffer.getLong(), buffer.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 недоступен", e);
+        }
+    }
+
+    Optional<float[]> findVector(Long bookId);
+
+    /**
+     * Ближайшие к вектору книги; удалённые книги, чьи векторы ещё не
+     * вычищены, пропускаются.
+     */
+    List<Hit> findNearest(float[] vector, int limit);
+
+    /**
+     * Страница семантического поиска по близости с фильтрами по книге.
+     *
+     * @param userId владелец личных копий для scope VISIBLE/PERSONAL
+     */
+    List<Hit> search(float[] vector, SemanticSearchFilter filter, Long userId, double minScore,
+            long offset, int limit);
+
+    /**
+     * book_id -> content_hash всех его векторов; у векторов без хэша — пустая строка.
+     */
+    Map<Long, Set<String>> findContentHashes(Collection<Long> bookIds);
+
+    /**
+     * Удаляет векторы книг по их id документов (documentId), без поиска по metadata.
+     */
+    int deleteByBookIds(Collection<Long> bookIds);
+
+    /**
+     * Векторы книг, которых уже нет в каталоге.
+     */
+    int deleteOrphans();
+
+    /**
+     * Ближайшие к сохранённому вектору книги, без обращения к модели. Сама
+     * книга и повторные векторы одной книги в результат не попадают.
+     *
+     * @return пусто, если у книги нет вектора
+     */
+    default List<Hit> findNearestToBook(Long bookId, int limit) {
+        return findVector(bookId)
+                .map(vector -> findNearest(vector, limit + 2).stream()
+                        .filter(hit -> !hit.bookId().equals(bookId))
+                        .filter(distinctBooks())
+                        .limit(limit)
+                        .toList())
+                .orElse(List.of());
+    }
+
+    private static Predicate<Hit> distinctBooks() {
+        Set<Long> seen = new HashSet<>();
+        return hit -> seen.add(hit.bookId());
+    }
+}
@@ -0,0 +1,91 @@
+package com.diplom.diplom.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.diplom.diplom.Entity.EmbeddingStatus;
+import com.diplom.diplom.Entity.EmbeddingTask;
+
+@Repository
+public interface EmbeddingTaskRepository extends JpaRepository<EmbeddingTask, Long> {
+
+    Optional<EmbeddingTask> findByBookId(Long bookId);
+
+    /**
+     * Ставит книгу в очередь одним оператором: две транзакции, одновременно
+     * меняющие одну книгу, не упираются в уникальный book_id, а сливаются в
+     * одну строку PENDING.
+     */
+    @Modifying
+    @Query(value = """
+            INSERT INTO embedding_outbox (book_id, status, attempts, next_attempt_at, last_error, updated_at, referrer_ids)
+            VALUES (:bookId, 'PENDING', 0, :now, NULL, :now, :referrerIds)
+            ON CONFLICT (book_id) DO UPDATE
+            SET status = 'PENDING', attempts = 0, next_attempt_at = EXCLUDED.next_attempt_at, last_error = NULL,
+                updated_at = EXCLUDED.updated_at, referrer_ids = EXCLUDED.referrer_ids
+            """, nativeQuery = true)
+    int upsertPending(Long bookId, String referrerIds, LocalDateTime now);
+
+    /**
+     * Захват пачки задач. SKIP LOCKED позволяет нескольким экземплярам
+     * приложения разбирать outbox, не блокируя друг друга.
+     */
+    @Query(value = """
+            SELECT * FROM embedding_outbox
+            WHERE status = 'PENDING' AND next_attempt_at <= :now
+            ORDER BY next_attempt_at, id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<EmbeddingTask> lockPending(LocalDateTime now, int limit);
+
+    /**
+     * Завершение учитывает только строки, которые всё ещё в обработке: если книгу
+     * успели изменить ещё раз, строка уже снова PENDING и её нельзя затирать.
+     */
+    @Modifying
+    @Query("""
+            UPDATE EmbeddingTask t SET t.status = :status, t.lastError = :error, t.updatedAt = :now
+            WHERE t.id IN :ids AND t.status = com.diplom.diplom.Entity.EmbeddingStatus.PROCESSING
+            """)
+    int finish(Collection<Long> ids, EmbeddingStatus status, String error, LocalDateTime now);
+
+    @Modifying
+    @Query("""
+            UPDATE EmbeddingTask t
+            SET t.status = com.diplom.diplom.Entity.EmbeddingStatus.PENDING, t.nextAttemptAt = :nextAttemptAt,
+                t.lastError = :error, t.updatedAt = :now
+            WHERE t.id = :id AND t.status = com.diplom.diplom.Entity.EmbeddingStatus.PROCESSING
+            """)
+    int retryLater(Long id, LocalDateTime nextAttemptAt, String error, LocalDateTime now);
+
+    /**
+     * Задачи, которые взял упавший или перезапущенный экземпляр, возвращаются в очередь.
+     */
+    @Modifying
+    @Query("""
+            UPDATE EmbeddingTask t SET t.status = com.diplom.diplom.Entity.EmbeddingStatus.PENDING, t.updatedAt = :now
+            WHERE t.status = com.diplom.diplom.Entity.EmbeddingStatus.PROCESSING AND t.updatedAt < :staleBefore
+            """)
+    int releaseStale(LocalDateTime staleBefore, LocalDateTime now);
+
+    @Query("SELECT t.status AS status, COUNT(t) AS total FROM EmbeddingTask t GROUP BY t.status")
+    List<StatusCount> countByStatus();
+
+    List<EmbeddingTask> findByStatus(EmbeddingStatus status);
+
+    List<EmbeddingTask> findTop50ByStatusOrderByUpdatedAtDesc(EmbeddingStatus status);
+
+    interface StatusCount {
+        EmbeddingStatus getStatus();
+
+        Long getTotal();
+    }
+}
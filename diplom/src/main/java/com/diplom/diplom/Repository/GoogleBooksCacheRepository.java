@@ -0,0 +1,18 @@
+package com.diplom.diplom.Repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import com.diplom.diplom.Entity.GoogleBooksCacheEntry;
+
+@Repository
+public interface GoogleBooksCacheRepository extends JpaRepository<GoogleBooksCacheEntry, String> {
+
+    @Modifying
+    @Query("DELETE FROM GoogleBooksCacheEntry e WHERE e.expiresAt < :now")
+    int deleteExpired(LocalDateTime now);
+}
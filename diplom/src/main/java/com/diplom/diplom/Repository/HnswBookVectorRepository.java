@@ -0,0 +1,157 @@
+package com.diplom.diplom.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import com.diplom.diplom.Entity.Book;
+import com.diplom.diplom.Entity.DTO.SemanticSearchFilter;
+import com.diplom.diplom.Search.HnswIndex;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * BookVectorRepository поверх индекса HNSW в процессе (spring.ai.vectorstore.type=hnsw).
+ * Фильтры семантического поиска относятся к книгам, а не к векторам, поэтому
+ * применяются после поиска по индексу: кандидаты проверяются по таблице books
+ * одним запросом по первичному ключу, и если после фильтра их не хватает на
+ * страницу, поиск повторяется с вдвое большим k.
+ */
+@Repository
+@ConditionalOnProperty(name = "spring.ai.vectorstore.type", havingValue = "hnsw")
+@Slf4j
+public class HnswBookVectorRepository implements BookVectorRepository {
+
+    private static final int MAX_EF_SEARCH = 1000;
+    private static final int ID_BATCH_SIZE = 1000;
+
+    private final HnswIndex index;
+    private final BookRepository bookRepository;
+    private final int defaultEfSearch;
+
+    public HnswBookVectorRepository(
+            HnswIndex index,
+            BookRepository bookRepository,
+            @Value("${app.search.vector.ef-search:40}") int defaultEfSearch) {
+        this.index = index;
+        this.bookRepository = bookRepository;
+        this.defaultEfSearch = defaultEfSearch;
+    }
+
+    /**
+     * Запись идёт в отображаемый файл сразу; периодический force лишь
+     * ограничивает то, что может потеряться при отказе машины.
+     */
+    @Scheduled(fixedDelayString = "${app.vector.hnsw.flush-interval:PT1M}",
+            initialDelayString = "${app.vector.hnsw.flush-interval:PT1M}")
+    public void flush() {
+        index.flush();
+    }
+
+    @Override
+    public Optional<float[]> findVector(Long bookId) {
+        return index.vector(bookId);
+    }
+
+    @Override
+    public List<Hit> findNearest(float[] vector, int limit) {
+        List<HnswIndex.Result> results = index.search(vector, limit, Math.max(defaultEfSearch, limit));
+        Set<Long> existing = bookRepository.findExistingIds(
+                results.stream().map(HnswIndex.Result::bookId).collect(Collectors.toSet()));
+        return results.stream()
+                .filter(result -> existing.contains(result.bookId()))
+                .map(result -> new Hit(result.bookId(), result.score()))
+                .toList();
+    }
+
+    @Override
+    public List<Hit> search(float[] vector, SemanticSearchFilter filter, Long userId, double minScore,
+            long offset, int limit) {
+        int wanted = (int) Math.min(Integer.MAX_VALUE, offset + limit);
+        int ef = filter.getEfSearch() != null ? filter.getEfSearch() : defaultEfSearch;
+        int k = wanted;
+        while (true) {
+            List<HnswIndex.Result> results = index.search(vector, k, Math.min(MAX_EF_SEARCH, Math.max(ef, k)));
+            List<Hit> accepted = accept(results, filter, userId, minScore);
+            boolean exhausted = results.size() < k
+                    || results.get(results.size() - 1).score() < minScore
+                    || k >= index.size();
+            if (accepted.size() >= wanted || exhausted) {
+                return accepted.stream().skip(offset).limit(limit).toList();
+            }
+            k = (int) Math.min((long) k * 2, index.size());
+        }
+    }
+
+    @Override
+    public Map<Long, Set<String>> findContentHashes(Collection<Long> bookIds) {
+        return index.contentHashes(bookIds);
+    }
+
+    @Override
+    public int deleteByBookIds(Collection<Long> bookIds) {
+        return bookIds.isEmpty() ? 0 : index.removeBooks(bookIds);
+    }
+
+    @Override
+    public int deleteOrphans() {
+        List<Long> indexed = new ArrayList<>(index.bookIds());
+        Set<Long> orphans = new HashSet<>();
+        for (int from = 0; from < indexed.size(); from += ID_BATCH_SIZE) {
+            List<Long> batch = indexed.subList(from, Math.min(from + ID_BATCH_SIZE, indexed.size()));
+            Set<Long> existing = bookRepository.findExistingIds(batch);
+            batch.stream().filter(id -> !existing.contains(id)).forEach(orphans::add);
+        }
+        return deleteByBookIds(orphans);
+    }
+
+    private List<Hit> accept(List<HnswIndex.Result> results, SemanticSearchFilter filter, Long userId,
+            double minScore) {
+        List<HnswIndex.Result> close = results.stream()
+                .filter(result -> result.score() >= minScore)
+                .toList();
+        Map<Long, Book> books = bookRepository.findAllById(close.stream().map(HnswIndex.Result::bookId)
+                        .collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        Set<Long> seen = new HashSet<>();
+        List<Hit> hits = new ArrayList<>();
+        for (HnswIndex.Result result : close) {
+            Book book = books.get(result.bookId());
+            if (book != null && matches(book, filter, userId) && seen.add(book.getId())) {
+                hits.add(new Hit(book.getId(), result.score()));
+            }
+        }
+        return hits;
+    }
+
+    private static boolean matches(Book book, SemanticSearchFilter filter, Long userId) {
+        Long ownerId = book.getOwner() != null ? book.getOwner().getId() : null;
+        boolean visible = switch (filter.getScope()) {
+            case PUBLIC -> ownerId == null;
+            case PERSONAL -> ownerId != null && ownerId.equals(userId);
+            default -> ownerId == null || ownerId.equals(userId);
+        };
+        if (!visible) {
+            return false;
+        }
+        if (filter.getGenres() != null && !filter.getGenres().isEmpty()
+                && (book.getGenres() == null || book.getGenres().stream().noneMatch(filter.getGenres()::contains))) {
+            return false;
+        }
+        return filter.getHasContent() == null
+                || filter.getHasContent().equals(Objects.requireNonNullElse(book.getHasBookContent(), false));
+    }
+}
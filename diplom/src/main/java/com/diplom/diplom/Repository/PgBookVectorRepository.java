@@ -0,0 +1,340 @@
+package com.diplom.diplom.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.diplom.diplom.Entity.DTO.SemanticSearchFilter;
+import com.diplom.diplom.Metrics.OutboundCallMetrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * BookVectorRepository поверх таблицы vector_store (PgVectorStore).
+ * Близость — 1 - косинусное расстояние, как в PgVectorStore.
+ */
+@Repository
+@ConditionalOnProperty(name = "spring.ai.vectorstore.type", havingValue = "pgvector", matchIfMissing = true)
+@Slf4j
+public class PgBookVectorRepository implements BookVectorRepository {
+
+    private static final String CLIENT = "vector_store";
+    private static final int MAX_EF_SEARCH = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboundCallMetrics outboundCallMetrics;
+
+    private final int defaultEfSearch;
+    private final String iterativeScan;
+    private final PgVectorIndex vectorIndex;
+
+    public PgBookVectorRepository(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            OutboundCallMetrics outboundCallMetrics,
+            @Value("${app.search.vector.ef-search:40}") int defaultEfSearch,
+            @Value("${app.search.vector.iterative-scan:off}") String iterativeScan,
+            @Value("${app.search.vector.quantization:none}") String quantization,
+            @Value("${app.search.vector.index-dimensions:0}") int indexDimensions,
+            @Value("${spring.ai.vectorstore.pgvector.dimensions:768}") int dimensions,
+            @Value("${app.search.vector.rerank-factor:4}") int rerankFactor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.outboundCallMetrics = outboundCallMetrics;
+        this.defaultEfSearch = defaultEfSearch;
+        this.iterativeScan = iterativeScan;
+        this.vectorIndex = new PgVectorIndex(
+                PgVectorIndex.Quantization.valueOf(quantization.toUpperCase(Locale.ROOT)),
+                indexDimensions > 0 ? indexDimensions : dimensions, dimensions, rerankFactor);
+    }
+
+    /**
+     * Все поиски по книге идут по metadata->>'book_id'; таблицу создаёт
+     * PgVectorStore, поэтому индексы добавляются после старта, а не в schema-postgres.sql.
+     * Индекс по book_id уникальный: после migrate у книги один вектор.
+     * Сжатый HNSW-индекс строится здесь же; полный индекс PgVectorStore при
+     * этом можно отключить (spring.ai.vectorstore.pgvector.index-type=NONE).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        migrate();
+        createIndex("DROP INDEX IF EXISTS idx_vector_store_book_id");
+        createIndex("CREATE UNIQUE INDEX IF NOT EXISTS uq_vector_store_book_id ON vector_store ((metadata->>'book_id'))");
+        if (vectorIndex.reranked()) {
+            createIndex(vectorIndex.createIndexSql());
+        }
+    }
+
+    /**
+     * Переводит vector_store на детерминированные id (BookVectorRepository.documentId).
+     * Векторы, записанные раньше со случайными id, могли задвоиться, если
+     * запись упала между DELETE и INSERT: у каждой книги остаётся один вектор —
+     * с уже детерминированным id, если такой есть, — остальные удаляются, затем
+     * id оставшихся пересчитываются. Повторный запуск ничего не меняет.
+     */
+    public void migrate() {
+        try {
+            int duplicates = jdbcTemplate.update("""
+                    DELETE FROM vector_store WHERE id IN (
+                        SELECT id FROM (
+                            SELECT id, row_number() OVER (
+                                PARTITION BY metadata->>'book_id'
+                                ORDER BY id = md5('book:' || (metadata->>'book_id'))::uuid DESC, id) AS n
+                            FROM vector_store
+                            WHERE metadata->>'book_id' IS NOT NULL) ranked
+                        WHERE n > 1)
+                    """);
+            int renamed = jdbcTemplate.update("""
+                    UPDATE vector_store SET id = md5('book:' || (metadata->>'book_id'))::uuid
+                    WHERE metadata->>'book_id' IS NOT NULL
+                      AND id <> md5('book:' || (metadata->>'book_id'))::uuid
+                    """);
+            if (duplicates > 0 || renamed > 0) {
+                log.info("vector_store: удалено дублей {}, переведено на детерминированные id {}", duplicates, renamed);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Миграция id в vector_store не выполнена: {}", e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    private void createIndex(String sql) {
+        try {
+            jdbcTemplate.execute(sql);
+        } catch (DataAccessException e) {
+            log.warn("Индекс vector_store не создан ({}): {}", sql, e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    @Override
+    public Optional<float[]> findVector(Long bookId) {
+        return outboundCallMetrics.record(CLIENT, "jdbc_find_vector", () -> jdbcTemplate.query(
+                "SELECT embedding::text FROM vector_store WHERE metadata->>'book_id' = ? LIMIT 1",
+                (row, rowNumber) -> parse(row.getString(1)),
+                bookId.toString()).stream().findFirst());
+    }
+
+    /**
+     * Ближайшие к вектору книги (HNSW-индекс); удалённые книги, чьи векторы ещё не
+     * вычищены, пропускаются.
+     */
+    @Override
+    public List<Hit> findNearest(float[] vector, int limit) {
+        String literal = toLiteral(vector);
+        if (!vectorIndex.reranked()) {
+            return outboundCallMetrics.record(CLIENT, "jdbc_nearest", () -> jdbcTemplate.query("""
+                    SELECT v.metadata->>'book_id' AS book_id, 1 - (v.embedding <=> ?::vector) AS score
+                    FROM vector_store v
+                    WHERE EXISTS (SELECT 1 FROM books b WHERE b.id::text = v.metadata->>'book_id')
+                    ORDER BY v.embedding <=> ?::vector
+                    LIMIT ?
+                    """,
+                    (row, rowNumber) -> new Hit(Long.valueOf(row.getString("book_id")), row.getDouble("score")),
+                    literal, literal, limit));
+        }
+        int candidates = limit * vectorIndex.rerankFactor();
+        String sql = """
+                SELECT c.book_id, 1 - (c.embedding <=> ?::vector) AS score
+                FROM (SELECT v.metadata->>'book_id' AS book_id, v.embedding
+                      FROM vector_store v
+                      WHERE EXISTS (SELECT 1 FROM books b WHERE b.id::text = v.metadata->>'book_id')
+                      ORDER BY %s %s %s
+                      LIMIT ?) c
+                ORDER BY c.embedding <=> ?::vector
+                LIMIT ?
+                """.formatted(vectorIndex.expression("v.embedding"), vectorIndex.operator(),
+                vectorIndex.expression("?::vector"));
+        return outboundCallMetrics.record(CLIENT, "jdbc_nearest", () -> withEfSearch(candidates, () ->
+                jdbcTemplate.query(sql,
+                        (row, rowNumber) -> new Hit(Long.valueOf(row.getString("book_id")), row.getDouble("score")),
+                        literal, literal, candidates, literal, limit)));
+    }
+
+    /**
+     * Страница семантического поиска. Фильтры и OFFSET/LIMIT применяются в
+     * самом запросе, порядок строк — по близости. hnsw.ef_search выставляется
+     * на транзакцию и не меньше числа нужных индексу кандидатов: HNSW-индекс
+     * отдаёт не больше ef_search строк, и без этого глубокие страницы были бы
+     * пустыми. При сжатом индексе кандидатов в rerankFactor раз больше, их
+     * порядок и порог близости считаются по полному вектору. При селективных
+     * фильтрах кандидатов может не хватить — для этого есть
+     * app.search.vector.iterative-scan (pgvector 0.8+).
+     *
+     * @param userId владелец личных копий для scope VISIBLE/PERSONAL
+     */
+    @Override
+    public List<Hit> search(float[] vector, SemanticSearchFilter filter, Long userId, double minScore,
+            long offset, int limit) {
+        String literal = toLiteral(vector);
+        List<String> conditions = new ArrayList<>();
+        List<Object> conditionParams = new ArrayList<>();
+        switch (filter.getScope()) {
+            case PUBLIC -> conditions.add("b.owner_id IS NULL");
+            case PERSONAL -> {
+                conditions.add("b.owner_id = ?");
+                conditionParams.add(userId);
+            }
+            default -> {
+                conditions.add("(b.owner_id IS NULL OR b.owner_id = ?)");
+                conditionParams.add(userId);
+            }
+        }
+        if (filter.getGenres() != null && !filter.getGenres().isEmpty()) {
+            conditions.add("b.genres && CAST(? AS varchar[])");
+            conditionParams.add(filter.getGenres().toArray(String[]::new));
+        }
+        if (filter.getHasContent() != null) {
+            conditions.add("b.has_book_content = ?");
+            conditionParams.add(filter.getHasContent());
+        }
+
+        String sql;
+        List<Object> params = new ArrayList<>();
+        long needed;
+        if (!vectorIndex.reranked()) {
+            sql = """
+                    SELECT b.id AS book_id, 1 - (v.embedding <=> ?::vector) AS score
+                    FROM vector_store v
+                    JOIN books b ON b.id::text = v.metadata->>'book_id'
+                    WHERE 1 - (v.embedding <=> ?::vector) >= ? AND %s
+                    ORDER BY v.embedding <=> ?::vector, b.id
+                    LIMIT ? OFFSET ?
+                    """.formatted(String.join(" AND ", conditions));
+            params.add(literal);
+            params.add(literal);
+            params.add(minScore);
+            params.addAll(conditionParams);
+            params.add(literal);
+            needed = offset + limit;
+        } else {
+            sql = """
+                    SELECT c.book_id, 1 - (c.embedding <=> ?::vector) AS score
+                    FROM (SELECT b.id AS book_id, v.embedding
+                          FROM vector_store v
+                          JOIN books b ON b.id::text = v.metadata->>'book_id'
+                          WHERE %s
+                          ORDER BY %s %s %s
+                          LIMIT ?) c
+                    WHERE 1 - (c.embedding <=> ?::vector) >= ?
+                    ORDER BY c.embedding <=> ?::vector, c.book_id
+                    LIMIT ? OFFSET ?
+                    """.formatted(String.join(" AND ", conditions), vectorIndex.expression("v.embedding"),
+                    vectorIndex.operator(), vectorIndex.expression("?::vector"));
+            needed = (offset + limit) * vectorIndex.rerankFactor();
+            params.add(literal);
+            params.addAll(conditionParams);
+            params.add(literal);
+            params.add(needed);
+            params.add(literal);
+            params.add(minScore);
+            params.add(literal);
+        }
+        params.add(limit);
+        params.add(offset);
+
+        int efSearch = (int) Math.max(filter.getEfSearch() != null ? filter.getEfSearch() : defaultEfSearch, needed);
+        return outboundCallMetrics.record(CLIENT, "jdbc_search", () -> withEfSearch(efSearch, () ->
+                jdbcTemplate.query(sql,
+                        (row, rowNumber) -> new Hit(row.getLong("book_id"), row.getDouble("score")),
+                        params.toArray())));
+    }
+
+    private <T> T withEfSearch(int efSearch, Supplier<T> query) {
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.queryForObject("SELECT set_config('hnsw.ef_search', ?, true)", String.class,
+                    Integer.toString(Math.min(MAX_EF_SEARCH, efSearch)));
+            if (!"off".equals(iterativeScan)) {
+                jdbcTemplate.queryForObject("SELECT set_config('hnsw.iterative_scan', ?, true)", String.class,
+                        iterativeScan);
+            }
+            return query.get();
+        });
+    }
+
+    @Override
+    public Map<Long, Set<String>> findContentHashes(Collection<Long> bookIds) {
+        Map<Long, Set<String>> hashes = new HashMap<>();
+        if (bookIds.isEmpty()) {
+            return hashes;
+        }
+        outboundCallMetrics.run(CLIENT, "jdbc_select_hashes", () -> jdbcTemplate.query(
+                "SELECT metadata->>'book_id', metadata->>'content_hash' FROM vector_store"
+                        + " WHERE metadata->>'book_id' = ANY(?)",
+                row -> {
+                    hashes.computeIfAbsent(Long.valueOf(row.getString(1)), id -> new HashSet<>())
+                            .add(Objects.requireNonNullElse(row.getString(2), ""));
+                },
+                (Object) toIds(bookIds)));
+        return hashes;
+    }
+
+    @Override
+    public int deleteByBookIds(Collection<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return 0;
+        }
+        String[] documentIds = bookIds.stream()
+                .map(bookId -> BookVectorRepository.documentId(bookId).toString())
+                .toArray(String[]::new);
+        return outboundCallMetrics.record(CLIENT, "jdbc_delete_by_book", () -> jdbcTemplate.update(
+                "DELETE FROM vector_store WHERE id = ANY(CAST(? AS uuid[]))", (Object) documentIds));
+    }
+
+    @Override
+    public int deleteOrphans() {
+        return outboundCallMetrics.record(CLIENT, "jdbc_delete_orphans", () -> jdbcTemplate.update("""
+                DELETE FROM vector_store v
+                WHERE NOT EXISTS (SELECT 1 FROM books b WHERE b.id::text = v.metadata->>'book_id')
+                """));
+    }
+
+    private static String[] toIds(Collection<Long> bookIds) {
+        return bookIds.stream().map(String::valueOf).toArray(String[]::new);
+    }
+
+    /**
+     * Текстовый формат pgvector: [0.1,0.2,...]. Драйвер Postgres подключён
+     * только в runtime, поэтому без PGvector.
+     */
+    static String toLiteral(float[] vector) {
+        StringBuilder literal = new StringBuilder(vector.length * 12).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                literal.append(',');
+            }
+            literal.append(vector[i]);
+        }
+        return literal.append(']').toString();
+    }
+
+    private static float[] parse(String literal) {
+        String body = literal.trim();
+        if (body.length() < 2 || body.charAt(0) != '[' || body.charAt(body.length() - 1) != ']') {
+            throw new DataRetrievalFailureException("Некорректный вектор в vector_store: " + literal);
+        }
+        String[] parts = body.substring(1, body.length() - 1).split(",");
+        float[] vector = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            vector[i] = Float.parseFloat(parts[i]);
+        }
+        return vector;
+    }
+}
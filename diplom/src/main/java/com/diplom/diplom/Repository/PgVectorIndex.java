@@ -0,0 +1,84 @@
+package com.diplom.diplom.Repository;
+
+import java.util.Locale;
+
+/**
+ * Какое представление вектора лежит в HNSW-индексе vector_store. Сам столбец
+ * embedding остаётся полным vector: индекс строится по выражению, а при
+ * сжатом индексе итоговый порядок пересчитывается по полному вектору
+ * (rerank) для rerankFactor * k кандидатов.
+ * <p>
+ * HALFVEC — float16, индекс вдвое меньше, полнота почти как у полного.
+ * BINARY — один бит на измерение (знак), индекс в 32 раза меньше, без
+ * rerank полнота заметно падает. dimensions меньше полной размерности —
+ * Matryoshka-усечение: берутся первые dimensions компонент (embeddinggemma
+ * обучена так, что 512/256/128 первых компонент остаются осмысленным эмбеддингом).
+ * int8 в pgvector не поддерживается, поэтому его здесь нет.
+ *
+ * @param dimensions размерность в индексе; равна fullDimensions — без усечения
+ */
+public record PgVectorIndex(Quantization quantization, int dimensions, int fullDimensions, int rerankFactor) {
+
+    public enum Quantization {
+        NONE,
+        HALFVEC,
+        BINARY
+    }
+
+    public PgVectorIndex {
+        if (dimensions <= 0 || dimensions > fullDimensions) {
+            throw new IllegalArgumentException("Размерность индекса должна быть от 1 до " + fullDimensions
+                    + ", задано " + dimensions);
+        }
+        if (rerankFactor < 1) {
+            throw new IllegalArgumentException("rerank-factor должен быть не меньше 1");
+        }
+    }
+
+    public boolean truncated() {
+        return dimensions < fullDimensions;
+    }
+
+    /**
+     * Нужен ли пересчёт по полному вектору: без сжатия и усечения порядок индекса уже точный.
+     */
+    public boolean reranked() {
+        return quantization != Quantization.NONE || truncated();
+    }
+
+    /**
+     * Выражение, по которому строится индекс; в ORDER BY должно совпадать
+     * текстуально (с точностью до алиаса), иначе планировщик индекс не возьмёт.
+     *
+     * @param vector столбец или параметр типа vector
+     */
+    public String expression(String vector) {
+        String reduced = truncated() ? "subvector(" + vector + ", 1, " + dimensions + ")" : vector;
+        return switch (quantization) {
+            case NONE -> truncated() ? "(" + reduced + ")::vector(" + dimensions + ")" : vector;
+            case HALFVEC -> "(" + reduced + ")::halfvec(" + dimensions + ")";
+            case BINARY -> "binary_quantize(" + reduced + ")::bit(" + dimensions + ")";
+        };
+    }
+
+    /**
+     * Расстояние в индексе: косинусное, для битов — Хэмминга.
+     */
+    public String operator() {
+        return quantization == Quantization.BINARY ? "<~>" : "<=>";
+    }
+
+    public String indexName() {
+        return "idx_vector_store_embedding_" + quantization.name().toLowerCase(Locale.ROOT) + "_" + dimensions;
+    }
+
+    public String createIndexSql() {
+        String operatorClass = switch (quantization) {
+            case NONE -> "vector_cosine_ops";
+            case HALFVEC -> "halfvec_cosine_ops";
+            case BINARY -> "bit_hamming_ops";
+        };
+        return "CREATE INDEX IF NOT EXISTS " + indexName() + " ON vector_store USING hnsw (("
+                + expression("embedding") + ") " + operatorClass + ")";
+    }
+}
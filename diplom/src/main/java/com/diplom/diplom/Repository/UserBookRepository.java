@@ -6,6 +6,8 @@ import java.util.Set;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
@@ -20,6 +22,14 @@ public interface UserBookRepository extends JpaRepository<UserBook, Long>, JpaSp
 
     Optional<UserBook> findByUserAndBook(User user, Book book);
 
+    /**
+     * Книга подтягивается тем же запросом, что и страница полки, вместо
+     * отдельного select на каждую строку.
+     */
+    @Override
+    @EntityGraph(attributePaths = "book")
+    Page<UserBook> findAll(Specification<UserBook> spec, Pageable pageable);
+
     Page<UserBook> findByUserId(Long userId, Pageable pageable);
 
     Page<UserBook> findByUserUsername(String username, Pageable pageable);
@@ -28,8 +38,18 @@ public interface UserBookRepository extends JpaRepository<UserBook, Long>, JpaSp
 
     Page<UserBook> findByUser(User user, Pageable pageable);
 
+    @EntityGraph(attributePaths = "book")
     Page<UserBook> findByUserAndStatus(User user, String status, Pageable pageable);
 
     @Query("SELECT ub.book.id FROM UserBook ub WHERE ub.user.id = :userId AND ub.book.id IN :bookIds")
     Set<Long> findBookIdsByUser(Long userId, List<Long> bookIds);
+
+    @Query("SELECT ub.book.id AS bookId, COUNT(ub) AS readers FROM UserBook ub GROUP BY ub.book.id")
+    List<BookPopularity> countReadersByBook();
+
+    interface BookPopularity {
+        Long getBookId();
+
+        Long getReaders();
+    }
 }
@@ -0,0 +1,29 @@
+package com.diplom.diplom.Search;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Откладывает изменение индекса или кэша в памяти до коммита текущей
+ * транзакции: при откате индекс не должен ссылаться на несуществующие книги
+ * или терять существующие, а кэш, сброшенный до коммита, успевают заполнить
+ * старыми данными. Вне транзакции изменение применяется сразу.
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,299 @@
+package com.diplom.diplom.Search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import com.diplom.diplom.Entity.Book;
+import com.diplom.diplom.Repository.BookRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Инвертированный индекс каталога в памяти JVM (title/author/isbn/genres/annotation).
+ * Включается свойством app.search.in-memory.enabled, строится из BookRepository
+ * при старте и обновляется BookService при каждом изменении книги — после
+ * коммита, чтобы откат не оставлял в индексе лишних или потерянных книг.
+ * Перестройка собирает новый индекс без блокировки и подменяет им старый,
+ * повторяя на нём изменения, пришедшие за это время.
+ * Поиск возвращает только id книг, сами книги грузятся одним findAllById.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookSearchIndex {
+
+    private static final int REBUILD_PAGE_SIZE = 500;
+
+    private static final float TITLE_WEIGHT = 3.0f;
+    private static final float ISBN_WEIGHT = 3.0f;
+    private static final float AUTHOR_WEIGHT = 2.0f;
+    private static final float GENRE_WEIGHT = 1.5f;
+    private static final float ANNOTATION_WEIGHT = 0.5f;
+
+    private static final float PREFIX_FACTOR = 0.8f;
+    private static final float FUZZY_FACTOR = 0.5f;
+
+    private final BookRepository bookRepository;
+
+    @Value("${app.search.in-memory.enabled:false}")
+    private boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Inverted inverted = new Inverted();
+
+    // Изменения, пришедшие во время перестройки: применяются и к новому индексу после подмены
+    private List<Consumer<Inverted>> changesDuringRebuild;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Inverted rebuilt = new Inverted();
+        try {
+            int pageNumber = 0;
+            Page<Book> page;
+            do {
+                page = bookRepository.findAll(PageRequest.of(pageNumber++, REBUILD_PAGE_SIZE, Sort.by("id")));
+                for (Book book : page) {
+                    rebuilt.add(book.getId(), weightsOf(book));
+                }
+            } while (page.hasNext());
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild.forEach(change -> change.accept(rebuilt));
+            changesDuringRebuild = null;
+            inverted = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Поисковый индекс построен: {} книг, {} термов", rebuilt.documentTerms.size(),
+                rebuilt.postings.size());
+    }
+
+    /**
+     * Термы книги считаются сразу, а в индекс попадают после коммита транзакции.
+     */
+    public void index(Book book) {
+        if (!enabled || book.getId() == null) {
+            return;
+        }
+        Long bookId = book.getId();
+        Map<String, Float> weights = weightsOf(book);
+        AfterCommit.run(() -> apply(current -> {
+            current.remove(bookId);
+            current.add(bookId, weights);
+        }));
+    }
+
+    public void remove(Long bookId) {
+        if (!enabled) {
+            return;
+        }
+        AfterCommit.run(() -> apply(current -> current.remove(bookId)));
+    }
+
+    private void apply(Consumer<Inverted> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(inverted);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Все слова запроса должны найтись в книге (AND). Слово совпадает точно или
+     * как префикс терма; если ни того, ни другого нет — ищем термы с опечаткой.
+     */
+    public SearchHits search(String query, int offset, int limit) {
+        List<String> tokens = TextNormalizer.tokenize(query);
+        if (tokens.isEmpty()) {
+            return SearchHits.empty();
+        }
+
+        Map<Long, Float> scores = null;
+        lock.readLock().lock();
+        try {
+            for (String token : tokens) {
+                Map<Long, Float> tokenScores = matchToken(token);
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    scores.keySet().retainAll(tokenScores.keySet());
+                    scores.replaceAll((id, score) -> score + tokenScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    return SearchHits.empty();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map.Entry<Long, Float>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Long, Float>comparingByValue(Comparator.reverseOrder())
+                .thenComparing(Map.Entry.comparingByKey()));
+
+        List<Long> ids = ranked.stream()
+                .skip(offset)
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+        return new SearchHits(ids, ranked.size());
+    }
+
+    private Map<Long, Float> matchToken(String token) {
+        Map<Long, Float> result = new HashMap<>();
+        NavigableMap<String, Map<Long, Float>> postings = inverted.postings;
+        Map<String, Map<Long, Float>> prefixed = postings.subMap(token, true, token + Character.MAX_VALUE, true);
+        prefixed.forEach((term, docs) -> {
+            float factor = term.equals(token) ? 1.0f : PREFIX_FACTOR;
+            docs.forEach((id, weight) -> result.merge(id, weight * factor, Math::max));
+        });
+        if (!result.isEmpty()) {
+            return result;
+        }
+
+        int maxDistance = token.length() <= 5 ? 1 : 2;
+        if (token.length() <= 2) {
+            return result;
+        }
+        // Опечатка в первой букве встречается редко, а перебор всего словаря дорог
+        String first = token.substring(0, 1);
+        postings.subMap(first, true, first + Character.MAX_VALUE, true).forEach((term, docs) -> {
+            if (Math.abs(term.length() - token.length()) <= maxDistance
+                    && editDistance(term, token, maxDistance) <= maxDistance) {
+                docs.forEach((id, weight) -> result.merge(id, weight * FUZZY_FACTOR, Math::max));
+            }
+        });
+        return result;
+    }
+
+    private Map<String, Float> weightsOf(Book book) {
+        Map<String, Float> weights = new HashMap<>();
+        addField(weights, book.getTitle(), TITLE_WEIGHT);
+        addField(weights, book.getAuthor(), AUTHOR_WEIGHT);
+        if (book.getIsbn() != null) {
+            addField(weights, book.getIsbn().replace("-", ""), ISBN_WEIGHT);
+        }
+        if (book.getGenres() != null) {
+            book.getGenres().forEach(genre -> addField(weights, genre, GENRE_WEIGHT));
+        }
+        addField(weights, book.getAnnotation(), ANNOTATION_WEIGHT);
+        return weights;
+    }
+
+    private void addField(Map<String, Float> weights, String text, float weight) {
+        for (String token : TextNormalizer.tokenize(text)) {
+            weights.merge(token, weight, Math::max);
+        }
+    }
+
+    /**
+     * Постинги и термы книг. Не потокобезопасно — доступ под lock, кроме
+     * нового индекса во время перестройки, который видно только ей.
+     */
+    private static final class Inverted {
+        // терм -> (id книги -> вес терма в книге)
+        private final NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+
+        // id книги -> её термы, нужны для удаления старой версии документа
+        private final Map<Long, Set<String>> documentTerms = new HashMap<>();
+
+        private void add(Long bookId, Map<String, Float> weights) {
+            weights.forEach((term, weight) -> postings
+                    .computeIfAbsent(term, t -> new HashMap<>())
+                    .put(bookId, weight));
+            documentTerms.put(bookId, new HashSet<>(weights.keySet()));
+        }
+
+        private void remove(Long bookId) {
+            Set<String> terms = documentTerms.remove(bookId);
+            if (terms == null) {
+                return;
+            }
+            for (String term : terms) {
+                Map<Long, Float> docs = postings.get(term);
+                if (docs != null) {
+                    docs.remove(bookId);
+                    if (docs.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Расстояние Левенштейна с ранним выходом, как только оно гарантированно
+     * превысит maxDistance.
+     */
+    private static int editDistance(String a, String b, int maxDistance) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxDistance) {
+                return rowMin;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,481 @@
+package com.diplom.diplom.Search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import com.diplom.diplom.Entity.Book;
+import com.diplom.diplom.Entity.DTO.BookSuggestionDTO;
+import com.diplom.diplom.Repository.BookRepository;
+import com.diplom.diplom.Repository.UserBookRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Сжатое префиксное дерево (radix tree) нормализованных названий и авторов
+ * для автодополнения: цепочки узлов с одним ребёнком сливаются в одно ребро
+ * со строкой-меткой, поэтому узлов не больше, чем ветвлений и концов ключей.
+ * В каждом узле хранится готовый top-k книг поддерева по популярности
+ * (числу записей UserBook), поэтому запрос — это только спуск по префиксу.
+ * Изменения применяются после коммита транзакции. Перестройка собирает новое
+ * дерево без блокировки и подменяет им старое; изменения, пришедшие за это
+ * время, повторяются на новом дереве.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookSuggestIndex {
+
+    private static final int REBUILD_PAGE_SIZE = 500;
+    private static final int TOP_K = 10;
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final long[] NO_BOOKS = new long[0];
+
+    private final BookRepository bookRepository;
+    private final UserBookRepository userBookRepository;
+
+    @Value("${app.search.suggest.enabled:true}")
+    private boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Trie trie = new Trie();
+
+    // Изменения, пришедшие во время перестройки: применяются и к новому дереву после подмены
+    private List<Consumer<Trie>> changesDuringRebuild;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // Дерево строится без блокировки: подсказки всё это время отвечают по старому
+        Trie rebuilt = new Trie();
+        try {
+            Map<Long, Long> readers = new HashMap<>();
+            userBookRepository.countReadersByBook()
+                    .forEach(row -> readers.put(row.getBookId(), row.getReaders()));
+            int pageNumber = 0;
+            Page<Book> page;
+            do {
+                page = bookRepository.findAll(PageRequest.of(pageNumber++, REBUILD_PAGE_SIZE, Sort.by("id")));
+                for (Book book : page) {
+                    rebuilt.insert(book, readers.getOrDefault(book.getId(), 0L));
+                }
+            } while (page.hasNext());
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild.forEach(change -> change.accept(rebuilt));
+            changesDuringRebuild = null;
+            trie = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Индекс автодополнения построен: {} книг", rebuilt.entries.size());
+    }
+
+    public List<BookSuggestionDTO> suggest(String prefix, int limit) {
+        String normalized = TextNormalizer.normalize(prefix);
+        if (!enabled || normalized.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            return trie.suggest(normalized, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ключи книги считаются сразу, а в дерево попадают после коммита транзакции.
+     */
+    public void index(Book book) {
+        if (!enabled || book.getId() == null) {
+            return;
+        }
+        Long bookId = book.getId();
+        String title = book.getTitle();
+        String author = book.getAuthor();
+        // Личные копии пользователей дублируют публичные книги и в подсказках не нужны
+        Set<String> keys = book.getOwner() != null ? Set.of() : keysOf(book);
+        apply(current -> {
+            Entry previous = current.entries.get(bookId);
+            long popularity = previous != null ? previous.popularity : 0L;
+            current.delete(bookId);
+            current.insert(bookId, title, author, keys, popularity);
+        });
+    }
+
+    public void remove(Long bookId) {
+        if (!enabled) {
+            return;
+        }
+        apply(current -> current.delete(bookId));
+    }
+
+    /**
+     * Книгу добавили на полку или убрали с неё: пересчитываем top-k только на путях её ключей.
+     */
+    public void changePopularity(Long bookId, long delta) {
+        if (!enabled) {
+            return;
+        }
+        apply(current -> current.changePopularity(bookId, delta));
+    }
+
+    private void apply(Consumer<Trie> change) {
+        AfterCommit.run(() -> applyNow(change));
+    }
+
+    private void applyNow(Consumer<Trie> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(trie);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Дерево ключей и данные книг. Не потокобезопасно — доступ под lock,
+     * кроме нового дерева во время перестройки, которое видно только ей.
+     */
+    private final class Trie {
+        private final Node root = new Node("");
+        private final Map<Long, Entry> entries = new HashMap<>();
+
+        private final Comparator<Long> byPopularity = Comparator
+                .comparingLong((Long id) -> -entries.get(id).popularity)
+                .thenComparing(Comparator.naturalOrder());
+
+        private List<BookSuggestionDTO> suggest(String normalized, int limit) {
+            Node node = root;
+            int depth = 0;
+            while (depth < normalized.length()) {
+                Node next = node.child(normalized.charAt(depth));
+                if (next == null) {
+                    return List.of();
+                }
+                int common = commonPrefix(next.edge, normalized, depth);
+                // Префикс может закончиться посреди ребра: поддерево то же, что у узла за ним
+                if (depth + common < normalized.length() && common < next.edge.length()) {
+                    return List.of();
+                }
+                depth += common;
+                node = next;
+            }
+            List<BookSuggestionDTO> result = new ArrayList<>();
+            for (int i = 0; i < node.top.length && result.size() < limit; i++) {
+                Entry entry = entries.get(node.top[i]);
+                result.add(new BookSuggestionDTO(node.top[i], entry.title, entry.author));
+            }
+            return result;
+        }
+
+        private void changePopularity(Long bookId, long delta) {
+            Entry entry = entries.get(bookId);
+            if (entry == null) {
+                return;
+            }
+            entry.popularity = Math.max(0, entry.popularity + delta);
+            for (String key : entry.keys) {
+                if (delta > 0) {
+                    offerPath(key, bookId);
+                } else {
+                    refreshPath(key);
+                }
+            }
+        }
+
+        private void insert(Book book, long popularity) {
+            if (book.getOwner() == null) {
+                insert(book.getId(), book.getTitle(), book.getAuthor(), keysOf(book), popularity);
+            }
+        }
+
+        private void insert(Long bookId, String title, String author, Set<String> keys, long popularity) {
+            if (keys.isEmpty()) {
+                return;
+            }
+            entries.put(bookId, new Entry(title, author, popularity, keys));
+            for (String key : keys) {
+                getOrCreate(key).terminals.add(bookId);
+                offerPath(key, bookId);
+            }
+        }
+
+        /**
+         * Узел, в котором кончается key. Если key расходится с меткой ребра
+         * посередине, ребро делится промежуточным узлом.
+         */
+        private Node getOrCreate(String key) {
+            Node node = root;
+            int depth = 0;
+            while (depth < key.length()) {
+                Node next = node.child(key.charAt(depth));
+                if (next == null) {
+                    Node leaf = new Node(key.substring(depth));
+                    node.addChild(leaf);
+                    return leaf;
+                }
+                int common = commonPrefix(next.edge, key, depth);
+                if (common < next.edge.length()) {
+                    Node middle = new Node(next.edge.substring(0, common));
+                    next.edge = next.edge.substring(common);
+                    middle.addChild(next);
+                    // Поддерево то же самое, top-k у промежуточного узла не меняется
+                    middle.top = next.top;
+                    node.replaceChild(middle);
+                    next = middle;
+                }
+                depth += common;
+                node = next;
+            }
+            return node;
+        }
+
+        /**
+         * Узлы от корня вдоль key, пока метки рёбер совпадают с ним.
+         */
+        private List<Node> path(String key) {
+            List<Node> path = new ArrayList<>();
+            Node node = root;
+            path.add(node);
+            int depth = 0;
+            while (depth < key.length()) {
+                Node next = node.child(key.charAt(depth));
+                if (next == null || !key.startsWith(next.edge, depth)) {
+                    break;
+                }
+                depth += next.edge.length();
+                node = next;
+                path.add(node);
+            }
+            return path;
+        }
+
+        /**
+         * Книга стала "лучше" (новая или популярнее): достаточно предложить её в
+         * top-k каждого узла на пути, без полного пересчёта.
+         */
+        private void offerPath(String key, long bookId) {
+            for (Node node : path(key)) {
+                offer(node, bookId);
+            }
+        }
+
+        private void offer(Node node, long bookId) {
+            List<Long> top = new ArrayList<>(node.top.length + 1);
+            for (long id : node.top) {
+                if (id != bookId) {
+                    top.add(id);
+                }
+            }
+            int position = Collections.binarySearch(top, bookId, byPopularity);
+            top.add(position < 0 ? -position - 1 : position, bookId);
+            node.top = top.stream()
+                    .limit(TOP_K)
+                    .mapToLong(Long::longValue)
+                    .toArray();
+        }
+
+        private void delete(Long bookId) {
+            Entry entry = entries.get(bookId);
+            if (entry == null) {
+                return;
+            }
+            for (String key : entry.keys) {
+                List<Node> path = path(key);
+                Node last = path.get(path.size() - 1);
+                last.terminals.remove(bookId);
+            }
+            entries.remove(bookId);
+            for (String key : entry.keys) {
+                refreshPath(key);
+            }
+        }
+
+        /**
+         * Пересчитывает top-k снизу вверх по пути ключа. Top-k узла строится из его
+         * собственных книг и top-k детей — этого достаточно, т.к. книга, не попавшая
+         * в top-k ребёнка, не может попасть и в top-k родителя. Опустевшие узлы
+         * удаляются, а узел без своих книг с одним ребёнком сливается с ним.
+         */
+        private void refreshPath(String key) {
+            List<Node> path = path(key);
+            for (int i = path.size() - 1; i >= 0; i--) {
+                Node node = path.get(i);
+                Set<Long> candidates = new LinkedHashSet<>(node.terminals);
+                for (Node child : node.children) {
+                    for (long id : child.top) {
+                        candidates.add(id);
+                    }
+                }
+                node.top = candidates.stream()
+                        .filter(entries::containsKey)
+                        .sorted(byPopularity)
+                        .limit(TOP_K)
+                        .mapToLong(Long::longValue)
+                        .toArray();
+                if (i == 0) {
+                    continue;
+                }
+                Node parent = path.get(i - 1);
+                if (node.isEmpty()) {
+                    parent.removeChild(node.edge.charAt(0));
+                } else if (node.terminals.isEmpty() && node.children.length == 1) {
+                    Node only = node.children[0];
+                    only.edge = node.edge + only.edge;
+                    parent.replaceChild(only);
+                }
+            }
+        }
+    }
+
+    /**
+     * Длина общего начала метки ребра и key начиная с from.
+     */
+    private static int commonPrefix(String edge, String key, int from) {
+        int common = 0;
+        while (common < edge.length() && from + common < key.length()
+                && edge.charAt(common) == key.charAt(from + common)) {
+            common++;
+        }
+        return common;
+    }
+
+    /**
+     * Ключи книги: полное название, полный автор и "хвосты" с каждого следующего
+     * слова, чтобы "мир" находил "Война и мир", а "толстой" — "Лев Толстой".
+     */
+    private Set<String> keysOf(Book book) {
+        Set<String> keys = new LinkedHashSet<>();
+        addKeys(keys, book.getTitle());
+        addKeys(keys, book.getAuthor());
+        return keys;
+    }
+
+    private void addKeys(Set<String> keys, String text) {
+        List<String> words = TextNormalizer.tokenize(text);
+        for (int i = 0; i < words.size(); i++) {
+            String key = String.join(" ", words.subList(i, words.size()));
+            keys.add(key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key);
+        }
+    }
+
+    private static final class Entry {
+        private final String title;
+        private final String author;
+        private long popularity;
+        private final Set<String> keys;
+
+        private Entry(String title, String author, long popularity, Set<String> keys) {
+            this.title = title;
+            this.author = author;
+            this.popularity = popularity;
+            this.keys = keys;
+        }
+    }
+
+    /**
+     * Узел с меткой входящего ребра и компактным хранением детей:
+     * отсортированный массив первых символов их меток и параллельный массив
+     * узлов вместо HashMap на каждый узел.
+     */
+    private static final class Node {
+        private String edge;
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private final Set<Long> terminals = new LinkedHashSet<>(1);
+        private long[] top = NO_BOOKS;
+
+        private Node(String edge) {
+            this.edge = edge;
+        }
+
+        private Node child(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private void addChild(Node child) {
+            char label = child.edge.charAt(0);
+            int insertAt = -Arrays.binarySearch(labels, label) - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newLabels[insertAt] = label;
+            newChildren[insertAt] = child;
+            System.arraycopy(labels, insertAt, newLabels, insertAt + 1, labels.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        /**
+         * Ставит child на место ребёнка с тем же первым символом метки.
+         */
+        private void replaceChild(Node child) {
+            children[Arrays.binarySearch(labels, child.edge.charAt(0))] = child;
+        }
+
+        private void removeChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index < 0) {
+                return;
+            }
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(labels, index + 1, newLabels, index, labels.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        private boolean isEmpty() {
+            return terminals.isEmpty() && children.length == 0;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.diplom.diplom.Search;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Кодировка загружаемого текста книги по началу файла. BOM определяет
+ * UTF-8/UTF-16 однозначно; без него — UTF-8, если образец корректен как
+ * UTF-8, иначе однобайтовая кириллица: windows-1251 или KOI8-R. Их различает
+ * частота байтов: в русском тексте большинство букв строчные, а строчные
+ * в cp1251 лежат в 0xE0-0xFF, в KOI8-R — в 0xC0-0xDF.
+ */
+public final class CharsetDetector {
+
+    public static final Charset WINDOWS_1251 = Charset.forName("windows-1251");
+    public static final Charset KOI8_R = Charset.forName("KOI8-R");
+
+    private CharsetDetector() {
+    }
+
+    /**
+     * @param bomLength сколько байт BOM пропустить перед декодированием
+     */
+    public record Detected(Charset charset, int bomLength) {
+    }
+
+    public static Detected detect(byte[] sample, int length) {
+        if (startsWith(sample, length, 0xEF, 0xBB, 0xBF)) {
+            return new Detected(StandardCharsets.UTF_8, 3);
+        }
+        if (startsWith(sample, length, 0xFF, 0xFE)) {
+            return new Detected(StandardCharsets.UTF_16LE, 2);
+        }
+        if (startsWith(sample, length, 0xFE, 0xFF)) {
+            return new Detected(StandardCharsets.UTF_16BE, 2);
+        }
+        if (isUtf8(sample, length)) {
+            return new Detected(StandardCharsets.UTF_8, 0);
+        }
+        int lowerCp1251 = 0;
+        int lowerKoi8 = 0;
+        for (int i = 0; i < length; i++) {
+            int b = sample[i] & 0xFF;
+            if (b >= 0xE0) {
+                lowerCp1251++;
+            } else if (b >= 0xC0) {
+                lowerKoi8++;
+            }
+        }
+        return new Detected(lowerKoi8 > lowerCp1251 ? KOI8_R : WINDOWS_1251, 0);
+    }
+
+    /**
+     * Образец может оборваться посреди многобайтового символа — это не ошибка.
+     */
+    private static boolean isUtf8(byte[] sample, int length) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer in = ByteBuffer.wrap(sample, 0, length);
+        CharBuffer out = CharBuffer.allocate(length);
+        return !decoder.decode(in, out, false).isError() && in.remaining() < 4;
+    }
+
+    private static boolean startsWith(byte[] sample, int length, int... prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((sample[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
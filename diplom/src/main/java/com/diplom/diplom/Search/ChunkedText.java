@@ -0,0 +1,94 @@
+package com.diplom.diplom.Search;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Текст книги, хранящийся кусками (book_content_chunks), как CharSequence:
+ * куски подгружаются по требованию, в памяти держатся два последних — при
+ * последовательном чтении (нарезка на фрагменты, страницы) каждый кусок
+ * читается один раз, а фрагмент на стыке не вызывает повторной загрузки.
+ * Смещения — в единицах char по всему тексту. Не потокобезопасен.
+ */
+public class ChunkedText implements CharSequence {
+
+    private final int[] starts;
+    private final int length;
+    private final IntFunction<String> loader;
+
+    private int currentChunk = -1;
+    private String current;
+    private int previousChunk = -1;
+    private String previous;
+
+    /**
+     * @param starts смещения начала кусков по возрастанию, первый — 0
+     * @param loader текст куска по его номеру
+     */
+    public ChunkedText(int[] starts, int length, IntFunction<String> loader) {
+        this.starts = starts;
+        this.length = length;
+        this.loader = loader;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        if (currentChunk >= 0 && index >= starts[currentChunk]
+                && index - starts[currentChunk] < current.length()) {
+            return current.charAt(index - starts[currentChunk]);
+        }
+        int chunk = chunkOf(index);
+        return chunk(chunk).charAt(index - starts[chunk]);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + "), length " + length);
+        }
+        StringBuilder text = new StringBuilder(end - start);
+        int position = start;
+        while (position < end) {
+            int chunk = chunkOf(position);
+            String chunkText = chunk(chunk);
+            int from = position - starts[chunk];
+            int to = Math.min(chunkText.length(), end - starts[chunk]);
+            text.append(chunkText, from, to);
+            position += to - from;
+        }
+        return text.toString();
+    }
+
+    /**
+     * Собирает весь текст — только для небольших книг и старого API.
+     */
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+
+    private int chunkOf(int index) {
+        int found = Arrays.binarySearch(starts, index);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private String chunk(int chunk) {
+        if (chunk == currentChunk) {
+            return current;
+        }
+        String text = chunk == previousChunk ? previous : loader.apply(chunk);
+        previousChunk = currentChunk;
+        previous = current;
+        currentChunk = chunk;
+        current = text;
+        return text;
+    }
+}
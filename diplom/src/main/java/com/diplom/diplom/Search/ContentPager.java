@@ -0,0 +1,66 @@
+package com.diplom.diplom.Search;
+
+/**
+ * Разбиение текста книги на страницы примерно по pageSize символов. Граница
+ * страницы k считается только по тексту около k * pageSize: сдвигается назад
+ * к ближайшему пробелу (не дальше десятой части страницы), чтобы не рвать
+ * слова, и никогда не разрывает суррогатную пару. Поэтому страница находится
+ * без чтения предыдущих — для ChunkedText это один-два куска.
+ */
+public class ContentPager {
+
+    private final int pageSize;
+    private final int lookBehind;
+
+    public ContentPager(int pageSize) {
+        if (pageSize < 2) {
+            throw new IllegalArgumentException("Размер страницы должен быть не меньше 2: " + pageSize);
+        }
+        this.pageSize = pageSize;
+        this.lookBehind = pageSize / 10;
+    }
+
+    public record Page(int number, int start, int end) {
+    }
+
+    public int pageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Число страниц; у пустого текста одна пустая страница.
+     */
+    public int pageCount(int length) {
+        return Math.max(1, (int) (((long) length + pageSize - 1) / pageSize));
+    }
+
+    public Page page(CharSequence text, int number) {
+        return new Page(number, boundary(text, number), boundary(text, number + 1));
+    }
+
+    /**
+     * Страница, на которой находится символ offset, например начало
+     * найденного фрагмента.
+     */
+    public int pageOf(CharSequence text, int offset) {
+        int number = offset / pageSize;
+        return boundary(text, number + 1) <= offset ? number + 1 : number;
+    }
+
+    private int boundary(CharSequence text, int number) {
+        long nominal = (long) number * pageSize;
+        if (number <= 0) {
+            return 0;
+        }
+        if (nominal >= text.length()) {
+            return text.length();
+        }
+        int position = (int) nominal;
+        for (int i = position; i > position - lookBehind; i--) {
+            if (Character.isWhitespace(text.charAt(i - 1))) {
+                return i;
+            }
+        }
+        return Character.isLowSurrogate(text.charAt(position)) ? position - 1 : position;
+    }
+}
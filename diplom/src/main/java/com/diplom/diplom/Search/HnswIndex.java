@@ -0,0 +1,664 @@
+package com.diplom.diplom.Search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * HNSW-граф (Malkov, Yashunin) по косинусной близости, целиком лежащий в
+ * отображаемом в память файле: заголовок и записи узлов фиксированного
+ * размера — id книги, UUID документа, content_hash, ссылки по уровням и
+ * нормированный вектор. Файл отображается сегментами по SEGMENT_NODES узлов,
+ * поэтому растёт без перекладывания и не упирается в 2 ГБ одного буфера.
+ * В куче только словари UUID -> узел и книга -> узлы, они строятся при открытии.
+ * <p>
+ * Удаление помечает узел, он остаётся проходимым для поиска, но не попадает
+ * в результат. Если удалённых больше compactRatio или файл не был закрыт
+ * штатно (ссылки могли записаться наполовину), при открытии граф
+ * пересобирается из сохранённых векторов — без обращения к модели.
+ * <p>
+ * Запись — под write-lock, поиск — под read-lock.
+ */
+@Slf4j
+public class HnswIndex implements Closeable {
+
+    public record Params(int dimensions, int m, int efConstruction, double compactRatio) {
+    }
+
+    public record Result(UUID id, long bookId, double score) {
+    }
+
+    private record Candidate(int node, double similarity) {
+    }
+
+    private static final Comparator<Candidate> BEST_FIRST =
+            Comparator.comparingDouble(Candidate::similarity).reversed();
+    private static final Comparator<Candidate> WORST_FIRST =
+            Comparator.comparingDouble(Candidate::similarity);
+
+    private static final int MAGIC = 0x484E5357;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4096;
+    private static final int MAX_LEVEL = 8;
+    private static final int SEGMENT_NODES = 8192;
+
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_DIMENSIONS = 8;
+    private static final int H_M = 12;
+    private static final int H_COUNT = 16;
+    private static final int H_DELETED = 20;
+    private static final int H_ENTRY = 24;
+    private static final int H_TOP_LEVEL = 28;
+    private static final int H_DIRTY = 32;
+
+    private static final int R_BOOK = 0;
+    private static final int R_ID_MSB = 8;
+    private static final int R_ID_LSB = 16;
+    private static final int R_HASH = 24;
+    private static final int R_LEVEL = 56;
+    private static final int R_FLAGS = 60;
+    private static final int R_LINKS = 64;
+
+    private static final int FLAG_DELETED = 1;
+    private static final int FLAG_HASH = 2;
+    private static final int HASH_BYTES = 32;
+
+    private final Path path;
+    private final Params params;
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    private final int dimensions;
+    private final int m;
+    private final int m0;
+    private final double levelMultiplier;
+    private final int vectorOffset;
+    private final int recordSize;
+
+    private final Map<UUID, Integer> nodesById = new HashMap<>();
+    private final Map<Long, List<Integer>> nodesByBook = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int count;
+    private int deleted;
+    private int entryPoint;
+    private int topLevel;
+    private final boolean wasDirty;
+
+    private HnswIndex(Path path, Params params) throws IOException {
+        this.path = path;
+        this.params = params;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        boolean exists = Files.exists(path) && Files.size(path) >= HEADER_SIZE;
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.header = map(0, HEADER_SIZE);
+
+        if (exists) {
+            if (header.getInt(H_MAGIC) != MAGIC || header.getInt(H_VERSION) != VERSION) {
+                channel.close();
+                throw new IllegalStateException("Файл " + path + " не является индексом HNSW этой версии");
+            }
+            if (header.getInt(H_DIMENSIONS) != params.dimensions()) {
+                channel.close();
+                throw new IllegalStateException("Размерность векторов в " + path + " ("
+                        + header.getInt(H_DIMENSIONS) + ") не совпадает с настройкой (" + params.dimensions()
+                        + "): удалите файл и перегенерируйте векторы");
+            }
+            this.m = header.getInt(H_M);
+            this.count = header.getInt(H_COUNT);
+            this.deleted = header.getInt(H_DELETED);
+            this.entryPoint = header.getInt(H_ENTRY);
+            this.topLevel = header.getInt(H_TOP_LEVEL);
+            this.wasDirty = header.getInt(H_DIRTY) != 0;
+        } else {
+            this.m = params.m();
+            this.count = 0;
+            this.deleted = 0;
+            this.entryPoint = -1;
+            this.topLevel = 0;
+            this.wasDirty = false;
+            header.putInt(H_MAGIC, MAGIC);
+            header.putInt(H_VERSION, VERSION);
+            header.putInt(H_DIMENSIONS, params.dimensions());
+            header.putInt(H_M, m);
+        }
+        this.dimensions = params.dimensions();
+        this.m0 = 2 * m;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.vectorOffset = R_LINKS + 4 * (1 + m0) + MAX_LEVEL * 4 * (1 + m);
+        this.recordSize = vectorOffset + 4 * dimensions;
+
+        for (int node = 0; node < count; node++) {
+            ensureSegment(node);
+            if (!isDeleted(node)) {
+                nodesById.put(id(node), node);
+                nodesByBook.computeIfAbsent(bookId(node), id -> new ArrayList<>(1)).add(node);
+            }
+        }
+        writeHeader();
+    }
+
+    /**
+     * Открывает индекс (или создаёт пустой) и при необходимости пересобирает его.
+     */
+    public static HnswIndex open(Path path, Params params) throws IOException {
+        HnswIndex index = new HnswIndex(path, params);
+        if (index.wasDirty || (index.deleted > 0 && index.deleted > index.count * params.compactRatio())) {
+            log.info("Индекс HNSW {}: {}, пересборка из {} векторов", path,
+                    index.wasDirty ? "не был закрыт штатно" : "удалённых узлов " + index.deleted,
+                    index.count - index.deleted);
+            index = index.rebuild();
+        }
+        index.setDirty(true);
+        return index;
+    }
+
+    /**
+     * Добавляет вектор; документ с тем же id и прочие векторы той же книги
+     * заменяются — у книги один вектор, как и в vector_store.
+     */
+    public void put(UUID id, long bookId, String contentHash, float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Ожидался вектор размерности " + dimensions + ", получен " + vector.length);
+        }
+        lock.writeLock().lock();
+        try {
+            Integer existing = nodesById.get(id);
+            if (existing != null) {
+                markDeleted(existing);
+            }
+            List<Integer> sameBook = nodesByBook.get(bookId);
+            if (sameBook != null) {
+                List.copyOf(sameBook).forEach(this::markDeleted);
+            }
+            insert(id, bookId, contentHash, normalize(vector));
+            writeHeader();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(UUID id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodesById.get(id);
+            if (node == null) {
+                return false;
+            }
+            markDeleted(node);
+            writeHeader();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int removeBooks(Collection<Long> bookIds) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (Long bookId : bookIds) {
+                List<Integer> nodes = nodesByBook.get(bookId);
+                if (nodes == null) {
+                    continue;
+                }
+                for (Integer node : List.copyOf(nodes)) {
+                    markDeleted(node);
+                    removed++;
+                }
+            }
+            writeHeader();
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * k ближайших живых документов; ef — ширина поиска на нижнем уровне
+     * (не меньше k), больше ef — выше полнота и медленнее запрос.
+     */
+    public List<Result> search(float[] query, int k, int ef) {
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return List.of();
+            }
+            List<Candidate> entries = List.of(new Candidate(entryPoint, similarity(normalized, entryPoint)));
+            for (int level = topLevel; level > 0; level--) {
+                entries = searchLayer(normalized, entries, 1, level);
+            }
+            List<Candidate> found = searchLayer(normalized, entries, Math.max(ef, k), 0);
+            List<Result> results = new ArrayList<>(Math.min(k, found.size()));
+            for (Candidate candidate : found) {
+                if (results.size() == k) {
+                    break;
+                }
+                if (!isDeleted(candidate.node())) {
+                    results.add(new Result(id(candidate.node()), bookId(candidate.node()), candidate.similarity()));
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Сохранённый (нормированный) вектор книги.
+     */
+    public Optional<float[]> vector(long bookId) {
+        lock.readLock().lock();
+        try {
+            List<Integer> nodes = nodesByBook.get(bookId);
+            return nodes == null || nodes.isEmpty() ? Optional.empty() : Optional.of(vector(nodes.get(0)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * book_id -> content_hash всех его документов; у документов без хэша — пустая строка.
+     */
+    public Map<Long, Set<String>> contentHashes(Collection<Long> bookIds) {
+        lock.readLock().lock();
+        try {
+            Map<Long, Set<String>> hashes = new HashMap<>();
+            for (Long bookId : bookIds) {
+                List<Integer> nodes = nodesByBook.get(bookId);
+                if (nodes != null) {
+                    for (Integer node : nodes) {
+                        hashes.computeIfAbsent(bookId, id -> new HashSet<>()).add(contentHash(node));
+                    }
+                }
+            }
+            return hashes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Set<Long> bookIds() {
+        lock.readLock().lock();
+        try {
+            return Set.copyOf(nodesByBook.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count - deleted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            segments.forEach(MappedByteBuffer::force);
+            header.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!channel.isOpen()) {
+                return;
+            }
+            segments.forEach(MappedByteBuffer::force);
+            setDirty(false);
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private HnswIndex rebuild() throws IOException {
+        Path target = path.resolveSibling(path.getFileName() + ".rebuild");
+        Files.deleteIfExists(target);
+        try (HnswIndex rebuilt = new HnswIndex(target, new Params(dimensions, m, params.efConstruction(),
+                params.compactRatio()))) {
+            for (int node = 0; node < count; node++) {
+                if (!isDeleted(node)) {
+                    rebuilt.insert(id(node), bookId(node), contentHash(node), vector(node));
+                }
+            }
+            rebuilt.writeHeader();
+        }
+        channel.close();
+        Files.move(target, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new HnswIndex(path, params);
+    }
+
+    private void insert(UUID id, long bookId, String contentHash, float[] vector) {
+        int node = count;
+        ensureSegment(node);
+        int level = randomLevel();
+        MappedByteBuffer buffer = segment(node);
+        int base = base(node);
+        buffer.putLong(base + R_BOOK, bookId);
+        buffer.putLong(base + R_ID_MSB, id.getMostSignificantBits());
+        buffer.putLong(base + R_ID_LSB, id.getLeastSignificantBits());
+        int flags = 0;
+        if (contentHash != null && contentHash.length() == 2 * HASH_BYTES) {
+            buffer.put(base + R_HASH, HexFormat.of().parseHex(contentHash));
+            flags |= FLAG_HASH;
+        }
+        buffer.putInt(base + R_LEVEL, level);
+        buffer.putInt(base + R_FLAGS, flags);
+        for (int l = 0; l <= MAX_LEVEL; l++) {
+            buffer.putInt(base + linksOffset(l), 0);
+        }
+        for (int i = 0; i < dimensions; i++) {
+            buffer.putFloat(base + vectorOffset + 4 * i, vector[i]);
+        }
+        count++;
+        nodesById.put(id, node);
+        nodesByBook.computeIfAbsent(bookId, key -> new ArrayList<>(1)).add(node);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            topLevel = level;
+            return;
+        }
+        List<Candidate> entries = List.of(new Candidate(entryPoint, similarity(vector, entryPoint)));
+        for (int l = topLevel; l > level; l--) {
+            entries = searchLayer(vector, entries, 1, l);
+        }
+        for (int l = Math.min(topLevel, level); l >= 0; l--) {
+            List<Candidate> found = searchLayer(vector, entries, params.efConstruction(), l);
+            List<Candidate> neighbours = selectNeighbours(found, m);
+            writeLinks(node, l, neighbours);
+            for (Candidate neighbour : neighbours) {
+                link(neighbour.node(), l, new Candidate(node, neighbour.similarity()));
+            }
+            entries = found;
+        }
+        if (level > topLevel) {
+            topLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * Добавляет ссылку; если у узла уже максимум соседей, оставляет лучших по эвристике.
+     */
+    private void link(int node, int level, Candidate added) {
+        MappedByteBuffer buffer = segment(node);
+        int offset = base(node) + linksOffset(level);
+        int size = buffer.getInt(offset);
+        if (size < maxLinks(level)) {
+            buffer.putInt(offset + 4 + 4 * size, added.node());
+            buffer.putInt(offset, size + 1);
+            return;
+        }
+        float[] vector = vector(node);
+        List<Candidate> candidates = new ArrayList<>(size + 1);
+        for (int i = 0; i < size; i++) {
+            int neighbour = buffer.getInt(offset + 4 + 4 * i);
+            candidates.add(new Candidate(neighbour, similarity(vector, neighbour)));
+        }
+        candidates.add(added);
+        candidates.sort(BEST_FIRST);
+        writeLinks(node, level, selectNeighbours(candidates, maxLinks(level)));
+    }
+
+    private void writeLinks(int node, int level, List<Candidate> neighbours) {
+        MappedByteBuffer buffer = segment(node);
+        int offset = base(node) + linksOffset(level);
+        for (int i = 0; i < neighbours.size(); i++) {
+            buffer.putInt(offset + 4 + 4 * i, neighbours.get(i).node());
+        }
+        buffer.putInt(offset, neighbours.size());
+    }
+
+    /**
+     * Эвристика выбора соседей: кандидат берётся, если он ближе к узлу, чем к
+     * любому уже выбранному, — так связи расходятся в разные стороны. Оставшиеся
+     * места добираются ближайшими из отброшенных.
+     *
+     * @param candidates отсортированы по убыванию близости
+     */
+    private List<Candidate> selectNeighbours(List<Candidate> candidates, int max) {
+        List<Candidate> selected = new ArrayList<>(max);
+        List<float[]> selectedVectors = new ArrayList<>(max);
+        List<Candidate> pruned = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (selected.size() == max) {
+                break;
+            }
+            float[] vector = vector(candidate.node());
+            boolean diverse = true;
+            for (float[] other : selectedVectors) {
+                if (dot(vector, other) > candidate.similarity()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+                selectedVectors.add(vector);
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < max; i++) {
+            selected.add(pruned.get(i));
+        }
+        return selected;
+    }
+
+    /**
+     * @return до ef ближайших узлов уровня, по убыванию близости
+     */
+    private List<Candidate> searchLayer(float[] query, List<Candidate> entries, int ef, int level) {
+        BitSet visited = new BitSet(count);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(WORST_FIRST);
+        for (Candidate entry : entries) {
+            visited.set(entry.node());
+            candidates.add(entry);
+            results.add(entry);
+            if (results.size() > ef) {
+                results.poll();
+            }
+        }
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.similarity() < results.peek().similarity()) {
+                break;
+            }
+            MappedByteBuffer buffer = segment(current.node());
+            int offset = base(current.node()) + linksOffset(level);
+            int size = buffer.getInt(offset);
+            for (int i = 0; i < size; i++) {
+                int neighbour = buffer.getInt(offset + 4 + 4 * i);
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                double similarity = similarity(query, neighbour);
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    Candidate candidate = new Candidate(neighbour, similarity);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(BEST_FIRST);
+        return sorted;
+    }
+
+    private void markDeleted(int node) {
+        MappedByteBuffer buffer = segment(node);
+        int base = base(node);
+        buffer.putInt(base + R_FLAGS, buffer.getInt(base + R_FLAGS) | FLAG_DELETED);
+        deleted++;
+        nodesById.remove(id(node));
+        List<Integer> nodes = nodesByBook.get(bookId(node));
+        if (nodes != null) {
+            nodes.remove(Integer.valueOf(node));
+            if (nodes.isEmpty()) {
+                nodesByBook.remove(bookId(node));
+            }
+        }
+    }
+
+    private int randomLevel() {
+        double uniform = 1 - ThreadLocalRandom.current().nextDouble();
+        return (int) Math.min(MAX_LEVEL, Math.floor(-Math.log(uniform) * levelMultiplier));
+    }
+
+    private double similarity(float[] query, int node) {
+        MappedByteBuffer buffer = segment(node);
+        int offset = base(node) + vectorOffset;
+        double sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += query[i] * buffer.getFloat(offset + 4 * i);
+        }
+        return sum;
+    }
+
+    private float[] vector(int node) {
+        MappedByteBuffer buffer = segment(node);
+        int offset = base(node) + vectorOffset;
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = buffer.getFloat(offset + 4 * i);
+        }
+        return vector;
+    }
+
+    private boolean isDeleted(int node) {
+        return (segment(node).getInt(base(node) + R_FLAGS) & FLAG_DELETED) != 0;
+    }
+
+    private UUID id(int node) {
+        MappedByteBuffer buffer = segment(node);
+        int base = base(node);
+        return new UUID(buffer.getLong(base + R_ID_MSB), buffer.getLong(base + R_ID_LSB));
+    }
+
+    private long bookId(int node) {
+        return segment(node).getLong(base(node) + R_BOOK);
+    }
+
+    private String contentHash(int node) {
+        MappedByteBuffer buffer = segment(node);
+        int base = base(node);
+        if ((buffer.getInt(base + R_FLAGS) & FLAG_HASH) == 0) {
+            return "";
+        }
+        byte[] hash = new byte[HASH_BYTES];
+        buffer.get(base + R_HASH, hash);
+        return HexFormat.of().formatHex(hash);
+    }
+
+    private int linksOffset(int level) {
+        return level == 0 ? R_LINKS : R_LINKS + 4 * (1 + m0) + (level - 1) * 4 * (1 + m);
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? m0 : m;
+    }
+
+    private MappedByteBuffer segment(int node) {
+        return segments.get(node / SEGMENT_NODES);
+    }
+
+    private int base(int node) {
+        return (node % SEGMENT_NODES) * recordSize;
+    }
+
+    private void ensureSegment(int node) {
+        while (segments.size() <= node / SEGMENT_NODES) {
+            long position = HEADER_SIZE + (long) segments.size() * SEGMENT_NODES * recordSize;
+            try {
+                segments.add(map(position, (long) SEGMENT_NODES * recordSize));
+            } catch (IOException e) {
+                throw new IllegalStateException("Не удалось расширить индекс HNSW " + path, e);
+            }
+        }
+    }
+
+    private MappedByteBuffer map(long position, long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private void writeHeader() {
+        header.putInt(H_COUNT, count);
+        header.putInt(H_DELETED, deleted);
+        header.putInt(H_ENTRY, entryPoint);
+        header.putInt(H_TOP_LEVEL, topLevel);
+    }
+
+    private void setDirty(boolean dirty) {
+        writeHeader();
+        header.putInt(H_DIRTY, dirty ? 1 : 0);
+        header.force();
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        if (norm == 0 || Math.abs(norm - 1) < 1e-6) {
+            return vector;
+        }
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,216 @@
+package com.diplom.diplom.Search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.LongPredicate;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+/**
+ * VectorStore в процессе приложения поверх HnswIndex — замена PgVectorStore,
+ * чтобы поиск соседей не нагружал общий Postgres (см. HnswVectorStoreConfig).
+ * Текст документа не хранится: в результате поиска только metadata book_id и
+ * близость, этого достаточно всем вызывающим. Фильтры (удаление и поиск)
+ * понимаются только по book_id: сравнения, IN/NIN и AND/OR/NOT над ними;
+ * фильтр по другому ключу — IllegalArgumentException, а не тихо пустой ответ.
+ */
+public class HnswVectorStore implements VectorStore {
+
+    private static final String BOOK_ID = "book_id";
+
+    private final EmbeddingModel embeddingModel;
+    private final HnswIndex index;
+    private final int defaultEfSearch;
+
+    public HnswVectorStore(EmbeddingModel embeddingModel, HnswIndex index, int defaultEfSearch) {
+        this.embeddingModel = embeddingModel;
+        this.index = index;
+        this.defaultEfSearch = defaultEfSearch;
+    }
+
+    @Override
+    public String getName() {
+        return "HnswVectorStore";
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        List<float[]> vectors = embeddingModel.embed(documents.stream().map(Document::getText).toList());
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            Map<String, Object> metadata = document.getMetadata();
+            Object bookId = metadata.get(BOOK_ID);
+            if (bookId == null) {
+                throw new IllegalArgumentException("У документа " + document.getId() + " нет metadata.book_id");
+            }
+            Object contentHash = metadata.get("content_hash");
+            index.put(toUuid(document.getId()), Long.parseLong(bookId.toString()),
+                    contentHash != null ? contentHash.toString() : null, vectors.get(i));
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        idList.forEach(id -> index.remove(toUuid(id)));
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        LongPredicate matches = compile(filterExpression);
+        index.removeBooks(index.bookIds().stream().filter(matches::test).toList());
+    }
+
+    /**
+     * С фильтром индекс ищет без него, а лишнее отбрасывается; если после
+     * отбора осталось меньше topK, поиск повторяется с вчетверо большим k,
+     * пока индекс не исчерпан.
+     */
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        LongPredicate matches = request.hasFilterExpression()
+                ? compile(request.getFilterExpression())
+                : bookId -> true;
+        float[] query = embeddingModel.embed(request.getQuery());
+        int topK = request.getTopK();
+        int k = topK;
+        while (true) {
+            List<HnswIndex.Result> results = index.search(query, k, Math.max(defaultEfSearch, k));
+            List<Document> documents = new ArrayList<>();
+            boolean belowThreshold = false;
+            for (HnswIndex.Result result : results) {
+                if (result.score() < request.getSimilarityThreshold()) {
+                    belowThreshold = true;
+                    break;
+                }
+                if (!matches.test(result.bookId())) {
+                    continue;
+                }
+                documents.add(toDocument(result));
+                if (documents.size() == topK) {
+                    return documents;
+                }
+            }
+            if (belowThreshold || results.size() < k || k >= index.size()) {
+                return documents;
+            }
+            k = (int) Math.min((long) k * 4, index.size());
+        }
+    }
+
+    private static Document toDocument(HnswIndex.Result result) {
+        return Document.builder()
+                .id(result.id().toString())
+                .text("")
+                .metadata(BOOK_ID, result.bookId())
+                .metadata("distance", 1 - result.score())
+                .score(result.score())
+                .build();
+    }
+
+    /**
+     * Переводит фильтр Spring AI в условие на book_id.
+     */
+    static LongPredicate compile(Filter.Operand operand) {
+        if (operand instanceof Filter.Group group) {
+            return compile(group.content());
+        }
+        if (!(operand instanceof Filter.Expression expression)) {
+            throw new IllegalArgumentException("Неподдерживаемый фильтр: " + operand);
+        }
+        return switch (expression.type()) {
+            case AND -> compile(expression.left()).and(compile(expression.right()));
+            case OR -> compile(expression.left()).or(compile(expression.right()));
+            case NOT -> compile(expression.left()).negate();
+            case EQ -> {
+                long value = bookIdValue(expression);
+                yield bookId -> bookId == value;
+            }
+            case NE -> {
+                long value = bookIdValue(expression);
+                yield bookId -> bookId != value;
+            }
+            case GT -> {
+                long value = bookIdValue(expression);
+                yield bookId -> bookId > value;
+            }
+            case GTE -> {
+                long value = bookIdValue(expression);
+                yield bookId -> bookId >= value;
+            }
+            case LT -> {
+                long value = bookIdValue(expression);
+                yield bookId -> bookId < value;
+            }
+            case LTE -> {
+                long value = bookIdValue(expression);
+                yield bookId -> bookId <= value;
+            }
+            case IN -> {
+                Set<Long> values = bookIdValues(expression);
+                yield values::contains;
+            }
+            case NIN -> {
+                Set<Long> values = bookIdValues(expression);
+                yield bookId -> !values.contains(bookId);
+            }
+        };
+    }
+
+    private static long bookIdValue(Filter.Expression expression) {
+        Object value = bookIdOperand(expression);
+        if (value instanceof Collection<?>) {
+            throw new IllegalArgumentException("Ожидалось одно значение book_id: " + expression);
+        }
+        return Long.parseLong(value.toString());
+    }
+
+    private static Set<Long> bookIdValues(Filter.Expression expression) {
+        Object value = bookIdOperand(expression);
+        Collection<?> values = value instanceof Collection<?> collection ? collection : List.of(value);
+        Set<Long> bookIds = new HashSet<>();
+        for (Object item : values) {
+            bookIds.add(Long.parseLong(item.toString()));
+        }
+        return bookIds;
+    }
+
+    private static Object bookIdOperand(Filter.Expression expression) {
+        if (!(expression.left() instanceof Filter.Key key) || !BOOK_ID.equals(unquote(key.key()))) {
+            throw new IllegalArgumentException("HnswVectorStore фильтрует только по book_id: " + expression);
+        }
+        if (!(expression.right() instanceof Filter.Value value) || value.value() == null) {
+            throw new IllegalArgumentException("Нет значения book_id в фильтре: " + expression);
+        }
+        return value.value();
+    }
+
+    private static String unquote(String key) {
+        return key.length() > 1 && (key.startsWith("\"") || key.startsWith("'"))
+                ? key.substring(1, key.length() - 1)
+                : key;
+    }
+
+    /**
+     * PgVectorStore хранит id как UUID; прочие строки переводятся в UUID детерминированно.
+     */
+    private static UUID toUuid(String id) {
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return UUID.nameUUIDFromBytes(id.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.diplom.diplom.Search;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Нормализация загружаемого текста книги на лету: переводы строк CRLF и CR
+ * приводятся к LF, управляющие символы (кроме LF и табуляции), NUL — его не
+ * принимает TEXT в Postgres — и BOM выбрасываются. Текст дальше не
+ * буферизуется, поэтому память не зависит от размера файла.
+ */
+public class NormalizingReader extends FilterReader {
+
+    private static final int SKIP_BUFFER_SIZE = 8192;
+
+    private boolean afterCr;
+
+    public NormalizingReader(Reader in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        char[] one = new char[1];
+        return read(one, 0, 1) < 0 ? -1 : one[0];
+    }
+
+    /**
+     * Как и положено Reader, возвращает хотя бы один символ или -1: порция
+     * из одних выброшенных символов дочитывается.
+     */
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        int written;
+        do {
+            int read = in.read(buffer, offset, length);
+            if (read < 0) {
+                return -1;
+            }
+            written = normalize(buffer, offset, read);
+        } while (written == 0);
+        return written;
+    }
+
+    private int normalize(char[] buffer, int offset, int read) {
+        int out = offset;
+        for (int i = offset; i < offset + read; i++) {
+            char c = buffer[i];
+            if (c == '\n' && afterCr) {
+                afterCr = false;
+                continue;
+            }
+            afterCr = c == '\r';
+            if (afterCr) {
+                buffer[out++] = '\n';
+            } else if (c == '\n' || c == '\t' || (c >= ' ' && c != '\u007F' && c != '\uFEFF')) {
+                buffer[out++] = c;
+            }
+        }
+        return out - offset;
+    }
+
+    /**
+     * Пропускает символы уже нормализованного текста, как Reader.skip: через
+     * read(char[], int, int), иначе FilterReader пропустил бы сырые символы
+     * и сбил бы склейку CRLF.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        if (n < 0) {
+            throw new IllegalArgumentException("Отрицательное число символов для пропуска: " + n);
+        }
+        char[] scratch = new char[(int) Math.min(n, SKIP_BUFFER_SIZE)];
+        long remaining = n;
+        while (remaining > 0) {
+            int read = read(scratch, 0, (int) Math.min(remaining, scratch.length));
+            if (read < 0) {
+                break;
+            }
+            remaining -= read;
+        }
+        return n - remaining;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,110 @@
+package com.diplom.diplom.Search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Нарезка текста книги на перекрывающиеся фрагменты для поиска по содержимому.
+ * Фрагмент не длиннее size символов и по возможности заканчивается на границе
+ * абзаца, предложения или слова не раньше середины окна; следующий начинается
+ * за overlap символов до конца предыдущего, с начала слова. Текст не копируется:
+ * результат — только смещения (в единицах char, как в String Java и JS).
+ */
+public final class PassageSplitter {
+
+    /**
+     * @param start смещение первого символа фрагмента
+     * @param end   смещение после последнего символа
+     */
+    public record Span(int ordinal, int start, int end) {
+
+        public String text(CharSequence content) {
+            return content.subSequence(start, end).toString();
+        }
+    }
+
+    private final int size;
+    private final int overlap;
+
+    public PassageSplitter(int size, int overlap) {
+        if (size < 2 || overlap < 0 || overlap >= size / 2) {
+            throw new IllegalArgumentException("Нужно size >= 2 и 0 <= overlap < size / 2, задано size=" + size
+                    + ", overlap=" + overlap);
+        }
+        this.size = size;
+        this.overlap = overlap;
+    }
+
+    public List<Span> split(CharSequence text) {
+        List<Span> spans = new ArrayList<>(text.length() / (size - overlap) + 1);
+        int start = skipWhitespace(text, 0, text.length());
+        while (start < text.length()) {
+            int end = Math.min(start + size, text.length());
+            if (end < text.length()) {
+                end = breakBefore(text, start + size / 2, end);
+            }
+            int trimmed = end;
+            while (trimmed > start && Character.isWhitespace(text.charAt(trimmed - 1))) {
+                trimmed--;
+            }
+            spans.add(new Span(spans.size(), start, trimmed));
+            if (end >= text.length()) {
+                break;
+            }
+            start = skipWhitespace(text, wordStart(text, Math.max(end - overlap, start + 1), end), text.length());
+        }
+        return spans;
+    }
+
+    /**
+     * Лучшая граница в (from, to]: конец абзаца, затем конец предложения, затем пробел;
+     * если ни одной нет — режем по to.
+     */
+    private static int breakBefore(CharSequence text, int from, int to) {
+        int sentence = -1;
+        int word = -1;
+        for (int i = to; i > from; i--) {
+            char previous = text.charAt(i - 1);
+            char next = text.charAt(i);
+            if (previous == '\n' && (next == '\n' || Character.isWhitespace(next))) {
+                return i;
+            }
+            if (sentence < 0 && Character.isWhitespace(next) && isSentenceEnd(previous)) {
+                sentence = i;
+            }
+            if (word < 0 && Character.isWhitespace(next)) {
+                word = i;
+            }
+        }
+        if (sentence >= 0) {
+            return sentence;
+        }
+        return word >= 0 ? word : to;
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '!' || c == '?' || c == '…' || c == '"' || c == '»';
+    }
+
+    /**
+     * Начало слова не раньше position; если до limit слово не кончается — сама position.
+     */
+    private static int wordStart(CharSequence text, int position, int limit) {
+        if (position == 0 || Character.isWhitespace(text.charAt(position - 1))) {
+            return position;
+        }
+        for (int i = position; i < limit; i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return position;
+    }
+
+    private static int skipWhitespace(CharSequence text, int position, int limit) {
+        while (position < limit && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,39 @@
+package com.diplom.diplom.Search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reciprocal rank fusion: документ получает сумму 1 / (k + ранг) по всем
+ * спискам, где он встретился (ранг с единицы). Сами оценки ретриверов не
+ * используются, поэтому ts_rank и косинусную близость не нужно приводить к
+ * одной шкале. k сглаживает разницу между первыми местами; 60 — значение из
+ * исходной статьи, оно же принято в большинстве поисковых движков.
+ */
+public final class RankFusion {
+
+    public static final int DEFAULT_K = 60;
+
+    private RankFusion() {
+    }
+
+    /**
+     * @return id в порядке убывания суммарной оценки; при равенстве выше тот,
+     *         кто раньше встретился в списках (по порядку аргументов)
+     */
+    @SafeVarargs
+    public static List<Long> fuse(int k, List<Long>... rankings) {
+        Map<Long, Double> scores = new LinkedHashMap<>();
+        for (List<Long> ranking : rankings) {
+            for (int i = 0; i < ranking.size(); i++) {
+                scores.merge(ranking.get(i), 1.0 / (k + i + 1), Double::sum);
+            }
+        }
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(scores.entrySet());
+        // Сортировка устойчивая, поэтому порядок вставки решает равенство оценок
+        ranked.sort(Map.Entry.<Long, Double>comparingByValue().reversed());
+        return ranked.stream().map(Map.Entry::getKey).toList();
+    }
+}
@@ -0,0 +1,14 @@
+package com.diplom.diplom.Search;
+
+import java.util.List;
+
+/**
+ * Результат поиска по каталогу: id книг в порядке релевантности (только
+ * запрошенная страница) и общее число совпадений.
+ */
+public record SearchHits(List<Long> ids, long total) {
+
+    public static SearchHits empty() {
+        return new SearchHits(List.of(), 0);
+    }
+}
@@ -0,0 +1,144 @@
+package com.diplom.diplom.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import com.diplom.diplom.Entity.BackgroundJob;
+import com.diplom.diplom.Entity.JobStatus;
+import com.diplom.diplom.Entity.JobType;
+import com.diplom.diplom.Exception.ResourceNotFoundException;
+import com.diplom.diplom.Repository.BackgroundJobRepository;
+
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Состояние фоновых задач в таблице background_jobs. Выполнением занимается
+ * JobRunner, здесь — только переходы статусов и учёт прогресса.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BackgroundJobService {
+
+    private static final Set<JobStatus> ACTIVE = EnumSet.of(JobStatus.QUEUED, JobStatus.RUNNING);
+
+    private final BackgroundJobRepository backgroundJobRepository;
+
+    /**
+     * Задачи без параметров обходят весь каталог, и две такие задачи одного
+     * типа только мешают друг другу: если такая уже в очереди или выполняется,
+     * возвращается она, новая не ставится.
+     */
+    @Transactional
+    public BackgroundJob submit(JobType type, String params) {
+        if (params == null) {
+            Optional<BackgroundJob> active = backgroundJobRepository
+                    .findFirstByTypeAndParamsIsNullAndStatusInOrderByIdAsc(type, ACTIVE);
+            if (active.isPresent()) {
+                log.info("Фоновая задача {} уже поставлена: #{}", type, active.get().getId());
+                return active.get();
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        BackgroundJob job = backgroundJobRepository.save(BackgroundJob.builder()
+                .type(type)
+                .status(JobStatus.QUEUED)
+                .params(params)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        log.info("Поставлена фоновая задача {} #{}", type, job.getId());
+        return job;
+    }
+
+    /**
+     * Забирает самую старую задачу из очереди. SKIP LOCKED не даёт двум
+     * экземплярам приложения взять одну и ту же задачу.
+     */
+    @Transactional
+    public Optional<BackgroundJob> claimNext() {
+        return backgroundJobRepository.lockNextQueued().stream().findFirst().map(job -> {
+            LocalDateTime now = LocalDateTime.now();
+            job.setStatus(JobStatus.RUNNING);
+            if (job.getStartedAt() == null) {
+                job.setStartedAt(now);
+            }
+            job.setRunStartedAt(now);
+            job.setProcessedAtRunStart(job.getProcessed() + job.getFailed());
+            job.setUpdatedAt(now);
+            return backgroundJobRepository.save(job);
+        });
+    }
+
+    /**
+     * @return true, если задачу попросили отменить
+     */
+    @Transactional
+    public boolean recordProgress(Long id, long processed, long failed, String checkpoint) {
+        backgroundJobRepository.addProgress(id, processed, failed, checkpoint, LocalDateTime.now());
+        return backgroundJobRepository.isCancelRequested(id);
+    }
+
+    @Transactional
+    public void setTotal(Long id, long total) {
+        backgroundJobRepository.updateTotal(id, total, LocalDateTime.now());
+    }
+
+    @Transactional
+    public void finish(Long id, JobStatus status, String message) {
+        backgroundJobRepository.findById(id).ifPresent(job -> {
+            LocalDateTime now = LocalDateTime.now();
+            job.setStatus(status);
+            job.setMessage(message);
+            job.setUpdatedAt(now);
+            job.setFinishedAt(now);
+            backgroundJobRepository.save(job);
+        });
+    }
+
+    /**
+     * Задача из очереди отменяется сразу, выполняющаяся — остановится на
+     * ближайшей контрольной точке.
+     */
+    @Transactional
+    public BackgroundJob cancel(Long id) {
+        LocalDateTime now = LocalDateTime.now();
+        if (backgroundJobRepository.cancelQueued(id, now) == 0 && backgroundJobRepository.requestCancel(id, now) == 0) {
+            BackgroundJob job = get(id);
+            throw new IllegalStateException("Задача #" + id + " уже завершена: " + job.getStatus());
+        }
+        return get(id);
+    }
+
+    public BackgroundJob get(Long id) {
+        return backgroundJobRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Фоновая задача с id: " + id + " не найдена"));
+    }
+
+    public Page<BackgroundJob> list(Pageable pageable) {
+        return backgroundJobRepository.findAllByOrderByIdDesc(pageable);
+    }
+
+    @Transactional
+    public void heartbeat(Collection<Long> ids) {
+        if (!ids.isEmpty()) {
+            backgroundJobRepository.heartbeat(ids, LocalDateTime.now());
+        }
+    }
+
+    @Transactional
+    public int requeueStale(Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        return backgroundJobRepository.requeueStale(now.minus(lease), now);
+    }
+}
@@ -0,0 +1,248 @@
+package com.diplom.diplom.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.diplom.diplom.Entity.Book;
+import com.diplom.diplom.Entity.BookContent;
+import com.diplom.diplom.Repository.BookContentChunkRepository;
+import com.diplom.diplom.Repository.BookContentRepository;
+import com.diplom.diplom.Search.CharsetDetector;
+import com.diplom.diplom.Search.ChunkedText;
+import com.diplom.diplom.Search.ContentPager;
+import com.diplom.diplom.Search.NormalizingReader;
+
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Хранение текста книги кусками по chunkSize символов в book_content_chunks.
+ * Файл читается потоком: кодировка определяется по первым SAMPLE_BYTES байтам
+ * (CharsetDetector), текст декодируется и нормализуется на лету
+ * (NormalizingReader) и пишется кусками, поэтому память на загрузку —
+ * порядка одного куска независимо от размера файла. Книги, загруженные раньше
+ * целиком в book_contents.content, читаются как и прежде.
+ */
+@Service
+@Slf4j
+public class BookContentStore {
+
+    private static final int SAMPLE_BYTES = 64 * 1024;
+
+    private final BookContentRepository bookContentRepository;
+    private final BookContentChunkRepository bookContentChunkRepository;
+    private final int chunkSize;
+    private final ContentPager pager;
+
+    public BookContentStore(
+            BookContentRepository bookContentRepository,
+            BookContentChunkRepository bookContentChunkRepository,
+            @Value("${app.content.chunk-size:65536}") int chunkSize,
+            @Value("${app.content.page-size:4000}") int pageSize) {
+        this.bookContentRepository = bookContentRepository;
+        this.bookContentChunkRepository = bookContentChunkRepository;
+        this.chunkSize = chunkSize;
+        this.pager = new ContentPager(pageSize);
+    }
+
+    /**
+     * @param length  длина текста после нормализации, в char
+     * @param chunks  число записанных кусков
+     * @param charset кодировка файла
+     */
+    public record Stored(int length, int chunks, String charset) {
+    }
+
+    /**
+     * @param length длина текста в char
+     * @param hash   SHA-256 текста в UTF-8, hex
+     */
+    public record Header(int length, String hash) {
+
+        /**
+         * Слабый ETag: при сжатии gzip тело меняется, а Tomcat не сжимает ответы
+         * с сильным ETag.
+         */
+        public String etag() {
+            return "W/\"" + hash + "\"";
+        }
+    }
+
+    /**
+     * Разбиение на страницы — одно на всё приложение: номер страницы
+     * сохраняется у читателя (UserBook.currentPage).
+     */
+    public ContentPager pager() {
+        return pager;
+    }
+
+    /**
+     * ETag страницы: зависит и от текста, и от размера страниц.
+     */
+    public String pageETag(Header header) {
+        return "W/\"" + header.hash() + "-p" + pager.pageSize() + "\"";
+    }
+
+    /**
+     * Заменяет текст книги содержимым потока. Должен вызываться в транзакции,
+     * меняющей книгу: старый текст удаляется в ней же.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public Stored write(Book book, InputStream input) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input, SAMPLE_BYTES);
+        buffered.mark(SAMPLE_BYTES);
+        byte[] sample = buffered.readNBytes(SAMPLE_BYTES);
+        buffered.reset();
+        CharsetDetector.Detected detected = CharsetDetector.detect(sample, sample.length);
+        buffered.skipNBytes(detected.bomLength());
+
+        Reader reader = new NormalizingReader(new InputStreamReader(buffered, detected.charset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)));
+
+        Written written = writeChunks(book.getId(), reader);
+        String charset = detected.charset().name();
+        if (bookContentRepository.updateHeader(book.getId(), written.length(), charset, written.hash()) == 0) {
+            BookContent header = new BookContent();
+            header.setBook(book);
+            header.setLength(written.length());
+            header.setCharset(charset);
+            header.setHash(written.hash());
+            bookContentRepository.save(header);
+        }
+        log.info("Текст книги {} сохранён: {} символов, {} кусков, кодировка {}", book.getId(), written.length(),
+                written.chunks(), charset);
+        return new Stored(written.length(), written.chunks(), charset);
+    }
+
+    /**
+     * Длина и хэш текста без чтения самого текста. Книги, загруженные раньше
+     * целиком в book_contents.content, при первом обращении переносятся в куски
+     * как есть, без нормализации — смещения фрагментов в book_passages не
+     * меняются; у кусков без хэша он досчитывается один раз.
+     */
+    @Transactional
+    public Optional<Header> header(Long bookId) {
+        BookContent content = bookContentRepository.findById(bookId).orElse(null);
+        if (content == null || (content.getLength() != null && content.getHash() != null)) {
+            return Optional.ofNullable(content).map(c -> new Header(c.getLength(), c.getHash()));
+        }
+        content = bookContentRepository.findByIdForUpdate(bookId).orElse(null);
+        if (content == null) {
+            return Optional.empty();
+        }
+        if (content.getLength() == null) {
+            if (content.getContent() == null) {
+                return Optional.empty();
+            }
+            String charset = content.getCharset() != null ? content.getCharset() : StandardCharsets.UTF_8.name();
+            Written written;
+            try {
+                written = writeChunks(bookId, new StringReader(content.getContent()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            bookContentRepository.updateHeader(bookId, written.length(), charset, written.hash());
+            log.info("Текст книги {} перенесён в куски: {} символов, {} кусков", bookId, written.length(),
+                    written.chunks());
+            return Optional.of(new Header(written.length(), written.hash()));
+        }
+        if (content.getHash() == null) {
+            MessageDigest digest = sha256();
+            int chunks = bookContentChunkRepository.findStartOffsets(bookId).size();
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                bookContentChunkRepository.findText(bookId, chunk)
+                        .ifPresent(text -> digest.update(text.getBytes(StandardCharsets.UTF_8)));
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            bookContentRepository.updateHash(bookId, hash);
+            return Optional.of(new Header(content.getLength(), hash));
+        }
+        return Optional.of(new Header(content.getLength(), content.getHash()));
+    }
+
+    /**
+     * Текст книги без загрузки целиком: куски подгружаются при чтении.
+     */
+    public Optional<CharSequence> text(Long bookId) {
+        List<Integer> starts = bookContentChunkRepository.findStartOffsets(bookId);
+        if (starts.isEmpty()) {
+            return bookContentRepository.findContent(bookId).map(CharSequence.class::cast);
+        }
+        int length = bookContentRepository.findLength(bookId).orElseThrow(() ->
+                new IllegalStateException("У текста книги " + bookId + " нет длины при сохранённых кусках"));
+        return Optional.of(new ChunkedText(starts.stream().mapToInt(Integer::intValue).toArray(), length,
+                chunk -> bookContentChunkRepository.findText(bookId, chunk).orElseThrow(() ->
+                        new IllegalStateException("Нет куска " + chunk + " текста книги " + bookId))));
+    }
+
+    private record Written(int length, int chunks, String hash) {
+    }
+
+    /**
+     * Пишет текст кусками по chunkSize, заменяя прежние куски книги. Хэш
+     * считается по UTF-8 всего текста, поэтому не зависит от размера кусков.
+     */
+    private Written writeChunks(Long bookId, Reader reader) throws IOException {
+        bookContentChunkRepository.deleteByBookId(bookId);
+        MessageDigest digest = sha256();
+        char[] buffer = new char[chunkSize + 1];
+        int filled = 0;
+        int length = 0;
+        int chunks = 0;
+        while (true) {
+            int read = reader.read(buffer, filled, chunkSize + 1 - filled);
+            if (read > 0) {
+                filled += read;
+            }
+            if (read < 0 || filled > chunkSize) {
+                int cut = Math.min(filled, chunkSize);
+                // Суррогатная пара не должна разрываться между кусками: половинка не запишется в UTF-8
+                if (cut < filled && Character.isHighSurrogate(buffer[cut - 1])) {
+                    cut--;
+                }
+                if (cut > 0) {
+                    String text = new String(buffer, 0, cut);
+                    bookContentChunkRepository.insert(bookId, chunks++, length, text);
+                    digest.update(text.getBytes(StandardCharsets.UTF_8));
+                    length += cut;
+                }
+                System.arraycopy(buffer, cut, buffer, 0, filled - cut);
+                filled -= cut;
+                if (read < 0 && filled == 0) {
+                    break;
+                }
+            }
+        }
+        return new Written(length, chunks, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    @Transactional
+    public void delete(Long bookId) {
+        bookContentChunkRepository.deleteByBookId(bookId);
+        bookContentRepository.deleteById(bookId);
+    }
+}
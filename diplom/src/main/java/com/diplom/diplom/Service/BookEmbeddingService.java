@@ -0,0 +1,196 @@
+package com.diplom.diplom.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.diplom.diplom.Entity.Book;
+import com.diplom.diplom.Repository.BookVectorRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Построение текста книги для эмбеддинга и запись векторов в vector_store.
+ * Вызывается из фоновых обработчиков, а не из транзакций изменения книг.
+ * В metadata каждого вектора хранится content_hash — SHA-256 от имени модели и
+ * точного текста; если он не изменился, книга повторно не отправляется в модель.
+ * id вектора детерминирован (BookVectorRepository.documentId), поэтому запись
+ * вектора — upsert, без предварительного удаления по book_id.
+ */
+@Service
+@Slf4j
+public class BookEmbeddingService {
+
+    public static final String CONTENT_HASH = "content_hash";
+    public static final String EMBEDDING_MODEL = "embedding_model";
+
+    private final VectorStore vectorStore;
+    private final BookVectorRepository bookVectorRepository;
+    private final BookNeighbourService bookNeighbourService;
+    private final Counter skipped;
+    private final String modelName;
+
+    public BookEmbeddingService(
+            VectorStore vectorStore,
+            BookVectorRepository bookVectorRepository,
+            BookNeighbourService bookNeighbourService,
+            MeterRegistry meterRegistry,
+            @Value("${spring.ai.ollama.embedding.options.model:embeddinggemma}") String modelName) {
+        this.vectorStore = vectorStore;
+        this.bookVectorRepository = bookVectorRepository;
+        this.bookNeighbourService = bookNeighbourService;
+        this.modelName = modelName;
+        this.skipped = Counter.builder("bookshelf.embedding.skipped")
+                .description("Книги, вектор которых не пересчитывался: текст и модель не изменились")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Пересчитывает векторы пачки книг, у которых изменился текст или модель:
+     * новые векторы записываются одним vectorStore.add поверх старых (эмбеддинги
+     * модель считает пачкой); удаляются только векторы книг, для которых вектор
+     * больше не строится. Затем обновляются затронутые списки похожих книг.
+     *
+     * @return число книг, для которых вектор действительно пересчитан
+     */
+    public int embed(List<Book> books) {
+        return embed(books, true);
+    }
+
+    /**
+     * @param refreshNeighbours false при полной перегенерации: пока векторы
+     *                          пересчитаны не все, точечные списки похожих
+     *                          сравнивали бы книги из разных моделей, а каждый
+     *                          список пересчитывался бы десятки раз — после
+     *                          прогона ставится одна SIMILAR_BOOKS_REBUILD
+     */
+    public int embed(List<Book> books, boolean refreshNeighbours) {
+        if (books.isEmpty()) {
+            return 0;
+        }
+        // У векторов, записанных до появления хэша, он пустой, и такие книги считаются устаревшими
+        Map<Long, Set<String>> storedHashes = bookVectorRepository.findContentHashes(
+                books.stream().map(Book::getId).toList());
+
+        List<Document> documents = new ArrayList<>(books.size());
+        List<Long> stale = new ArrayList<>(books.size());
+        List<Long> removed = new ArrayList<>();
+        for (Book book : books) {
+            Document document = toDocument(book);
+            Set<String> stored = storedHashes.get(book.getId());
+            if (document != null && stored != null
+                    && stored.equals(Set.of(document.getMetadata().get(CONTENT_HASH)))) {
+                continue;
+            }
+            stale.add(book.getId());
+            if (document != null) {
+                documents.add(document);
+            } else if (stored != null) {
+                removed.add(book.getId());
+            }
+        }
+        skipped.increment(books.size() - stale.size());
+
+        if (!removed.isEmpty()) {
+            bookVectorRepository.deleteByBookIds(removed);
+        }
+        if (!documents.isEmpty()) {
+            vectorStore.add(documents);
+        }
+        if (refreshNeighbours) {
+            bookNeighbourService.refreshAround(stale);
+        }
+        log.info("Векторы пересчитаны для {} книг, без изменений {}", documents.size(), books.size() - stale.size());
+        return documents.size();
+    }
+
+    /**
+     * Хэш текста, который ушёл бы в модель; null, если вектор для книги не строится.
+     */
+    public String contentHash(Book book) {
+        String text = embeddingText(book);
+        return text == null ? null : hash(text);
+    }
+
+    /**
+     * @param referrerIds книги, в списках похожих которых были удалённые, — их
+     *                    строки book_neighbours уже удалены каскадом
+     */
+    public void removeVectors(Collection<Long> bookIds, Collection<Long> referrerIds) {
+        bookVectorRepository.deleteByBookIds(bookIds);
+        bookNeighbourService.refreshAround(bookIds, referrerIds);
+    }
+
+    public Document toDocument(Book book) {
+        String text = embeddingText(book);
+        if (text == null) {
+            log.warn("Невозможно сгенерировать вектор для книги с id={}, так как отсутствует название.", book.getId());
+            return null;
+        }
+
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("book_id", book.getId());
+        metadata.put("title", book.getTitle());
+        metadata.put("author", book.getAuthor());
+        metadata.put(CONTENT_HASH, hash(text));
+        metadata.put(EMBEDDING_MODEL, modelName);
+
+        return Document.builder()
+                .id(BookVectorRepository.documentId(book.getId()).toString())
+                .text(text)
+                .metadata(metadata)
+                .build();
+    }
+
+    private String embeddingText(Book book) {
+        if (book.getTitle() == null || book.getTitle().trim().isEmpty()) {
+            return null;
+        }
+
+        StringBuilder textToEmbed = new StringBuilder();
+
+        textToEmbed.append("title: none | text: ");
+
+        textToEmbed.append("Название: ").append(book.getTitle()).append(". ");
+
+        if (book.getAuthor() != null && !book.getAuthor().trim().isEmpty()) {
+            textToEmbed.append("Автор: ").append(book.getAuthor()).append(". ");
+        }
+
+        if (book.getGenres() != null && !book.getGenres().isEmpty()) {
+            textToEmbed.append("Жанры: ").append(String.join(", ", book.getGenres())).append(". ");
+        }
+
+        if (book.getAnnotation() != null && !book.getAnnotation().trim().isEmpty()) {
+            String cleanAnnotation = book.getAnnotation().replaceAll("<[^>]*>", "");
+            textToEmbed.append("Аннотация: ").append(cleanAnnotation);
+        }
+
+        return textToEmbed.toString();
+    }
+
+    private String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelName.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.diplom.diplom.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.diplom.diplom.Entity.Book;
+import com.diplom.diplom.Entity.BookNeighbour;
+import com.diplom.diplom.Entity.DTO.BookReadDTO;
+import com.diplom.diplom.Exception.ResourceNotFoundException;
+import com.diplom.diplom.Repository.BookNeighbourRepository;
+import com.diplom.diplom.Repository.BookRepository;
+import com.diplom.diplom.Repository.BookVectorRepository;
+import com.diplom.diplom.Repository.BookVectorRepository.Hit;
+import com.diplom.diplom.Search.AfterCommit;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Списки похожих книг из таблицы book_neighbours. Соседи ищутся в pgvector по
+ * уже сохранённому вектору книги (BookVectorRepository), без обращения к модели. Когда вектор книги
+ * меняется, пересчитываются её список, списки книг, где она была соседом, и
+ * списки её новых соседей — туда она могла войти. Готовые ответы
+ * эндпоинта держатся в Caffeine.
+ */
+@Service
+@Slf4j
+public class BookNeighbourService {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO book_neighbours (book_id, neighbour_id, position, score) VALUES (?, ?, ?, ?)";
+
+    private final BookNeighbourRepository bookNeighbourRepository;
+    private final BookRepository bookRepository;
+    private final BookVectorRepository bookVectorRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int size;
+    private final double minScore;
+    private final Cache<Long, List<BookReadDTO>> cache;
+
+    public BookNeighbourService(
+            BookNeighbourRepository bookNeighbourRepository,
+            BookRepository bookRepository,
+            BookVectorRepository bookVectorRepository,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${app.similar.size:20}") int size,
+            @Value("${app.similar.min-score:0.4}") double minScore,
+            @Value("${app.similar.cache.max-size:10000}") long cacheSize,
+            @Value("${app.similar.cache.ttl:PT10M}") Duration cacheTtl) {
+        this.bookNeighbourRepository = bookNeighbourRepository;
+        this.bookRepository = bookRepository;
+        this.bookVectorRepository = bookVectorRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.size = size;
+        this.minScore = minScore;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "similarBooks");
+    }
+
+    public List<BookReadDTO> getSimilar(Long bookId, int limit) {
+        List<BookReadDTO> similar = cache.get(bookId, this::load);
+        return similar.subList(0, Math.min(Math.max(limit, 0), similar.size()));
+    }
+
+    /**
+     * Полная перестройка: устарели все закэшированные списки.
+     */
+    public void invalidateCache() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Книгу изменили: устарели её список и списки, где она показана соседом.
+     */
+    public void invalidateAround(Long bookId) {
+        invalidateAround(bookId, findReferrers(bookId));
+    }
+
+    /**
+     * Сбрасывает из кэша список книги и списки referrerIds после коммита: до
+     * него параллельный читатель положил бы в кэш старые данные заново.
+     *
+     * @param referrerIds книги, в списках похожих которых есть bookId; при
+     *                    удалении их нужно найти до каскадного удаления строк
+     */
+    public void invalidateAround(Long bookId, Collection<Long> referrerIds) {
+        List<Long> stale = new ArrayList<>(referrerIds.size() + 1);
+        stale.add(bookId);
+        stale.addAll(referrerIds);
+        AfterCommit.run(() -> cache.invalidateAll(stale));
+    }
+
+    /**
+     * Пересчитывает список одной книги, не трогая чужие.
+     *
+     * @return id соседей по убыванию близости; пусто, если у книги нет вектора
+     */
+    public List<Long> refresh(Long bookId) {
+        List<Hit> nearest = nearest(bookId);
+        transactionTemplate.executeWithoutResult(status -> {
+            bookNeighbourRepository.deleteByBookId(bookId);
+            List<Object[]> rows = new ArrayList<>(nearest.size());
+            for (int position = 0; position < nearest.size(); position++) {
+                rows.add(new Object[] { bookId, nearest.get(position).bookId(), position, nearest.get(position).score() });
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        });
+        cache.invalidate(bookId);
+        return nearest.stream().map(Hit::bookId).toList();
+    }
+
+    /**
+     * Векторы книг изменились или удалены: пересчитывает их списки и списки,
+     * на которые это могло повлиять. Ошибки только пишутся в лог — списки
+     * производные и будут пересчитаны при следующем изменении или полной перестройке.
+     */
+    public void refreshAround(Collection<Long> changedBookIds) {
+        refreshAround(changedBookIds, List.of());
+    }
+
+    /**
+     * @param knownReferrers книги, которые ссылались на изменённые, но чьи строки
+     *                       уже не найти в book_neighbours (удалены каскадом с книгой)
+     */
+    public void refreshAround(Collection<Long> changedBookIds, Collection<Long> knownReferrers) {
+        if (changedBookIds.isEmpty()) {
+            return;
+        }
+        try {
+            Set<Long> affected = new LinkedHashSet<>(knownReferrers);
+            affected.addAll(bookNeighbourRepository.findBookIdsByNeighbourIdIn(changedBookIds));
+            for (Long bookId : changedBookIds) {
+                affected.addAll(refreshQuietly(bookId));
+            }
+            affected.removeAll(changedBookIds);
+            affected.forEach(this::refreshQuietly);
+            log.debug("Списки похожих пересчитаны для {} изменённых и {} затронутых книг",
+                    changedBookIds.size(), affected.size());
+        } catch (RuntimeException e) {
+            log.warn("Не удалось обновить списки похожих книг для {}: {}", changedBookIds, e.getMessage());
+        }
+    }
+
+    /**
+     * Книги, в списке похожих которых есть bookId.
+     */
+    public List<Long> findReferrers(Long bookId) {
+        return bookNeighbourRepository.findBookIdsByNeighbourIdIn(List.of(bookId));
+    }
+
+    private List<Long> refreshQuietly(Long bookId) {
+        try {
+            return refresh(bookId);
+        } catch (DataIntegrityViolationException e) {
+            // Параллельно тот же список пересчитал другой поток — его результат не хуже
+            log.debug("Список похожих книги {} пересчитан параллельно: {}", bookId, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private List<BookReadDTO> load(Long bookId) {
+        if (!bookRepository.existsById(bookId)) {
+            throw new ResourceNotFoundException("Книга с ID " + bookId + " не найдена");
+        }
+        List<Long> neighbourIds = bookNeighbourRepository.findByBookIdOrderByPosition(bookId).stream()
+                .map(BookNeighbour::getNeighbourId)
+                .toList();
+        if (neighbourIds.isEmpty()) {
+            // Список ещё не строился (книга до появления таблицы) — считаем по месту
+            neighbourIds = refresh(bookId);
+        }
+        Map<Long, Book> books = bookRepository.findAllById(neighbourIds).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        return neighbourIds.stream()
+                .map(books::get)
+                .filter(Objects::nonNull)
+                .map(BookReadDTO::toShortDTO)
+                .toList();
+    }
+
+    private List<Hit> nearest(Long bookId) {
+        return bookVectorRepository.findNearestToBook(bookId, size).stream()
+                .filter(hit -> hit.score() >= minScore)
+                .toList();
+    }
+}
@@ -0,0 +1,245 @@
+package com.diplom.diplom.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.diplom.diplom.Entity.JobType;
+import com.diplom.diplom.Entity.DTO.BookPassageDTO;
+import com.diplom.diplom.Repository.BookPassageRepository;
+import com.diplom.diplom.Search.PassageSplitter;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Поиск по содержимому книг: текст книги (BookContentStore) нарезается на
+ * перекрывающиеся фрагменты (PassageSplitter), их векторы хранятся в
+ * book_passages. Индексация идёт фоновой задачей PASSAGE_INDEX, загрузка текста
+ * её только ставит в очередь. Переиндексация инкрементальная: у каждого
+ * фрагмента content_hash (модель + текст), фрагменты с прежним хэшем только
+ * переносятся на новое место, в модель уходят лишь новые — пачками по
+ * batchSize, до parallelism пачек одновременно.
+ * <p>
+ * Индексация одной книги сериализована блокировкой внутри экземпляра. Если
+ * книгу одновременно индексируют два экземпляра, повторные фрагменты
+ * убираются следующей индексацией: лишние строки с тем же хэшем удаляются.
+ */
+@Service
+@Slf4j
+public class BookPassageService {
+
+    private static final double MIN_SCORE = 0.3;
+    private static final int LOCK_STRIPES = 64;
+
+    private final BookContentStore bookContentStore;
+    private final BookPassageRepository bookPassageRepository;
+    private final EmbeddingModel embeddingModel;
+    private final BackgroundJobService backgroundJobService;
+
+    private final boolean enabled;
+    private final PassageSplitter splitter;
+    private final int batchSize;
+    private final int parallelism;
+    private final String modelName;
+    private final ExecutorService executor;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+    public BookPassageService(
+            BookContentStore bookContentStore,
+            BookPassageRepository bookPassageRepository,
+            EmbeddingModel embeddingModel,
+            BackgroundJobService backgroundJobService,
+            @Value("${app.passages.enabled:true}") boolean enabled,
+            @Value("${app.passages.size:1200}") int size,
+            @Value("${app.passages.overlap:200}") int overlap,
+            @Value("${app.passages.batch-size:32}") int batchSize,
+            @Value("${app.passages.parallelism:2}") int parallelism,
+            @Value("${spring.ai.ollama.embedding.options.model:embeddinggemma}") String modelName) {
+        this.bookContentStore = bookContentStore;
+        this.bookPassageRepository = bookPassageRepository;
+        this.embeddingModel = embeddingModel;
+        this.backgroundJobService = backgroundJobService;
+        this.enabled = enabled;
+        this.splitter = new PassageSplitter(size, overlap);
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.modelName = modelName;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "passage-embedding-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Получает прогресс индексации книги. Вызовы batchCompleted сериализованы.
+     */
+    public interface Listener {
+
+        void batchCompleted(int embedded);
+
+        boolean isCancelled();
+    }
+
+    /**
+     * @param passages фрагментов в тексте книги
+     * @param embedded из них отправлено в модель за этот запуск
+     * @param removed  удалено фрагментов старого текста
+     */
+    public record Result(int passages, int embedded, int removed, boolean cancelled) {
+    }
+
+    /**
+     * Ставит книгу в очередь на индексацию. Вызывается в транзакции, сохраняющей
+     * текст, — задача появится вместе с ним.
+     */
+    public void schedule(Long bookId) {
+        if (enabled) {
+            backgroundJobService.submit(JobType.PASSAGE_INDEX, "{\"bookIds\":[" + bookId + "]}");
+        }
+    }
+
+    public Result index(Long bookId, Listener listener) {
+        if (!enabled) {
+            throw new IllegalStateException("Поиск по содержимому книг отключён (app.passages.enabled)");
+        }
+        ReentrantLock lock = locks[Math.floorMod(bookId, LOCK_STRIPES)];
+        lock.lock();
+        try {
+            return run(bookId, listener);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Result run(Long bookId, Listener listener) {
+        CharSequence content = bookContentStore.text(bookId).orElse("");
+        List<PassageSplitter.Span> spans = splitter.split(content);
+
+        Map<String, Deque<BookPassageRepository.Stored>> storedByHash = new HashMap<>();
+        for (BookPassageRepository.Stored stored : bookPassageRepository.findByBook(bookId)) {
+            storedByHash.computeIfAbsent(stored.contentHash(), hash -> new ArrayDeque<>()).add(stored);
+        }
+
+        List<BookPassageRepository.Passage> fresh = new ArrayList<>();
+        Map<Long, BookPassageRepository.Passage> moved = new LinkedHashMap<>();
+        for (PassageSplitter.Span span : spans) {
+            String text = span.text(content);
+            BookPassageRepository.Passage passage = new BookPassageRepository.Passage(span.ordinal(), span.start(),
+                    span.end(), hash(text), text);
+            Deque<BookPassageRepository.Stored> same = storedByHash.get(passage.contentHash());
+            BookPassageRepository.Stored stored = same != null ? same.poll() : null;
+            if (stored == null) {
+                fresh.add(passage);
+            } else if (stored.ordinal() != span.ordinal() || stored.start() != span.start()
+                    || stored.end() != span.end()) {
+                moved.put(stored.id(), passage);
+            }
+        }
+        List<Long> removed = storedByHash.values().stream()
+                .flatMap(Deque::stream)
+                .map(BookPassageRepository.Stored::id)
+                .toList();
+        bookPassageRepository.update(removed, moved);
+
+        int embedded = embed(bookId, fresh, listener);
+        boolean cancelled = embedded < fresh.size();
+        log.info("Фрагменты книги {}: всего {}, новых {}, перенесено {}, удалено {}{}", bookId, spans.size(),
+                embedded, moved.size(), removed.size(), cancelled ? " (остановлено)" : "");
+        return new Result(spans.size(), embedded, removed.size(), cancelled);
+    }
+
+    /**
+     * Пачки считаются параллельно на общем пуле; ошибка любой пачки
+     * останавливает книгу, уже записанные пачки при повторе не пересчитываются.
+     *
+     * @return число записанных фрагментов; меньше fresh.size(), если отменено
+     */
+    private int embed(Long bookId, List<BookPassageRepository.Passage> fresh, Listener listener) {
+        Semaphore freeWorkers = new Semaphore(parallelism);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        AtomicInteger embedded = new AtomicInteger();
+        for (int from = 0; from < fresh.size() && failure.get() == null && !listener.isCancelled(); from += batchSize) {
+            List<BookPassageRepository.Passage> batch = fresh.subList(from, Math.min(from + batchSize, fresh.size()));
+            freeWorkers.acquireUninterruptibly();
+            executor.execute(() -> {
+                try {
+                    List<float[]> vectors = embeddingModel.embed(batch.stream()
+                            .map(passage -> embeddingText(passage.text()))
+                            .toList());
+                    bookPassageRepository.insert(bookId, batch, vectors);
+                    embedded.addAndGet(batch.size());
+                    synchronized (listener) {
+                        listener.batchCompleted(batch.size());
+                    }
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    freeWorkers.release();
+                }
+            });
+        }
+        freeWorkers.acquireUninterruptibly(parallelism);
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return embedded.get();
+    }
+
+    /**
+     * @param bookId null — по всем доступным пользователю книгам
+     * @param userId владелец личных копий; null — только публичные книги
+     */
+    public List<BookPassageDTO> search(String query, Long bookId, Long userId, int limit) {
+        if (!enabled) {
+            return List.of();
+        }
+        float[] vector = embeddingModel.embed("task: search result | query: " + query);
+        return bookPassageRepository.search(vector, userId, bookId, MIN_SCORE, limit).stream()
+                .map(BookPassageDTO::toDTO)
+                .toList();
+    }
+
+    private static String embeddingText(String text) {
+        return "title: none | text: " + text;
+    }
+
+    private String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelName.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return HexFormat.of().formatHex(digest.digest(embeddingText(text).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,11 +1,11 @@
 package com.diplom.diplom.Service;
 
-import java.net.URI;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -13,37 +13,46 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
-import org.springframework.ai.document.Document;
 import org.springframework.ai.embedding.EmbeddingModel;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import com.diplom.diplom.Client.GoogleBooksClient;
+import com.diplom.diplom.Client.GoogleBooksVolumes;
 import com.diplom.diplom.Entity.Book;
-import com.diplom.diplom.Entity.BookContent;
+import com.diplom.diplom.Entity.DTO.BookContentPageDTO;
 import com.diplom.diplom.Entity.DTO.BookCreateUpdateDTO;
 import com.diplom.diplom.Entity.DTO.BookDetailDTO;
+import com.diplom.diplom.Entity.DTO.BookPassageDTO;
 import com.diplom.diplom.Entity.DTO.BookReadDTO;
+import com.diplom.diplom.Entity.DTO.BookSuggestionDTO;
+import com.diplom.diplom.Entity.DTO.CursorPageDTO;
+import com.diplom.diplom.Entity.DTO.SemanticSearchFilter;
 import com.diplom.diplom.Entity.User;
 import com.diplom.diplom.Entity.UserBook;
 import com.diplom.diplom.Exception.AccessDeniedException;
 import com.diplom.diplom.Exception.ApiIntegrationException;
 import com.diplom.diplom.Exception.DuplicateResourceException;
 import com.diplom.diplom.Exception.ResourceNotFoundException;
-import com.diplom.diplom.Repository.BookContentRepository;
+import com.diplom.diplom.Metrics.OutboundCallMetrics;
 import com.diplom.diplom.Repository.BookRepository;
+import com.diplom.diplom.Repository.BookVectorRepository;
 import com.diplom.diplom.Repository.UserBookRepository;
 import com.diplom.diplom.Repository.UserRepository;
+import com.diplom.diplom.Search.BookSearchIndex;
+import com.diplom.diplom.Search.BookSuggestIndex;
+import com.diplom.diplom.Search.ContentPager;
+import com.diplom.diplom.Search.SearchHits;
 
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -54,23 +63,29 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class BookService {
 
-    private final BookRepository bookRepository;
-    private final RestTemplate restTemplate;
+    private static final int GOOGLE_BOOKS_MAX_RESULTS = 40;
+    private static final double SEMANTIC_MIN_SCORE = 0.4;
+    private static final int CONTENT_WRITE_CHARS = 8192;
+    private static final Sort CATALOG_SORT = Sort.by("id");
 
-    private final VectorStore vectorStore;
+    private final BookRepository bookRepository;
+    private final GoogleBooksClient googleBooksClient;
 
     private final EmbeddingModel embeddingModel;
     private final UserBookRepository userBookRepository;
-    @Value("${google.books.api.url}")
-    private String googleBooksApiUrl;
-
-    @Value("${google.books.api.key}")
-    private String googleBooksApiKey;
-
-    private final JdbcTemplate jdbcTemplate;
     private final UserRepository userRepository;
 
-    private final BookContentRepository bookContentRepository;
+    private final BookContentStore bookContentStore;
+
+    private final BookSearchIndex bookSearchIndex;
+    private final BookSuggestIndex bookSuggestIndex;
+    private final OutboundCallMetrics outboundCallMetrics;
+    private final GoogleBooksCache googleBooksCache;
+    private final BookEmbeddingService bookEmbeddingService;
+    private final EmbeddingOutboxService embeddingOutboxService;
+    private final BookNeighbourService bookNeighbourService;
+    private final BookVectorRepository bookVectorRepository;
+    private final BookPassageService bookPassageService;
 
     @Transactional
     public Page<BookReadDTO> getAllBooks(int page, int size) {
@@ -78,6 +93,22 @@ public class BookService {
                 .map(BookReadDTO::toDTO);
     }
 
+    /**
+     * Keyset-пагинация каталога по id: стоимость страницы не зависит от её
+     * номера, count выполняется только при withTotal.
+     */
+    @Transactional
+    public CursorPageDTO<BookReadDTO> getAllBooksByCursor(String cursor, int size, boolean withTotal) {
+        Window<Book> window = bookRepository.findAllBy(CursorCodec.decode(cursor, CATALOG_SORT), CATALOG_SORT,
+                Limit.of(size));
+        return CursorPageDTO.<BookReadDTO>builder()
+                .content(window.map(BookReadDTO::toDTO).getContent())
+                .hasNext(window.hasNext())
+                .nextCursor(window.hasNext() ? CursorCodec.encode(window.positionAt(window.size() - 1), CATALOG_SORT) : null)
+                .totalElements(withTotal ? bookRepository.count() : null)
+                .build();
+    }
+
     @Transactional
     public BookDetailDTO getBookById(Long id) {
         String userName = SecurityContextHolder.getContext().getAuthentication().getName();
@@ -104,6 +135,7 @@ public class BookService {
 
         return bookRepository.findById(id)
                 .map(existingBook -> {
+                    String embeddedHash = bookEmbeddingService.contentHash(existingBook);
                     if (bookCreateUpdateDTO.getTitle() != null) {
                         existingBook.setTitle(bookCreateUpdateDTO.getTitle());
                     }
@@ -128,8 +160,15 @@ public class BookService {
                     if (bookCreateUpdateDTO.getGenres() != null) {
                         existingBook.setGenres(bookCreateUpdateDTO.getGenres());
                     }
-                    generateAndSetEmbedding(existingBook);
-                    return BookReadDTO.toDTO(bookRepository.save(existingBook));
+                    Book savedBook = bookRepository.save(existingBook);
+                    bookSearchIndex.index(savedBook);
+                    bookSuggestIndex.index(savedBook);
+                    bookNeighbourService.invalidateAround(savedBook.getId());
+                    // Обложка, ISBN, число страниц в вектор не входят — пересчитывать нечего
+                    if (!Objects.equals(embeddedHash, bookEmbeddingService.contentHash(savedBook))) {
+                        embeddingOutboxService.enqueue(savedBook.getId());
+                    }
+                    return BookReadDTO.toDTO(savedBook);
                 })
                 .orElseThrow(() -> new ResourceNotFoundException("Книга с id: " + id + " не найдена"));
     }
@@ -139,12 +178,23 @@ public class BookService {
         if (!bookRepository.existsById(id)) {
             throw new ResourceNotFoundException("Книга с id: " + id + " не найдена");
         }
+        // Строки book_neighbours со ссылкой на книгу удалятся каскадом — запоминаем, чьи списки пересчитать
+        List<Long> referrers = bookNeighbourService.findReferrers(id);
+        bookContentStore.delete(id);
         bookRepository.deleteById(id);
+        bookSearchIndex.remove(id);
+        bookSuggestIndex.remove(id);
+        // Вектор удалит обработчик outbox: книги уже нет, и он убирает её вектор по id документа
+        embeddingOutboxService.enqueueDeletion(id, referrers);
+        bookNeighbourService.invalidateAround(id, referrers);
     }
 
     @Transactional
     public BookReadDTO addBook(BookCreateUpdateDTO bookCreateUpdateDTO) {
         Book book = bookRepository.save(BookCreateUpdateDTO.toBook(bookCreateUpdateDTO));
+        bookSearchIndex.index(book);
+        bookSuggestIndex.index(book);
+        embeddingOutboxService.enqueue(book.getId());
         return BookReadDTO.toDTO(book);
     }
     @Transactional
@@ -155,16 +205,28 @@ public class BookService {
         }
         try {
             User user = getCurrentUser();
-            Page<Book> books = bookRepository.searchByTitleOrAuthorOrIsbn(
-                    query,
-                    PageRequest.of(page, size));
-            List<Long> bookIds = books.map(Book::getId).getContent();
+            Pageable pageable = PageRequest.of(page, size);
+            SearchHits hits = searchBookIds(query.trim(), pageable);
+            if (hits.ids().isEmpty()) {
+                return new PageImpl<>(Collections.emptyList(), pageable, hits.total());
+            }
+
+            List<Long> bookIds = hits.ids();
+            Map<Long, Book> bookMap = bookRepository.findAllById(bookIds).stream()
+                    .collect(Collectors.toMap(Book::getId, Function.identity()));
             Set<Long> addedBookIds = userBookRepository.findBookIdsByUser(user.getId(), bookIds);
-            return books.map(book -> {
-                BookReadDTO dto = mapToBookReadDTO(book);
-                dto.setIsAdded(addedBookIds.contains(book.getId()));
-                return dto;
-            });
+
+            // findAllById не сохраняет порядок, поэтому восстанавливаем ранжирование
+            List<BookReadDTO> content = bookIds.stream()
+                    .map(bookMap::get)
+                    .filter(Objects::nonNull)
+                    .map(book -> {
+                        BookReadDTO dto = mapToBookReadDTO(book);
+                        dto.setIsAdded(addedBookIds.contains(book.getId()));
+                        return dto;
+                    })
+                    .collect(Collectors.toList());
+            return new PageImpl<>(content, pageable, hits.total());
 
         } catch (Exception e) {
             log.error("Ошибка при поиске в своей библиотеке: {}", e.getMessage(), e);
@@ -172,35 +234,62 @@ public class BookService {
         }
     }
 
+    /**
+     * Возвращает id найденных книг для страницы: из in-memory индекса, если он
+     * включен, иначе полнотекстовым запросом в Postgres.
+     */
+    SearchHits searchBookIds(String query, Pageable pageable) {
+        if (bookSearchIndex.isEnabled()) {
+            return bookSearchIndex.search(query, (int) pageable.getOffset(), pageable.getPageSize());
+        }
+        String tsQuery = toPrefixTsQuery(query);
+        if (tsQuery.isEmpty()) {
+            return SearchHits.empty();
+        }
+        List<BookRepository.SearchHit> hits = bookRepository.fullTextSearch(
+                query, tsQuery, pageable.getPageSize(), pageable.getOffset());
+        long total;
+        if (!hits.isEmpty()) {
+            total = hits.get(0).getTotal();
+        } else if (pageable.getOffset() > 0) {
+            // Страница за последним совпадением: count(*) OVER () некому вернуть
+            total = bookRepository.countFullTextSearch(query, tsQuery);
+        } else {
+            total = 0;
+        }
+        return new SearchHits(hits.stream().map(BookRepository.SearchHit::getId).toList(), total);
+    }
+
+    /**
+     * Превращает пользовательский ввод в префиксный tsquery: "войн ми" -> "войн:* & ми:*".
+     * Из токенов остаются только буквы и цифры, поэтому синтаксис tsquery сломать нельзя.
+     */
+    private String toPrefixTsQuery(String query) {
+        String normalized = isIsbnFormat(query.trim()) ? query.replace("-", "") : query;
+        return Arrays.stream(normalized.toLowerCase().split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> !token.isEmpty())
+                .map(token -> token + ":*")
+                .collect(Collectors.joining(" & "));
+    }
+
+    /**
+     * Автодополнение по названиям и авторам. Отвечает из памяти, без запросов к БД.
+     */
+    public List<BookSuggestionDTO> suggestBooks(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return Collections.emptyList();
+        }
+        return bookSuggestIndex.suggest(prefix, Math.min(Math.max(limit, 1), 10));
+    }
+
     public Page<BookReadDTO> searchInGoogleBooks(String query, int page, int size) {
         if (query == null || query.trim().isEmpty()) {
             return Page.empty(PageRequest.of(page, size));
         }
         try {
-            String searchQuery = isIsbnFormat(query) ? "isbn:" + query.replace("-", "") : query;
-            String encodedQuery = URLEncoder.encode(searchQuery, StandardCharsets.UTF_8);
-
-            int maxResults = size * 3;
-
-            URI uri = URI.create(googleBooksApiUrl
-                    + "?q=" + encodedQuery
-                    + "&langRestrict=ru"
-                    + "&maxResults=" + maxResults
-                    + "&key=" + googleBooksApiKey);
-
-            log.info("Запрос к Google Books API: {}", uri);
-            Map<String, Object> response = restTemplate.getForObject(uri, Map.class);
-
-            if (response == null || !response.containsKey("items")) {
-                return Page.empty(PageRequest.of(page, size));
-            }
-
-            List<Map<String, Object>> items = (List<Map<String, Object>>) response.get("items");
-
-            List<BookReadDTO> allResults = items.stream()
-                    .map(this::convertGoogleBookToDTO)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
+            List<BookReadDTO> allResults = isIsbnFormat(query)
+                    ? fetchGoogleBooks("isbn", query.replace("-", ""), 0)
+                    : fetchGoogleBooks("", query, 0);
 
             List<String> isbns = allResults.stream()
                     .map(BookReadDTO::getIsbn)
@@ -231,6 +320,24 @@ public class BookService {
         }
     }
 
+    /**
+     * Одна страница volumes из Google Books, уже сконвертированная в DTO.
+     * Запрашивается всегда максимум, который отдаёт API (40), поэтому ключ
+     * кэша не зависит от размера страницы у клиента.
+     */
+    private List<BookReadDTO> fetchGoogleBooks(String field, String query, int startIndex) {
+        return googleBooksCache.get(GoogleBooksCache.key(field, query, startIndex), () -> {
+            String searchQuery = field.isEmpty() ? query : field + ":" + query;
+            GoogleBooksVolumes response = googleBooksClient.searchVolumes(searchQuery, startIndex,
+                    GOOGLE_BOOKS_MAX_RESULTS);
+
+            return response.items().stream()
+                    .map(this::convertGoogleBookToDTO)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        });
+    }
+
     @Transactional
     public Book importBookByIsbn(String isbn) {
         if (isbn == null || isbn.trim().isEmpty()) {
@@ -264,7 +371,9 @@ public class BookService {
                 .build();
 
         Book savedBook = bookRepository.save(bookToSave);
-        generateAndSetEmbedding(savedBook);
+        bookSearchIndex.index(savedBook);
+        bookSuggestIndex.index(savedBook);
+        embeddingOutboxService.enqueue(savedBook.getId());
         log.info("Книга '{}' успешно импортирована.", savedBook.getTitle());
         return savedBook;
     }
@@ -273,169 +382,114 @@ public class BookService {
         return query.matches("^[0-9\\-]+$");
     }
 
-    public Page<BookReadDTO> findSimilarBooks(String query, int topK, int page, int size) {
-        if (query == null || query.trim().isEmpty()) {
-            return Page.empty(PageRequest.of(page, size));
-        }
-
-        String formattedQuery = "task: search result | query: " + query;
-
-        SearchRequest request = SearchRequest.builder()
-                .query(formattedQuery)
-                .topK(topK)
-                .similarityThreshold(0.4)
-                .build();
-
-        List<Document> similarDocs = vectorStore.similaritySearch(request);
-
-        List<Long> bookIds = similarDocs.stream()
-                .map(doc -> Long.parseLong(doc.getMetadata().get("book_id").toString()))
-                .collect(Collectors.toList());
-
-        List<BookReadDTO> dtoList = bookRepository.findAllById(bookIds).stream()
-                .map(this::mapToBookReadDTO)
-                .collect(Collectors.toList());
-
-
+    /**
+     * Семантический поиск по каталогу. Фильтры, порядок по близости и
+     * OFFSET/LIMIT выполняются в одном pgvector-запросе, поэтому любая
+     * страница стоит одного запроса независимо от глубины. Полное число
+     * совпадений не считается (это был бы полный обход индекса): totalElements —
+     * нижняя граница, которая на единицу больше уже показанного, пока есть
+     * следующая страница.
+     *
+     * @param topK необязательный предел на общее число результатов
+     */
+    public Page<BookReadDTO> findSimilarBooks(String query, Integer topK, SemanticSearchFilter filter,
+            int page, int size) {
         PageRequest pageRequest = PageRequest.of(page, size);
-        int start = (int) pageRequest.getOffset();
-        int end = Math.min(start + pageRequest.getPageSize(), dtoList.size());
-        List<BookReadDTO> pageContent = start >= dtoList.size() ? List.of() : dtoList.subList(start, end);
-
-        return new PageImpl<>(pageContent, pageRequest, dtoList.size());
-    }
-
-
-    public List<BookReadDTO> findSimilarBooksByBookId(Long bookId, int limit) {
-        Book sourceBook = bookRepository.findById(bookId)
-                .orElseThrow(() -> new ResourceNotFoundException(
-                        "Книга с ID " + bookId + " не найдена"
-                ));
-
-        String baseQueryText = buildSearchQuery(sourceBook);
-
-        if (baseQueryText.trim().isEmpty()) {
-            return Collections.emptyList();
+        if (query == null || query.trim().isEmpty()) {
+            return Page.empty(pageRequest);
         }
-
-        String formattedQuery = "title: none | text: " + baseQueryText;
-
-        SearchRequest request = SearchRequest.builder()
-                .query(formattedQuery)
-                .topK((int)(limit * 2) + 1)
-
-                .similarityThreshold(0.4)
-                .build();
-
-        List<Document> similarDocuments = vectorStore.similaritySearch(request);
-
-
-        if (similarDocuments.isEmpty()) {
-            log.warn("Для книги {} похожих книг не найдено (даже с низким порогом)", bookId);
-            return Collections.emptyList();
+        long offset = pageRequest.getOffset();
+        int limit = size;
+        if (topK != null) {
+            if (offset >= topK) {
+                return new PageImpl<>(List.of(), pageRequest, topK);
+            }
+            limit = (int) Math.min(limit, topK - offset);
         }
 
-        List<Long> similarBookIds = similarDocuments.stream()
-                .map(doc -> {
-                    Object bookIdObj = doc.getMetadata().get("book_id");
-                    return bookIdObj != null ? Long.parseLong(bookIdObj.toString()) : null;
-                })
-                .filter(Objects::nonNull)
-                .filter(id -> !id.equals(bookId))
-                .distinct()
-                .limit(limit)
-                .collect(Collectors.toList());
-
-        if (similarBookIds.isEmpty()) {
-            return Collections.emptyList();
+        // Лишняя строка нужна только чтобы узнать, есть ли следующая страница
+        List<BookVectorRepository.Hit> hits = semanticSearchHits(query, filter, currentUserIdOrNull(), offset, limit + 1);
+        boolean hasNext = hits.size() > limit && (topK == null || offset + limit < topK);
+        if (hits.size() > limit) {
+            hits = hits.subList(0, limit);
         }
 
-        Map<Long, Book> bookMap = bookRepository.findAllById(similarBookIds)
+        // findAllById возвращает книги в произвольном порядке, ранг восстанавливается по id
+        Map<Long, Book> books = bookRepository.findAllById(hits.stream().map(BookVectorRepository.Hit::bookId).toList())
                 .stream()
                 .collect(Collectors.toMap(Book::getId, Function.identity()));
-
-        return similarBookIds.stream()
-                .map(bookMap::get)
+        List<BookReadDTO> content = hits.stream()
+                .map(hit -> books.get(hit.bookId()))
                 .filter(Objects::nonNull)
                 .map(this::mapToBookReadDTO)
-                .collect(Collectors.toList());
-    }
-
+                .toList();
 
-
-    private String buildSearchQuery(Book book) {
-        return Stream.of(
-                        book.getTitle() != null ? "Название: " + book.getTitle() : null,
-                        book.getAuthor() != null ? "Автор: " + book.getAuthor() : null,
-                        book.getGenres() != null && !book.getGenres().isEmpty()
-                                ? "Жанры: " + String.join(", ", book.getGenres())
-                                : null,
-                        book.getAnnotation() != null ? "Аннотация: " + book.getAnnotation() : null
-                )
-                .filter(Objects::nonNull)
-                .collect(Collectors.joining("\n"));
+        return new PageImpl<>(content, pageRequest, offset + hits.size() + (hasNext ? 1 : 0));
     }
 
-    private BookReadDTO convertGoogleBookToDTO(Map<String, Object> googleBook) {
-        try {
-            String googleBookId = (String) googleBook.get("id");
-            Map<String, Object> volumeInfo = (Map<String, Object>) googleBook.get("volumeInfo");
-
-            if (volumeInfo == null) {
-                return null;
-            }
+    List<BookVectorRepository.Hit> semanticSearchHits(String query, SemanticSearchFilter filter, Long userId,
+            long offset, int limit) {
+        float[] vector = embeddingModel.embed("task: search result | query: " + query);
+        return bookVectorRepository.search(vector, filter, userId, SEMANTIC_MIN_SCORE, offset, limit);
+    }
 
-            BookReadDTO.BookReadDTOBuilder builder = BookReadDTO.builder();
+    /**
+     * Фрагменты текста книг, ближайшие к запросу по смыслу: по одной книге
+     * или по всем публичным книгам и личным копиям текущего пользователя.
+     */
+    public List<BookPassageDTO> searchPassages(String query, Long bookId, int limit) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        return bookPassageService.search(query, bookId, currentUserIdOrNull(), Math.min(Math.max(limit, 1), 50));
+    }
 
-            builder.googleBookId(googleBookId);
-            builder.source("GOOGLE_API");
-            builder.title((String) volumeInfo.get("title"));
+    /**
+     * Похожие книги из заранее посчитанной таблицы book_neighbours, без
+     * обращения к модели и векторного поиска на каждый просмотр.
+     */
+    public List<BookReadDTO> findSimilarBooksByBookId(Long bookId, int limit) {
+        return bookNeighbourService.getSimilar(bookId, limit);
+    }
 
-            List<String> authors = (List<String>) volumeInfo.get("authors");
-            if (authors != null && !authors.isEmpty()) {
-                builder.author(String.join(", ", authors));
-            }
-            List<String> categories = (List<String>) volumeInfo.get("categories");
-            if (categories != null && !categories.isEmpty()) {
-                builder.genres(categories);
-            }
-            builder.annotation((String) volumeInfo.get("description"));
+    private BookReadDTO convertGoogleBookToDTO(GoogleBooksVolumes.Volume googleBook) {
+        GoogleBooksVolumes.VolumeInfo volumeInfo = googleBook.volumeInfo();
+        if (volumeInfo == null) {
+            return null;
+        }
 
-            Object pageCountObj = volumeInfo.get("pageCount");
-            if (pageCountObj != null) {
-                builder.pageCount(((Number) pageCountObj).intValue());
-            }
+        BookReadDTO.BookReadDTOBuilder builder = BookReadDTO.builder();
 
-            List<Map<String, String>> identifiers = (List<Map<String, String>>) volumeInfo.get("industryIdentifiers");
-            if (identifiers != null && !identifiers.isEmpty()) {
-                builder.isbn(identifiers.get(0).get("identifier"));
-            }
+        builder.googleBookId(googleBook.id());
+        builder.source("GOOGLE_API");
+        builder.title(volumeInfo.title());
 
-            String publishedDateStr = (String) volumeInfo.get("publishedDate");
-            if (publishedDateStr != null) {
-                try {
-                    builder.publishedDate(parsePublishedDate(publishedDateStr));
-                } catch (Exception e) {
-                    log.warn("Не удалось распарсить дату: {}", publishedDateStr);
-                }
-            }
+        if (volumeInfo.authors() != null && !volumeInfo.authors().isEmpty()) {
+            builder.author(String.join(", ", volumeInfo.authors()));
+        }
+        if (volumeInfo.categories() != null && !volumeInfo.categories().isEmpty()) {
+            builder.genres(volumeInfo.categories());
+        }
+        builder.annotation(volumeInfo.description());
+        builder.pageCount(volumeInfo.pageCount());
+        builder.isbn(volumeInfo.preferredIsbn());
 
-            Map<String, String> imageLinks = (Map<String, String>) volumeInfo.get("imageLinks");
-            if (imageLinks != null) {
-                String coverUrl = imageLinks.get("thumbnail");
-                if (coverUrl != null) {
-                    builder.coverUrl(coverUrl.replace("http://", "https://"));
-                }
+        String publishedDateStr = volumeInfo.publishedDate();
+        if (publishedDateStr != null) {
+            try {
+                builder.publishedDate(parsePublishedDate(publishedDateStr));
+            } catch (Exception e) {
+                log.warn("Не удалось распарсить дату: {}", publishedDateStr);
             }
+        }
 
-            builder.isAdded(false);
+        if (volumeInfo.imageLinks() != null && volumeInfo.imageLinks().thumbnail() != null) {
+            builder.coverUrl(volumeInfo.imageLinks().thumbnail().replace("http://", "https://"));
+        }
 
-            return builder.build();
+        builder.isAdded(false);
 
-        } catch (Exception e) {
-            log.error("Ошибка при конвертации Google Book: {}", e.getMessage());
-            return null;
-        }
+        return builder.build();
     }
 
     private LocalDateTime parsePublishedDate(String dateStr) {
@@ -453,17 +507,15 @@ public class BookService {
     }
 
     private BookReadDTO mapToBookReadDTO(Book book) {
-        return BookReadDTO.builder()
-                .id(book.getId())
-                .title(book.getTitle())
-                .author(book.getAuthor())
-                .annotation(book.getAnnotation())
-                .pageCount(book.getPageCount())
-                .isbn(book.getIsbn())
-                .publishedDate(book.getPublishedDate())
-                .coverUrl(book.getCoverUrl())
-                .googleBookId(book.getGoogleBookId())
-                .build();
+        return BookReadDTO.toShortDTO(book);
+    }
+
+    Long currentUserIdOrNull() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return userRepository.findByUsername(authentication.getName()).map(User::getId).orElse(null);
     }
 
     public User getCurrentUser() {
@@ -473,21 +525,6 @@ public class BookService {
     }
 
 
-    private void removeOldVector(Long bookId) {
-        try {
-
-            String sql = "DELETE FROM vector_store WHERE metadata->>'book_id' = ?";
-
-            jdbcTemplate.update(sql, bookId.toString());
-
-            log.info("Удалены старые векторы для book_id: {}", bookId);
-
-        } catch (Exception e) {
-            log.warn("Ошибка при удалении старого вектора для книги {}: {}", bookId, e.getMessage());
-        }
-    }
-
-
     public Page<BookReadDTO> searchGoogleBooksByTitle(String title, int page, int size) {
         return searchGoogleBooksAdvanced("intitle", title, page, size);
     }
@@ -501,31 +538,9 @@ public class BookService {
             return Page.empty(PageRequest.of(page, size));
         }
         try {
-            String encodedQuery = URLEncoder.encode(field + ":" + query, StandardCharsets.UTF_8);
-
-            int maxResults = size * 3;
             int startIndex = page * size;
 
-            URI uri = URI.create(googleBooksApiUrl
-                    + "?q=" + encodedQuery
-                    + "&langRestrict=ru"
-                    + "&maxResults=" + maxResults
-                    + "&startIndex=" + startIndex
-                    + "&key=" + googleBooksApiKey);
-
-            log.info("Запрос к Google Books API: {}", uri);
-            Map<String, Object> response = restTemplate.getForObject(uri, Map.class);
-
-            if (response == null || !response.containsKey("items")) {
-                return Page.empty(PageRequest.of(page, size));
-            }
-
-            List<Map<String, Object>> items = (List<Map<String, Object>>) response.get("items");
-
-            List<BookReadDTO> allResults = items.stream()
-                    .map(this::convertGoogleBookToDTO)
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
+            List<BookReadDTO> allResults = fetchGoogleBooks(field, query, startIndex);
 
             Pageable pageable = PageRequest.of(page, size);
             int start = (int) pageable.getOffset();
@@ -543,31 +558,9 @@ public class BookService {
         }
     }
 
-    @Transactional
-    public void regenerateAllEmbeddings() {
-        log.info("Начинаем перегенерацию векторов...");
-        jdbcTemplate.update("TRUNCATE TABLE vector_store");
-        List<Book> allBooks = bookRepository.findAll();
-
-        int count = 0;
-        for (Book book : allBooks) {
-            try {
-
-
-                generateAndSetEmbedding(book);
-                count++;
-
-                if (count % 50 == 0)
-                    log.info("Обработано {} книг...", count);
-            } catch (Exception e) {
-                log.error("Ошибка с книгой {}: {}", book.getId(), e.getMessage());
-            }
-        }
-        log.info("Готово. Обновлено: {}", count);
-    }
-
-    @Transactional
-    public void uploadPersonalBookContent(Long userBookId, String contentText, User currentUser) {
+    @Transactional(rollbackOn = IOException.class)
+    public void uploadPersonalBookContent(Long userBookId, InputStream content, User currentUser)
+            throws IOException {
         UserBook userBook = userBookRepository.findById(userBookId)
                 .orElseThrow(() -> new ResourceNotFoundException("Запись на полке не найдена: " + userBookId));
 
@@ -579,7 +572,7 @@ public class BookService {
 
         if (currentUser.equals(currentBook.getOwner())) {
             log.info("Книга ID {} уже является личной копией. Обновляем текст.", currentBook.getId());
-            saveOrUpdateBookContent(currentBook, contentText);
+            saveOrUpdateBookContent(currentBook, content);
             return;
         }
 
@@ -602,12 +595,16 @@ public class BookService {
         personalCopy.setOwner(currentUser);
 
         Book savedPersonalCopy = bookRepository.save(personalCopy);
+        bookSearchIndex.index(savedPersonalCopy);
+        bookSuggestIndex.index(savedPersonalCopy);
 
-        generateAndSetEmbedding(savedPersonalCopy);
+        embeddingOutboxService.enqueue(savedPersonalCopy.getId());
 
-        saveOrUpdateBookContent(savedPersonalCopy, contentText);
+        saveOrUpdateBookContent(savedPersonalCopy, content);
 
         userBook.setBook(savedPersonalCopy);
+        // Запись на полке больше не считается читателем публичной книги
+        bookSuggestIndex.changePopularity(currentBook.getId(), -1);
 
         // Опционально: Сбрасываем прогресс, т.к. текст новый
         // userBook.setProgress(0);
@@ -620,84 +617,87 @@ public class BookService {
     }
 
     /**
-     * Вспомогательный метод для сохранения текста в таблицу book_contents
+     * Вспомогательный метод для сохранения текста: потоком, кусками в book_content_chunks
      */
-    private void saveOrUpdateBookContent(Book book, String content) {
-        BookContent bookContent = bookContentRepository.findById(book.getId())
-                .orElse(new BookContent(book.getId(), book, content));
-
-        bookContent.setContent(content);
-        bookContentRepository.save(bookContent);
+    private void saveOrUpdateBookContent(Book book, InputStream content) throws IOException {
+        bookContentStore.write(book, content);
+        bookPassageService.schedule(book.getId());
     }
 
     public String getBookContent(Long bookId) {
-        return bookContentRepository.findById(bookId)
-                .map(BookContent::getContent)
+        return bookContentStore.text(bookId)
+                .map(CharSequence::toString)
                 .orElse(null); // Или вернуть заглушку, если текста нет
     }
 
-    @Transactional
-    public void uploadContentAsAdmin(Long bookId, String contentText) {
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new ResourceNotFoundException("Книга не найдена: " + bookId));
-
-        BookContent bookContent = bookContentRepository.findById(bookId)
-                .orElse(new BookContent());
-
-        if (bookContent.getBook() == null) {
-            bookContent.setBook(book);
-        }
-
-        bookContent.setContent(contentText);
-
-        book.setHasBookContent(true);
-
-        bookContentRepository.save(bookContent);
-        bookRepository.save(book);
-
-        log.info("Администратор загрузил текст для книги ID {}", bookId);
+    /**
+     * Длина и версия текста — без чтения самого текста, чтобы ответить 304
+     * по If-None-Match до загрузки страницы.
+     */
+    public BookContentStore.Header getBookContentHeader(Long bookId) {
+        return bookContentStore.header(bookId)
+                .orElseThrow(() -> new ResourceNotFoundException("У книги нет текста: " + bookId));
     }
 
-    private void generateAndSetEmbedding(Book book) {
-        if (book.getTitle() == null || book.getTitle().trim().isEmpty()) {
-            log.warn("Невозможно сгенерировать вектор для книги с id={}, так как отсутствует название.", book.getId());
-            return;
-        }
-
-        removeOldVector(book.getId());
-
-        log.info("Генерация и сохранение вектора для книги: {}", book.getTitle());
-
-        StringBuilder textToEmbed = new StringBuilder();
-
-        textToEmbed.append("title: none | text: ");
-
-        textToEmbed.append("Название: ").append(book.getTitle()).append(". ");
-
-        if (book.getAuthor() != null && !book.getAuthor().trim().isEmpty()) {
-            textToEmbed.append("Автор: ").append(book.getAuthor()).append(". ");
-        }
+    public String getBookContentPageETag(BookContentStore.Header header) {
+        return bookContentStore.pageETag(header);
+    }
 
-        if (book.getGenres() != null && !book.getGenres().isEmpty()) {
-            textToEmbed.append("Жанры: ").append(String.join(", ", book.getGenres())).append(". ");
+    /**
+     * Страница текста по номеру или страница, содержащая символ offset
+     * (например, начало фрагмента из поиска по содержимому). Читаются только
+     * куски текста, на которые приходится страница.
+     */
+    public BookContentPageDTO getBookContentPage(Long bookId, int page, Integer offset) {
+        CharSequence text = bookContentStore.text(bookId)
+                .orElseThrow(() -> new ResourceNotFoundException("У книги нет текста: " + bookId));
+        ContentPager pager = bookContentStore.pager();
+        int totalPages = pager.pageCount(text.length());
+        int number = offset != null
+                ? Math.min(pager.pageOf(text, Math.min(Math.max(offset, 0), text.length())), totalPages - 1)
+                : page;
+        if (number < 0 || number >= totalPages) {
+            throw new ResourceNotFoundException("Страницы " + number + " нет, всего страниц: " + totalPages);
         }
+        ContentPager.Page found = pager.page(text, number);
+        return BookContentPageDTO.builder()
+                .bookId(bookId)
+                .page(number)
+                .totalPages(totalPages)
+                .startOffset(found.start())
+                .endOffset(found.end())
+                .length(text.length())
+                .text(text.subSequence(found.start(), found.end()).toString())
+                .build();
+    }
 
-        if (book.getAnnotation() != null && !book.getAnnotation().trim().isEmpty()) {
-            String cleanAnnotation = book.getAnnotation().replaceAll("<[^>]*>", "");
-            textToEmbed.append("Аннотация: ").append(cleanAnnotation);
+    /**
+     * Пишет фрагмент текста [start, end) в символах UTF-16 порциями по
+     * CONTENT_WRITE_CHARS: из кусков в памяти не больше двух, весь фрагмент
+     * строкой не собирается. Границы проверяет вызывающий.
+     */
+    public void writeBookContentRange(Long bookId, int start, int end, Writer out) throws IOException {
+        CharSequence text = bookContentStore.text(bookId)
+                .orElseThrow(() -> new ResourceNotFoundException("У книги нет текста: " + bookId));
+        for (int position = start; position < end; position += CONTENT_WRITE_CHARS) {
+            out.append(text, position, Math.min(position + CONTENT_WRITE_CHARS, end));
         }
+        out.flush();
+    }
 
-        Map<String, Object> metadata = new HashMap<>();
-        metadata.put("book_id", book.getId());
-        metadata.put("title", book.getTitle());
-        metadata.put("author", book.getAuthor());
+    @Transactional(rollbackOn = IOException.class)
+    public void uploadContentAsAdmin(Long bookId, InputStream content) throws IOException {
+        Book book = bookRepository.findById(bookId)
+                .orElseThrow(() -> new ResourceNotFoundException("Книга не найдена: " + bookId));
 
-        Document document = new Document(textToEmbed.toString(), metadata);
+        bookContentStore.write(book, content);
 
+        book.setHasBookContent(true);
 
-        vectorStore.add(List.of(document));
+        bookRepository.save(book);
+        bookPassageService.schedule(bookId);
 
-        log.info("Вектор для книги '{}' успешно сохранен в VectorStore", book.getTitle());
+        log.info("Администратор загрузил текст для книги ID {}", bookId);
     }
 
     /**
@@ -0,0 +1,93 @@
+package com.diplom.diplom.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import com.diplom.diplom.Exception.BadRequestException;
+
+/**
+ * Кодирует позицию keyset-пагинации (значения ключа сортировки + id) в
+ * непрозрачную строку для клиента и обратно. Тип значения сохраняется в
+ * курсоре, чтобы при разборе получить тот же Long/Integer/LocalDateTime.
+ * В курсор записывается и сортировка, для которой он создан: с другой
+ * сортировкой ключи позиции не совпали бы с ключами запроса. Испорченный
+ * клиентом курсор или курсор от другой сортировки — BadRequestException (400).
+ */
+final class CursorCodec {
+
+    private CursorCodec() {
+    }
+
+    static String encode(ScrollPosition position, Sort sort) {
+        if (!(position instanceof KeysetScrollPosition keyset)) {
+            return null;
+        }
+        String raw = signature(sort) + "|" + keyset.getKeys().entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + encodeValue(entry.getValue()))
+                .collect(Collectors.joining(";"));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static KeysetScrollPosition decode(String cursor, Sort sort) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        String raw;
+        Map<String, Object> keys = new LinkedHashMap<>();
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            for (String part : raw.substring(raw.indexOf('|') + 1).split(";")) {
+                int eq = part.indexOf('=');
+                keys.put(part.substring(0, eq), decodeValue(part.substring(eq + 1)));
+            }
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Некорректный курсор пагинации: " + cursor, e);
+        }
+        int separator = raw.indexOf('|');
+        Set<String> properties = sort.stream().map(Sort.Order::getProperty).collect(Collectors.toSet());
+        if (separator < 0 || !raw.substring(0, separator).equals(signature(sort))
+                || !keys.keySet().equals(properties)) {
+            throw new BadRequestException("Курсор создан для другой сортировки, ожидалась " + signature(sort)
+                    + "; начните с пустого cursor");
+        }
+        return ScrollPosition.forward(keys);
+    }
+
+    private static String signature(Sort sort) {
+        return sort.stream()
+                .map(order -> order.getProperty() + ":" + order.getDirection())
+                .collect(Collectors.joining(","));
+    }
+
+    private static String encodeValue(Object value) {
+        if (value instanceof Long) {
+            return "L:" + value;
+        }
+        if (value instanceof Integer) {
+            return "I:" + value;
+        }
+        if (value instanceof LocalDateTime) {
+            return "T:" + value;
+        }
+        throw new IllegalArgumentException("Неподдерживаемый тип ключа курсора: " + value);
+    }
+
+    private static Object decodeValue(String encoded) {
+        String value = encoded.substring(2);
+        return switch (encoded.charAt(0)) {
+            case 'L' -> Long.parseLong(value);
+            case 'I' -> Integer.parseInt(value);
+            case 'T' -> LocalDateTime.parse(value);
+            default -> throw new IllegalArgumentException("Неизвестный тип ключа курсора: " + encoded);
+        };
+    }
+}
@@ -0,0 +1,128 @@
+package com.diplom.diplom.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Кэш эмбеддингов по ключу SHA-256(модель + текст). Первый уровень — Caffeine
+ * в памяти, второй — файл, отображённый в память (MappedEmbeddingStore),
+ * переживает рестарт. Обращения считаются в bookshelf.embedding.cache.requests
+ * с тегом result=memory|disk|miss.
+ */
+@Component
+@ConditionalOnProperty(name = "app.embedding.cache.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class EmbeddingCache {
+
+    private final Cache<String, float[]> memory;
+    private final MappedEmbeddingStore disk;
+    private final String defaultModel;
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+
+    public EmbeddingCache(
+            MeterRegistry meterRegistry,
+            @Value("${spring.ai.ollama.embedding.options.model:embeddinggemma}") String defaultModel,
+            @Value("${app.embedding.cache.memory-entries:10000}") long memoryEntries,
+            @Value("${app.embedding.cache.disk.enabled:true}") boolean diskEnabled,
+            @Value("${app.embedding.cache.disk.path:data/embedding-cache.bin}") Path diskPath,
+            @Value("${app.embedding.cache.disk.max-entries:100000}") int diskEntries) throws IOException {
+        this.defaultModel = defaultModel;
+        this.memory = Caffeine.newBuilder()
+                .maximumSize(memoryEntries)
+                .recordStats()
+                .build();
+        this.disk = diskEnabled ? new MappedEmbeddingStore(diskPath, diskEntries) : null;
+
+        CaffeineCacheMetrics.monitor(meterRegistry, memory, "embeddings");
+        this.memoryHits = requests(meterRegistry, "memory");
+        this.diskHits = requests(meterRegistry, "disk");
+        this.misses = requests(meterRegistry, "miss");
+        if (disk != null) {
+            Gauge.builder("bookshelf.embedding.cache.disk.entries", disk, MappedEmbeddingStore::size)
+                    .description("Векторов в файле кэша эмбеддингов")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * @param model модель из опций запроса; null — модель по умолчанию
+     */
+    public String key(String model, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((model != null ? model : defaultModel).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    /**
+     * @return копия вектора или null при промахе; найденное на диске поднимается в память
+     */
+    public float[] get(String key) {
+        float[] vector = memory.getIfPresent(key);
+        if (vector != null) {
+            memoryHits.increment();
+            return vector.clone();
+        }
+        vector = disk != null ? disk.get(key) : null;
+        if (vector != null) {
+            diskHits.increment();
+            memory.put(key, vector);
+            return vector.clone();
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(String key, float[] vector) {
+        float[] copy = vector.clone();
+        memory.put(key, copy);
+        if (disk == null) {
+            return;
+        }
+        try {
+            disk.put(key, copy);
+        } catch (IOException | RuntimeException e) {
+            // Диск — только второй уровень, ответ от него не зависит
+            log.warn("Не удалось записать эмбеддинг в файловый кэш: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (disk != null) {
+            disk.close();
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("bookshelf.embedding.cache.requests")
+                .description("Обращения к кэшу эмбеддингов по уровню, на котором найден вектор")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
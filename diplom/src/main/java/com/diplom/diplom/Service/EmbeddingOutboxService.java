@@ -0,0 +1,145 @@
+package com.diplom.diplom.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.diplom.diplom.Entity.EmbeddingStatus;
+import com.diplom.diplom.Entity.EmbeddingTask;
+import com.diplom.diplom.Exception.ResourceNotFoundException;
+import com.diplom.diplom.Repository.EmbeddingTaskRepository;
+
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Outbox пересчёта векторов: изменения книг ставят задачу в той же транзакции,
+ * EmbeddingOutboxWorker забирает задачи пачками и отмечает результат.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmbeddingOutboxService {
+
+    private final EmbeddingTaskRepository embeddingTaskRepository;
+
+    @Value("${app.embedding.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.embedding.outbox.retry-backoff:PT30S}")
+    private Duration retryBackoff;
+
+    /**
+     * Ставит книгу в очередь. Должен вызываться внутри транзакции, меняющей книгу,
+     * чтобы задача появилась ровно тогда, когда изменение закоммичено.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void enqueue(Long bookId) {
+        embeddingTaskRepository.upsertPending(bookId, null, LocalDateTime.now());
+    }
+
+    /**
+     * Удаление книги: вместе с задачей сохраняются книги, в списках похожих
+     * которых она была, — после удаления книги их уже не найти.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void enqueueDeletion(Long bookId, Collection<Long> referrerIds) {
+        embeddingTaskRepository.upsertPending(bookId, referrerIds.isEmpty() ? null
+                : referrerIds.stream().map(String::valueOf).collect(Collectors.joining(",")), LocalDateTime.now());
+    }
+
+    public static List<Long> referrerIds(EmbeddingTask task) {
+        if (task.getReferrerIds() == null || task.getReferrerIds().isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(task.getReferrerIds().split(",")).map(Long::valueOf).toList();
+    }
+
+    /**
+     * Постановка в очередь вне пользовательской транзакции (фоновые задачи).
+     */
+    @Transactional
+    public void enqueueAll(Collection<Long> bookIds) {
+        bookIds.forEach(this::enqueue);
+    }
+
+    @Transactional
+    public List<EmbeddingTask> claim(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<EmbeddingTask> tasks = embeddingTaskRepository.lockPending(now, limit);
+        for (EmbeddingTask task : tasks) {
+            task.setStatus(EmbeddingStatus.PROCESSING);
+            task.setAttempts(task.getAttempts() + 1);
+            task.setUpdatedAt(now);
+        }
+        return tasks;
+    }
+
+    @Transactional
+    public void markDone(List<Long> taskIds) {
+        if (!taskIds.isEmpty()) {
+            embeddingTaskRepository.finish(taskIds, EmbeddingStatus.DONE, null, LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Ошибка обработки: повтор с растущей задержкой, после maxAttempts — FAILED.
+     */
+    @Transactional
+    public void markFailed(EmbeddingTask task, String error) {
+        LocalDateTime now = LocalDateTime.now();
+        if (task.getAttempts() >= maxAttempts) {
+            embeddingTaskRepository.finish(List.of(task.getId()), EmbeddingStatus.FAILED, error, now);
+            log.error("Вектор книги {} не удалось построить за {} попыток: {}", task.getBookId(),
+                    task.getAttempts(), error);
+            return;
+        }
+        Duration delay = retryBackoff.multipliedBy(1L << Math.min(task.getAttempts() - 1, 10));
+        embeddingTaskRepository.retryLater(task.getId(), now.plus(delay), error, now);
+        log.warn("Вектор книги {} не построен (попытка {}), повтор через {} c: {}", task.getBookId(),
+                task.getAttempts(), delay.toSeconds(), error);
+    }
+
+    @Transactional
+    public int releaseStale(Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        return embeddingTaskRepository.releaseStale(now.minus(lease), now);
+    }
+
+    /**
+     * Повторная постановка всех FAILED задач, например после восстановления Ollama.
+     */
+    @Transactional
+    public int retryFailed() {
+        List<EmbeddingTask> failed = embeddingTaskRepository.findByStatus(EmbeddingStatus.FAILED);
+        failed.forEach(task -> enqueue(task.getBookId()));
+        return failed.size();
+    }
+
+    public Map<EmbeddingStatus, Long> countByStatus() {
+        Map<EmbeddingStatus, Long> counts = new EnumMap<>(EmbeddingStatus.class);
+        for (EmbeddingStatus status : EmbeddingStatus.values()) {
+            counts.put(status, 0L);
+        }
+        embeddingTaskRepository.countByStatus().forEach(row -> counts.put(row.getStatus(), row.getTotal()));
+        return counts;
+    }
+
+    public List<EmbeddingTask> recentFailures() {
+        return embeddingTaskRepository.findTop50ByStatusOrderByUpdatedAtDesc(EmbeddingStatus.FAILED);
+    }
+
+    public EmbeddingTask getStatus(Long bookId) {
+        return embeddingTaskRepository.findByBookId(bookId)
+                .orElseThrow(() -> new ResourceNotFoundException("Для книги " + bookId + " нет задачи на вектор"));
+    }
+}
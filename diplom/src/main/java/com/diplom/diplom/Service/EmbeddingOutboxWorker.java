@@ -0,0 +1,168 @@
+package com.diplom.diplom.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.diplom.diplom.Entity.Book;
+import com.diplom.diplom.Entity.EmbeddingTask;
+import com.diplom.diplom.Repository.BookRepository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Фоновый разбор embedding_outbox. Опрос забирает ровно столько пачек, сколько
+ * свободных потоков в пуле, поэтому очередь в памяти не растёт: всё, что не
+ * успели взять, ждёт в таблице.
+ */
+@Component
+@Slf4j
+public class EmbeddingOutboxWorker {
+
+    private final EmbeddingOutboxService embeddingOutboxService;
+    private final BookEmbeddingService bookEmbeddingService;
+    private final BookRepository bookRepository;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration lease;
+    private final Semaphore freeWorkers;
+    private final ExecutorService executor;
+
+    public EmbeddingOutboxWorker(
+            EmbeddingOutboxService embeddingOutboxService,
+            BookEmbeddingService bookEmbeddingService,
+            BookRepository bookRepository,
+            @Value("${app.embedding.outbox.enabled:true}") boolean enabled,
+            @Value("${app.embedding.outbox.workers:2}") int workers,
+            @Value("${app.embedding.outbox.batch-size:16}") int batchSize,
+            @Value("${app.embedding.outbox.lease:PT10M}") Duration lease) {
+        this.embeddingOutboxService = embeddingOutboxService;
+        this.bookEmbeddingService = bookEmbeddingService;
+        this.bookRepository = bookRepository;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.freeWorkers = new Semaphore(workers);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "embedding-outbox-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void releaseStaleTasks() {
+        if (!enabled) {
+            return;
+        }
+        int released = embeddingOutboxService.releaseStale(lease);
+        if (released > 0) {
+            log.info("Возвращено в очередь незавершённых задач на векторы: {}", released);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.embedding.outbox.poll-interval:PT2S}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        while (freeWorkers.tryAcquire()) {
+            List<EmbeddingTask> tasks;
+            try {
+                tasks = embeddingOutboxService.claim(batchSize);
+            } catch (RuntimeException e) {
+                freeWorkers.release();
+                log.error("Не удалось забрать задачи из embedding_outbox: {}", e.getMessage());
+                return;
+            }
+            if (tasks.isEmpty()) {
+                freeWorkers.release();
+                return;
+            }
+            executor.execute(() -> {
+                try {
+                    process(tasks);
+                } finally {
+                    freeWorkers.release();
+                }
+            });
+        }
+    }
+
+    private void process(List<EmbeddingTask> tasks) {
+        Map<Long, Book> books = bookRepository.findAllById(tasks.stream().map(EmbeddingTask::getBookId).toList())
+                .stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+
+        // Книгу успели удалить — остаётся только убрать её векторы
+        Set<Long> deleted = tasks.stream()
+                .map(EmbeddingTask::getBookId)
+                .filter(bookId -> !books.containsKey(bookId))
+                .collect(Collectors.toSet());
+
+        List<Long> referrers = tasks.stream()
+                .filter(task -> deleted.contains(task.getBookId()))
+                .flatMap(task -> EmbeddingOutboxService.referrerIds(task).stream())
+                .distinct()
+                .toList();
+
+        try {
+            bookEmbeddingService.removeVectors(deleted, referrers);
+            bookEmbeddingService.embed(new ArrayList<>(books.values()));
+            embeddingOutboxService.markDone(tasks.stream().map(EmbeddingTask::getId).toList());
+            return;
+        } catch (RuntimeException e) {
+            if (tasks.size() == 1) {
+                embeddingOutboxService.markFailed(tasks.get(0), describe(e));
+                return;
+            }
+            log.warn("Пачка из {} книг не обработана ({}), обрабатываем по одной", tasks.size(), describe(e));
+        }
+
+        // Одна "плохая" книга не должна держать в очереди всю пачку
+        for (EmbeddingTask task : tasks) {
+            try {
+                Book book = books.get(task.getBookId());
+                if (book == null) {
+                    bookEmbeddingService.removeVectors(List.of(task.getBookId()),
+                            EmbeddingOutboxService.referrerIds(task));
+                } else {
+                    bookEmbeddingService.embed(List.of(book));
+                }
+                embeddingOutboxService.markDone(List.of(task.getId()));
+            } catch (RuntimeException e) {
+                embeddingOutboxService.markFailed(task, describe(e));
+            }
+        }
+    }
+
+    private static String describe(RuntimeException e) {
+        return e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+}
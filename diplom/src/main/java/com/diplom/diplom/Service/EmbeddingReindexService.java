@@ -0,0 +1,213 @@
+package com.diplom.diplom.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import com.diplom.diplom.Entity.Book;
+import com.diplom.diplom.Repository.BookRepository;
+import com.diplom.diplom.Repository.BookVectorRepository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Полная перегенерация векторов каталога. В модель уходят только книги без
+ * вектора или с изменившимся content_hash, остальные пропускаются по хэшу,
+ * поэтому повторный прогон по неизменному каталогу почти бесплатен. Книги
+ * читаются keyset-страницами по id, каждая страница — одна пачка для
+ * BookEmbeddingService.embed. Пачки
+ * считаются параллельно на parallelism потоках; читатель ждёт свободного
+ * потока, поэтому в памяти не больше parallelism страниц. После каждой пачки
+ * слушатель получает контрольную точку — наибольший id, до которого все пачки
+ * завершены, — и прерванный прогон продолжается с неё. Списки похожих книг
+ * по ходу прогона не обновляются — их один раз перестраивает задача
+ * SIMILAR_BOOKS_REBUILD после завершения.
+ */
+@Service
+@Slf4j
+public class EmbeddingReindexService {
+
+    private final BookRepository bookRepository;
+    private final BookEmbeddingService bookEmbeddingService;
+    private final EmbeddingOutboxService embeddingOutboxService;
+    private final BookVectorRepository bookVectorRepository;
+
+    private final int batchSize;
+    private final int parallelism;
+    private final ExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public EmbeddingReindexService(
+            BookRepository bookRepository,
+            BookEmbeddingService bookEmbeddingService,
+            EmbeddingOutboxService embeddingOutboxService,
+            BookVectorRepository bookVectorRepository,
+            @Value("${app.embedding.reindex.batch-size:64}") int batchSize,
+            @Value("${app.embedding.reindex.parallelism:4}") int parallelism) {
+        this.bookRepository = bookRepository;
+        this.bookEmbeddingService = bookEmbeddingService;
+        this.embeddingOutboxService = embeddingOutboxService;
+        this.bookVectorRepository = bookVectorRepository;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "embedding-reindex-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Получает прогресс прогона. Вызовы batchCompleted сериализованы.
+     */
+    public interface Listener {
+
+        /**
+         * @param checkpointId все книги с id <= checkpointId обработаны
+         * @param processed    книг пачки с новыми векторами
+         * @param failed       книг пачки, переданных в embedding_outbox
+         */
+        void batchCompleted(long checkpointId, int processed, int failed);
+
+        boolean isCancelled();
+    }
+
+    /**
+     * @param lastBookId наибольший id последней завершённой контрольной точки
+     * @param embedded   книг, для которых вектор пересчитан за этот запуск
+     * @param cancelled  прогон остановлен по запросу, векторы удалённых книг не чистились
+     */
+    public record Result(long lastBookId, long embedded, boolean cancelled) {
+    }
+
+    /**
+     * @param afterId продолжить с книг, у которых id больше этого; 0 — с начала
+     */
+    public Result reindex(long afterId, Listener listener) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Перегенерация векторов уже выполняется");
+        }
+        try {
+            return run(afterId, listener);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Result run(long afterId, Listener listener) {
+        log.info("Перегенерация векторов: старт с id > {}", afterId);
+
+        Progress progress = new Progress(afterId, listener);
+        Semaphore freeWorkers = new Semaphore(parallelism);
+        AtomicReference<RuntimeException> fatal = new AtomicReference<>();
+
+        long lastReadId = afterId;
+        int sequence = 0;
+        while (fatal.get() == null && !listener.isCancelled()) {
+            List<Book> page = bookRepository.findByIdGreaterThanOrderByIdAsc(lastReadId, Limit.of(batchSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            lastReadId = page.get(page.size() - 1).getId();
+            int batchNumber = sequence++;
+            long batchLastId = lastReadId;
+
+            freeWorkers.acquireUninterruptibly();
+            executor.execute(() -> {
+                try {
+                    int embedded = embedBatch(page);
+                    int failed = embedded < 0 ? page.size() : 0;
+                    progress.complete(batchNumber, batchLastId, page.size() - failed, failed, Math.max(embedded, 0));
+                } catch (RuntimeException e) {
+                    fatal.compareAndSet(null, e);
+                } finally {
+                    freeWorkers.release();
+                }
+            });
+        }
+        freeWorkers.acquireUninterruptibly(parallelism);
+
+        if (fatal.get() != null) {
+            log.error("Перегенерация векторов остановлена, продолжение с id > {}", progress.checkpointId);
+            throw fatal.get();
+        }
+        if (listener.isCancelled()) {
+            log.info("Перегенерация векторов отменена на id > {}", progress.checkpointId);
+            return new Result(progress.checkpointId, progress.embeddedInRun, true);
+        }
+
+        removeOrphanVectors();
+        log.info("Перегенерация векторов завершена: {} книг за прогон, пересчитано {}",
+                progress.processedInRun, progress.embeddedInRun);
+        return new Result(progress.checkpointId, progress.embeddedInRun, false);
+    }
+
+    /**
+     * @return число пересчитанных книг или -1, если пачка отправлена в outbox из-за ошибки
+     */
+    private int embedBatch(List<Book> books) {
+        try {
+            return bookEmbeddingService.embed(books, false);
+        } catch (RuntimeException e) {
+            // Outbox сам повторит их с задержкой, прогон из-за одной пачки не останавливаем
+            log.warn("Пачка книг {}..{} не обработана ({}), передаём в embedding_outbox",
+                    books.get(0).getId(), books.get(books.size() - 1).getId(), e.getMessage());
+            embeddingOutboxService.enqueueAll(books.stream().map(Book::getId).toList());
+            return -1;
+        }
+    }
+
+    /**
+     * Векторы книг, удалённых после прошлого прогона. Вместо TRUNCATE в начале,
+     * чтобы похожие книги продолжали работать во время перегенерации.
+     */
+    private void removeOrphanVectors() {
+        log.info("Удалено векторов удалённых книг: {}", bookVectorRepository.deleteOrphans());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Пачки завершаются не по порядку, а контрольная точка должна быть
+     * непрерывной: сдвигаем её только по подряд завершённым номерам пачек.
+     */
+    private static final class Progress {
+        private final Listener listener;
+        private final Map<Integer, Long> completed = new HashMap<>();
+        private long checkpointId;
+        private int nextBatch;
+        private long processedInRun;
+        private long embeddedInRun;
+
+        private Progress(long checkpointId, Listener listener) {
+            this.checkpointId = checkpointId;
+            this.listener = listener;
+        }
+
+        private synchronized void complete(int batchNumber, long lastId, int processed, int failed, int embedded) {
+            processedInRun += processed + failed;
+            embeddedInRun += embedded;
+            completed.put(batchNumber, lastId);
+            while (completed.containsKey(nextBatch)) {
+                checkpointId = completed.remove(nextBatch);
+                nextBatch++;
+            }
+            listener.batchCompleted(checkpointId, processed, failed);
+        }
+    }
+}
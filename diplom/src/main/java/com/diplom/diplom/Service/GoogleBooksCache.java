@@ -0,0 +1,167 @@
+package com.diplom.diplom.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.diplom.diplom.Entity.DTO.BookReadDTO;
+import com.diplom.diplom.Entity.GoogleBooksCacheEntry;
+import com.diplom.diplom.Repository.GoogleBooksCacheRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Кэш уже сконвертированных ответов Google Books по ключу
+ * "поле|нормализованный запрос|startIndex". Первый уровень — Caffeine
+ * (W-TinyLFU, ограничение по размеру и TTL), пустые ответы хранятся с
+ * отдельным коротким TTL. Второй уровень — таблица google_books_cache,
+ * включается app.google-books.cache.persistent. Ошибки API не кэшируются.
+ */
+@Component
+@Slf4j
+public class GoogleBooksCache {
+
+    private static final TypeReference<List<BookReadDTO>> PAYLOAD_TYPE = new TypeReference<>() {
+    };
+
+    private final GoogleBooksCacheRepository repository;
+    private final ObjectMapper objectMapper;
+    private final Counter persistentHits;
+    private final Cache<String, Cached> cache;
+
+    private final Duration ttl;
+    private final Duration negativeTtl;
+    private final boolean persistent;
+
+    public GoogleBooksCache(
+            GoogleBooksCacheRepository repository,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.google-books.cache.max-size:10000}") long maxSize,
+            @Value("${app.google-books.cache.ttl:PT24H}") Duration ttl,
+            @Value("${app.google-books.cache.negative-ttl:PT10M}") Duration negativeTtl,
+            @Value("${app.google-books.cache.persistent:false}") boolean persistent) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.persistent = persistent;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.creating((String key, Cached value) -> value.remainingTtl()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "googleBooks");
+        this.persistentHits = Counter.builder("bookshelf.google.cache.persistent.hits")
+                .description("Ответы Google Books, поднятые из таблицы google_books_cache")
+                .register(meterRegistry);
+    }
+
+    public static String key(String field, String query, int startIndex) {
+        String normalizedQuery = query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return field + "|" + normalizedQuery + "|" + startIndex;
+    }
+
+    /**
+     * Запись вместе со сроком жизни: запись из google_books_cache живёт в
+     * памяти столько, сколько ей осталось в таблице, а не полный TTL заново.
+     */
+    private record Cached(List<BookReadDTO> books, LocalDateTime expiresAt) {
+
+        Duration remainingTtl() {
+            Duration remaining = Duration.between(LocalDateTime.now(), expiresAt);
+            return remaining.isNegative() ? Duration.ZERO : remaining;
+        }
+    }
+
+    /**
+     * Возвращает закэшированный результат или вызывает loader. Загрузка идёт
+     * вне Caffeine: loader ходит в сеть с повторами, а вычисление внутри
+     * cache.get держало бы блокировку сегмента всё это время. Одновременные
+     * промахи по одному запросу сводит к одному HTTP-вызову GoogleBooksClient.
+     */
+    public List<BookReadDTO> get(String key, Supplier<List<BookReadDTO>> loader) {
+        Cached cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached.books();
+        }
+        Cached loaded = loadPersistent(key).orElseGet(() -> {
+            List<BookReadDTO> books = List.copyOf(loader.get());
+            Cached fresh = new Cached(books, LocalDateTime.now().plus(books.isEmpty() ? negativeTtl : ttl));
+            storePersistent(key, fresh);
+            return fresh;
+        });
+        cache.put(key, loaded);
+        return loaded.books();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void purgeExpired() {
+        if (persistent) {
+            int removed = repository.deleteExpired(LocalDateTime.now());
+            log.info("Из google_books_cache удалено просроченных записей: {}", removed);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+        if (persistent) {
+            repository.deleteAllInBatch();
+        }
+    }
+
+    private Optional<Cached> loadPersistent(String key) {
+        if (!persistent) {
+            return Optional.empty();
+        }
+        Optional<GoogleBooksCacheEntry> entry = repository.findById(key);
+        if (entry.isEmpty()) {
+            return Optional.empty();
+        }
+        if (entry.get().getExpiresAt().isBefore(LocalDateTime.now())) {
+            repository.deleteById(key);
+            return Optional.empty();
+        }
+        try {
+            List<BookReadDTO> books = objectMapper.readValue(entry.get().getPayload(), PAYLOAD_TYPE);
+            persistentHits.increment();
+            return Optional.of(new Cached(List.copyOf(books), entry.get().getExpiresAt()));
+        } catch (JsonProcessingException e) {
+            log.warn("Повреждённая запись кэша Google Books '{}': {}", key, e.getMessage());
+            repository.deleteById(key);
+            return Optional.empty();
+        }
+    }
+
+    private void storePersistent(String key, Cached cached) {
+        if (!persistent) {
+            return;
+        }
+        try {
+            repository.save(new GoogleBooksCacheEntry(key, objectMapper.writeValueAsString(cached.books()),
+                    cached.expiresAt()));
+        } catch (JsonProcessingException | RuntimeException e) {
+            // Второй уровень — только оптимизация, ответ пользователю от него не зависит
+            log.warn("Не удалось сохранить ответ Google Books в google_books_cache: {}", e.getMessage());
+        }
+    }
+}
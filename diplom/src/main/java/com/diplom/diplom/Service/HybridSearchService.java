@@ -0,0 +1,161 @@
+package com.diplom.diplom.Service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import com.diplom.diplom.Entity.Book;
+import com.diplom.diplom.Entity.DTO.BookReadDTO;
+import com.diplom.diplom.Entity.DTO.SemanticSearchFilter;
+import com.diplom.diplom.Exception.ApiIntegrationException;
+import com.diplom.diplom.Repository.BookRepository;
+import com.diplom.diplom.Repository.BookVectorRepository;
+import com.diplom.diplom.Repository.UserBookRepository;
+import com.diplom.diplom.Search.RankFusion;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Гибридный поиск: полнотекстовый (или in-memory) и семантический поиск
+ * выполняются параллельно, их ранжирования сливаются через reciprocal rank
+ * fusion. Время ответа — максимум из двух, а не сумма. Если один из
+ * ретриверов упал (например, Ollama недоступна), ответ строится по второму.
+ * Оба ретривера видят одни и те же книги: общие и личные копии пользователя.
+ * <p>
+ * Каждый ретривер отдаёт offset + size лучших кандидатов (не больше
+ * max-depth), слитый список режется на страницу. totalElements — число
+ * различных кандидатов, то есть нижняя граница.
+ */
+@Service
+@Slf4j
+public class HybridSearchService {
+
+    private final BookService bookService;
+    private final BookRepository bookRepository;
+    private final UserBookRepository userBookRepository;
+
+    private final int rrfK;
+    private final int maxDepth;
+    private final ExecutorService executor;
+
+    public HybridSearchService(
+            BookService bookService,
+            BookRepository bookRepository,
+            UserBookRepository userBookRepository,
+            @Value("${app.search.hybrid.rrf-k:60}") int rrfK,
+            @Value("${app.search.hybrid.max-depth:200}") int maxDepth,
+            @Value("${app.search.hybrid.threads:8}") int threads) {
+        this.bookService = bookService;
+        this.bookRepository = bookRepository;
+        this.userBookRepository = userBookRepository;
+        this.rrfK = rrfK;
+        this.maxDepth = maxDepth;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "hybrid-search-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Page<BookReadDTO> search(String query, int page, int size) {
+        PageRequest pageRequest = PageRequest.of(page, size);
+        if (query == null || query.trim().isEmpty()) {
+            return Page.empty(pageRequest);
+        }
+        String trimmed = query.trim();
+        long offset = pageRequest.getOffset();
+        if (offset >= maxDepth) {
+            return new PageImpl<>(List.of(), pageRequest, 0);
+        }
+        int depth = (int) Math.min(maxDepth, offset + size);
+        // SecurityContext привязан к потоку запроса, поэтому пользователь определяется до разветвления
+        Long userId = bookService.currentUserIdOrNull();
+
+        CompletableFuture<List<Long>> lexical = CompletableFuture.supplyAsync(
+                () -> visibleOnly(bookService.searchBookIds(trimmed, PageRequest.of(0, depth)).ids(), userId),
+                executor);
+        CompletableFuture<List<Long>> semantic = CompletableFuture.supplyAsync(
+                () -> bookService.semanticSearchHits(trimmed, SemanticSearchFilter.builder().build(), userId, 0, depth)
+                        .stream()
+                        .map(BookVectorRepository.Hit::bookId)
+                        .toList(),
+                executor);
+
+        List<Long> lexicalIds = await(lexical, "полнотекстовый");
+        List<Long> semanticIds = await(semantic, "семантический");
+        if (lexicalIds == null && semanticIds == null) {
+            throw new ApiIntegrationException("Ошибка гибридного поиска: оба поиска завершились с ошибкой",
+                    lexical.handle((ids, e) -> e).join());
+        }
+
+        List<Long> fused = RankFusion.fuse(rrfK,
+                lexicalIds != null ? lexicalIds : List.of(),
+                semanticIds != null ? semanticIds : List.of());
+        List<Long> pageIds = fused.stream().skip(offset).limit(size).toList();
+        if (pageIds.isEmpty()) {
+            return new PageImpl<>(List.of(), pageRequest, fused.size());
+        }
+
+        Map<Long, Book> books = bookRepository.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        Set<Long> addedBookIds = userId != null
+                ? userBookRepository.findBookIdsByUser(userId, pageIds)
+                : Collections.emptySet();
+
+        List<BookReadDTO> content = pageIds.stream()
+                .map(books::get)
+                .filter(Objects::nonNull)
+                .map(book -> {
+                    BookReadDTO dto = BookReadDTO.toShortDTO(book);
+                    dto.setIsAdded(addedBookIds.contains(book.getId()));
+                    return dto;
+                })
+                .toList();
+        return new PageImpl<>(content, pageRequest, fused.size());
+    }
+
+    /**
+     * Полнотекстовый поиск владельца не учитывает, а семантический ищет только
+     * среди видимых пользователю книг: без фильтра в выдачу попадали бы чужие
+     * личные копии, а ретриверы ранжировали бы разные множества.
+     */
+    private List<Long> visibleOnly(List<Long> ids, Long userId) {
+        if (ids.isEmpty()) {
+            return ids;
+        }
+        Set<Long> visible = bookRepository.findVisibleIds(ids, userId);
+        return ids.stream().filter(visible::contains).toList();
+    }
+
+    private List<Long> await(CompletableFuture<List<Long>> future, String retriever) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            log.warn("Гибридный поиск: {} поиск завершился с ошибкой, используется только второй: {}",
+                    retriever, e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
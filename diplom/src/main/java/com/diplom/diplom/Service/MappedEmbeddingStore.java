@@ -0,0 +1,198 @@
+package com.diplom.diplom.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Дисковый уровень кэша эмбеддингов: файл из записей фиксированного размера
+ * (32 байта SHA-256 ключа + dimensions float), целиком отображённый в память.
+ * Индекс ключ -> слот строится при открытии сканированием файла. Когда файл
+ * заполнен, новые записи по кругу перезаписывают самые старые. Размерность
+ * берётся из первого записанного вектора; файл другой размерности или
+ * ёмкости пересоздаётся.
+ */
+@Slf4j
+final class MappedEmbeddingStore implements Closeable {
+
+    private static final int MAGIC = 0x454D4243;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int KEY_BYTES = 32;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int DIMENSIONS_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 12;
+    private static final int NEXT_SLOT_OFFSET = 16;
+
+    private final Path path;
+    private final int capacity;
+    private final Map<String, Integer> index = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int dimensions;
+    private int recordBytes;
+    private long nextSlot;
+
+    MappedEmbeddingStore(Path path, int capacity) throws IOException {
+        this.path = path;
+        this.capacity = capacity;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        int storedDimensions = readCompatibleDimensions();
+        if (storedDimensions > 0) {
+            open(storedDimensions);
+            log.info("Кэш эмбеддингов {} открыт: {} векторов размерности {}", path, index.size(), dimensions);
+        }
+    }
+
+    float[] get(String key) {
+        lock.readLock().lock();
+        try {
+            Integer slot = index.get(key);
+            if (slot == null) {
+                return null;
+            }
+            float[] vector = new float[dimensions];
+            buffer.duplicate().position(offset(slot) + KEY_BYTES).asFloatBuffer().get(vector);
+            return vector;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void put(String key, float[] vector) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (buffer == null) {
+                open(vector.length);
+            }
+            if (vector.length != dimensions || index.containsKey(key)) {
+                return;
+            }
+            int slot = (int) (nextSlot % capacity);
+            int offset = offset(slot);
+
+            byte[] evicted = new byte[KEY_BYTES];
+            buffer.get(offset, evicted);
+            if (!isEmpty(evicted)) {
+                index.remove(HexFormat.of().formatHex(evicted));
+            }
+            // Сначала обнуляем ключ: оборванная запись после сбоя будет просто пустым слотом
+            buffer.put(offset, new byte[KEY_BYTES]);
+            buffer.duplicate().position(offset + KEY_BYTES).asFloatBuffer().put(vector);
+            buffer.put(offset, HexFormat.of().parseHex(key));
+
+            nextSlot++;
+            buffer.putLong(NEXT_SLOT_OFFSET, nextSlot);
+            index.put(key, slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (buffer != null) {
+                buffer.force();
+                channel.close();
+                buffer = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return размерность из заголовка существующего файла или 0, если файла
+     *         нет или он записан в другом формате (тогда он удаляется)
+     */
+    private int readCompatibleDimensions() throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (FileChannel existing = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            if (existing.read(header, 0) == HEADER_BYTES
+                    && header.getInt(MAGIC_OFFSET) == MAGIC
+                    && header.getInt(VERSION_OFFSET) == VERSION
+                    && header.getInt(CAPACITY_OFFSET) == capacity
+                    && header.getInt(DIMENSIONS_OFFSET) > 0) {
+                return header.getInt(DIMENSIONS_OFFSET);
+            }
+        }
+        log.info("Файл кэша эмбеддингов {} другого формата или ёмкости, создаётся заново", path);
+        Files.delete(path);
+        return 0;
+    }
+
+    private void open(int dimensions) throws IOException {
+        long size = HEADER_BYTES + (long) capacity * (KEY_BYTES + dimensions * Float.BYTES);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Кэш эмбеддингов на " + capacity + " векторов размерности "
+                    + dimensions + " не помещается в один отображаемый файл");
+        }
+        this.dimensions = dimensions;
+        this.recordBytes = KEY_BYTES + dimensions * Float.BYTES;
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+            buffer.putInt(MAGIC_OFFSET, MAGIC);
+            buffer.putInt(VERSION_OFFSET, VERSION);
+            buffer.putInt(DIMENSIONS_OFFSET, dimensions);
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            buffer.putLong(NEXT_SLOT_OFFSET, 0);
+        }
+        this.nextSlot = buffer.getLong(NEXT_SLOT_OFFSET);
+
+        byte[] key = new byte[KEY_BYTES];
+        for (int slot = 0; slot < capacity; slot++) {
+            buffer.get(offset(slot), key);
+            if (!isEmpty(key)) {
+                index.put(HexFormat.of().formatHex(key), slot);
+            }
+        }
+    }
+
+    private int offset(int slot) {
+        return HEADER_BYTES + slot * recordBytes;
+    }
+
+    private static boolean isEmpty(byte[] key) {
+        for (byte b : key) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
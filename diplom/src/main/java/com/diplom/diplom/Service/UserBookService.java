@@ -1,9 +1,12 @@
 package com.diplom.diplom.Service;
 
+import java.util.Set;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
@@ -12,16 +15,19 @@ import com.diplom.diplom.Entity.Status;
 import com.diplom.diplom.Entity.User;
 import com.diplom.diplom.Entity.UserBook;
 import com.diplom.diplom.Entity.DTO.BookReadDTO;
+import com.diplom.diplom.Entity.DTO.CursorPageDTO;
 import com.diplom.diplom.Entity.DTO.UserBookCreateDTO;
 import com.diplom.diplom.Entity.DTO.UserBookReadDTO;
 import com.diplom.diplom.Entity.DTO.UserBookUpdateDTO;
 import com.diplom.diplom.Entity.DTO.UserReadDTO;
 import com.diplom.diplom.Exception.AccessDeniedException;
+import com.diplom.diplom.Exception.BadRequestException;
 import com.diplom.diplom.Exception.DuplicateResourceException;
 import com.diplom.diplom.Exception.ResourceNotFoundException;
 import com.diplom.diplom.Repository.BookRepository;
 import com.diplom.diplom.Repository.UserBookRepository;
 import com.diplom.diplom.Repository.UserRepository;
+import com.diplom.diplom.Search.BookSuggestIndex;
 import com.diplom.diplom.Specification.UserBookSpecification;
 
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -36,6 +42,9 @@ public class UserBookService {
     private final UserBookRepository userBookRepository;
     private final UserRepository userRepository;
     private final BookRepository bookRepository;
+    private final BookSuggestIndex bookSuggestIndex;
+
+    private static final Set<String> KEYSET_SORT_FIELDS = Set.of("id", "progress", "currentPage");
 
     /**
      * Добавить книгу на полку ТЕКУЩЕГО пользователя, сразу указав статус.
@@ -59,7 +68,9 @@ public class UserBookService {
                 .status(dto.getStatus()) // Дефолтный статус
                 .build();
 
-        return map(userBookRepository.save(userBook));
+        UserBook savedUserBook = userBookRepository.save(userBook);
+        bookSuggestIndex.changePopularity(book.getId(), 1);
+        return map(savedUserBook);
     }
 
     /**
@@ -102,19 +113,61 @@ public class UserBookService {
             String sort,
             String direction
     ) {
-        User currentUser = userRepository.findByUsername(currentUsername)
-                .orElseThrow(() -> new IllegalArgumentException("Пользователь не найден: " + currentUsername));
-
         Sort sorting = Sort.by(Sort.Direction.fromString(direction), sort);
         Pageable pageable = PageRequest.of(page, size, sorting);
 
         // Собираем спецификацию: Юзер + Статус + Тег
-        Specification<UserBook> spec = UserBookSpecification.hasUser(currentUser)
+        Specification<UserBook> spec = UserBookSpecification.hasUsername(currentUsername)
                 .and(UserBookSpecification.hasStatus(status))
                 .and(UserBookSpecification.hasTag(tag));
 
+        // Страница (с книгами) + count + один batch-запрос тегов
+        return userBookRepository.findAll(spec, pageable).map(UserBookReadDTO::toShelfDTO);
+    }
+
+    /**
+     * Курсорная (keyset) версия getMyShelf для бесконечной прокрутки.
+     * Сортировать можно только по полям, которые заполняются при создании записи
+     * и не бывают null, иначе keyset-условие теряет строки.
+     */
+    @Transactional
+    public CursorPageDTO<UserBookReadDTO> getMyShelfByCursor(
+            String currentUsername,
+            String cursor,
+            int size,
+            Status status,
+            String tag,
+            String sort,
+            String direction,
+            boolean withTotal
+    ) {
+        if (!KEYSET_SORT_FIELDS.contains(sort)) {
+            throw new BadRequestException("Курсорная пагинация не поддерживает сортировку по полю: " + sort);
+        }
+        Sort.Direction sortDirection = Sort.Direction.fromOptionalString(direction)
+                .orElseThrow(() -> new BadRequestException("Некорректное направление сортировки: " + direction));
+        Sort sorting = Sort.by(sortDirection, sort);
+        if (!"id".equals(sort)) {
+            sorting = sorting.and(Sort.by(sortDirection, "id"));
+        }
+        Sort finalSorting = sorting;
+
+        Specification<UserBook> spec = UserBookSpecification.hasUsername(currentUsername)
+                .and(UserBookSpecification.hasStatus(status))
+                .and(UserBookSpecification.hasTag(tag));
 
-        return userBookRepository.findAll(spec, pageable).map(this::map);
+        Window<UserBook> window = userBookRepository.findBy(spec, query -> query
+                .project("book")
+                .sortBy(finalSorting)
+                .limit(size)
+                .scroll(CursorCodec.decode(cursor, finalSorting)));
+
+        return CursorPageDTO.<UserBookReadDTO>builder()
+                .content(window.map(UserBookReadDTO::toShelfDTO).getContent())
+                .hasNext(window.hasNext())
+                .nextCursor(window.hasNext() ? CursorCodec.encode(window.positionAt(window.size() - 1), finalSorting) : null)
+                .totalElements(withTotal ? userBookRepository.count(spec) : null)
+                .build();
     }
 
     public UserBookReadDTO map(UserBook userBook) {
@@ -122,6 +175,7 @@ public class UserBookService {
                 .id(userBook.getId())
                 .book(BookReadDTO.toDTO(userBook.getBook()))
                 .user(UserReadDTO.toDTO(userBook.getUser()))
+                .userId(userBook.getUser().getId())
                 .progress(userBook.getProgress())
                 .currentPage(userBook.getCurrentPage())
                 .status(userBook.getStatus())
@@ -147,6 +201,7 @@ public class UserBookService {
         }
 
         userBookRepository.deleteById(userBookId);
+        bookSuggestIndex.changePopularity(userBook.getBook().getId(), -1);
     }
 
     @Transactional
@@ -154,6 +209,6 @@ public class UserBookService {
         User currentUser = userRepository.findByUsername(currentUsername)
                 .orElseThrow(() -> new IllegalArgumentException("Пользователь не найден: " + currentUsername));
         return userBookRepository.findByUserAndStatus(currentUser, status, PageRequest.of(page, size))
-                .map(this::map);
+                .map(UserBookReadDTO::toShelfDTO);
     }
 }
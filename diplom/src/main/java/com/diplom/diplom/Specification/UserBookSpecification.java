@@ -15,6 +15,15 @@ public class UserBookSpecification {
                 criteriaBuilder.equal(root.get("user"), user);
     }
 
+    /**
+     * Фильтр по имени пользователя через join, чтобы не загружать User
+     * отдельным запросом перед выборкой полки.
+     */
+    public static Specification<UserBook> hasUsername(String username) {
+        return (root, query, criteriaBuilder) ->
+                criteriaBuilder.equal(root.join("user").get("username"), username);
+    }
+
     public static Specification<UserBook> hasStatus(Status status) {
         return (root, query, criteriaBuilder) -> {
             if (status == null) return null;
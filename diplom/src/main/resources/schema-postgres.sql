@@ -0,0 +1,44 @@
+-- Индексы для поиска по каталогу (BookRepository.fullTextSearch).
+-- Скрипт выполняется при каждом старте, поэтому все операции идемпотентны.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- tsvector поддерживается самим Postgres при INSERT/UPDATE (generated column),
+-- Hibernate эту колонку не видит и не трогает.
+ALTER TABLE books ADD COLUMN IF NOT EXISTS search_vector tsvector
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('russian'::regconfig, coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('simple'::regconfig, coalesce(title, '')), 'A') ||
+        setweight(to_tsvector('russian'::regconfig, coalesce(author, '')), 'B') ||
+        setweight(to_tsvector('simple'::regconfig, coalesce(author, '')), 'B') ||
+        setweight(to_tsvector('simple'::regconfig, coalesce(isbn, '')), 'A')
+    ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_books_search_vector ON books USING GIN (search_vector);
+
+-- Триграммы для запросов с опечатками
+CREATE INDEX IF NOT EXISTS idx_books_title_trgm ON books USING GIN (lower(title) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_books_author_trgm ON books USING GIN (lower(author) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_books_isbn ON books (isbn);
+
+-- Фрагменты текста книг для поиска по содержимому (BookPassageRepository).
+-- Размерность вектора должна совпадать с моделью эмбеддингов (spring.ai.vectorstore.pgvector.dimensions).
+CREATE EXTENSION IF NOT EXISTS vector;
+
+CREATE TABLE IF NOT EXISTS book_passages (
+    id bigserial PRIMARY KEY,
+    book_id bigint NOT NULL REFERENCES books (id) ON DELETE CASCADE,
+    ordinal integer NOT NULL,
+    start_offset integer NOT NULL,
+    end_offset integer NOT NULL,
+    content_hash char(64) NOT NULL,
+    text text NOT NULL,
+    embedding vector(768) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_book_passages_book ON book_passages (book_id, ordinal);
+CREATE INDEX IF NOT EXISTS idx_book_passages_embedding ON book_passages USING hnsw (embedding vector_cosine_ops);
+
+-- Hibernate создаёт CHECK по значениям enum только при создании таблицы и при ddl-auto=update
+-- его не обновляет: без этого новые типы фоновых задач (PASSAGE_INDEX) не вставляются в старую базу.
+ALTER TABLE background_jobs DROP CONSTRAINT IF EXISTS background_jobs_type_check;
@@ -0,0 +1,99 @@
+package com.diplom.diplom.Client;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import com.diplom.diplom.Service.EmbeddingCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CachingEmbeddingModelTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sendsOnlyMissesAndDeduplicatesBatch() throws IOException {
+        RecordingModel model = new RecordingModel();
+        CachingEmbeddingModel cached = new CachingEmbeddingModel(model, cache(1000, 100));
+
+        cached.embed("фэнтези");
+        List<float[]> vectors = cached.embed(List.of("фэнтези", "детектив", "детектив"));
+
+        assertEquals(List.of(List.of("фэнтези"), List.of("детектив")), model.requests);
+        assertArrayEquals(RecordingModel.vector("фэнтези"), vectors.get(0));
+        assertArrayEquals(RecordingModel.vector("детектив"), vectors.get(1));
+        assertArrayEquals(RecordingModel.vector("детектив"), vectors.get(2));
+    }
+
+    @Test
+    void documentAndQueryWithSameTextShareEntry() throws IOException {
+        RecordingModel model = new RecordingModel();
+        CachingEmbeddingModel cached = new CachingEmbeddingModel(model, cache(1000, 100));
+
+        cached.embed(new Document("Название: Дюна."));
+        cached.embed("Название: Дюна.");
+
+        assertEquals(1, model.requests.size());
+    }
+
+    @Test
+    void diskTierSurvivesRestartAndEvictsOldest() throws IOException {
+        EmbeddingCache first = cache(1, 2);
+        new CachingEmbeddingModel(new RecordingModel(), first).embed(List.of("a", "b", "c"));
+        first.close();
+
+        RecordingModel model = new RecordingModel();
+        EmbeddingCache reopened = cache(1, 2);
+        CachingEmbeddingModel cached = new CachingEmbeddingModel(model, reopened);
+        assertArrayEquals(RecordingModel.vector("b"), cached.embed("b"));
+        assertArrayEquals(RecordingModel.vector("c"), cached.embed("c"));
+        assertEquals(List.of(), model.requests);
+
+        cached.embed("a");
+        assertEquals(List.of(List.of("a")), model.requests);
+        reopened.close();
+    }
+
+    private EmbeddingCache cache(long memoryEntries, int diskEntries) throws IOException {
+        return new EmbeddingCache(new SimpleMeterRegistry(), "test-model", memoryEntries, true,
+                dir.resolve("embeddings.bin"), diskEntries);
+    }
+
+    private static final class RecordingModel implements EmbeddingModel {
+
+        private final List<List<String>> requests = new ArrayList<>();
+
+        static float[] vector(String text) {
+            return new float[] { text.length(), text.hashCode(), 1f };
+        }
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            requests.add(request.getInstructions());
+            List<Embedding> embeddings = new ArrayList<>();
+            for (int i = 0; i < request.getInstructions().size(); i++) {
+                embeddings.add(new Embedding(vector(request.getInstructions().get(i)), i));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.diplom.diplom.Client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import com.diplom.diplom.Exception.ApiIntegrationException;
+import com.diplom.diplom.Metrics.OutboundCallMetrics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Клиент проверяется на локальном HttpServer, который имитирует ответы Google Books.
+ */
+class GoogleBooksClientTests {
+
+    private static final String ONE_BOOK = "{\"totalItems\":1,\"items\":[{\"id\":\"abc\"}]}";
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final AtomicInteger hits = new AtomicInteger();
+    private volatile HttpHandler handler;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/volumes", exchange -> {
+            hits.incrementAndGet();
+            handler.handle(exchange);
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void retriesServerErrorsAndReturnsBody() {
+        AtomicInteger calls = new AtomicInteger();
+        handler = exchange -> respond(exchange, calls.incrementAndGet() == 1 ? 503 : 200, ONE_BOOK);
+
+        GoogleBooksVolumes response = client(Duration.ofSeconds(2), 4, 3).searchVolumes("война и мир", 0, 40);
+
+        assertEquals(2, hits.get());
+        assertEquals(1, response.items().size());
+    }
+
+    @Test
+    void retriesTooManyRequestsAfterRetryAfter() {
+        AtomicInteger calls = new AtomicInteger();
+        handler = exchange -> {
+            if (calls.incrementAndGet() == 1) {
+                exchange.getResponseHeaders().add("Retry-After", "0");
+                respond(exchange, 429, "{}");
+            } else {
+                respond(exchange, 200, ONE_BOOK);
+            }
+        };
+
+        client(Duration.ofSeconds(2), 4, 3).searchVolumes("isbn:9785170906307", 0, 40);
+
+        assertEquals(2, hits.get());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        handler = exchange -> respond(exchange, 500, "{}");
+
+        assertThrows(ApiIntegrationException.class,
+                () -> client(Duration.ofSeconds(2), 4, 3).searchVolumes("толстой", 0, 40));
+        assertEquals(3, hits.get());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        handler = exchange -> respond(exchange, 400, "{\"error\":\"bad request\"}");
+
+        assertThrows(ApiIntegrationException.class,
+                () -> client(Duration.ofSeconds(2), 4, 3).searchVolumes("толстой", 0, 40));
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    void slowResponseHitsReadTimeout() {
+        handler = exchange -> {
+            sleep(1_000);
+            respond(exchange, 200, ONE_BOOK);
+        };
+
+        long start = System.nanoTime();
+        assertThrows(ApiIntegrationException.class,
+                () -> client(Duration.ofMillis(200), 4, 1).searchVolumes("толстой", 0, 40));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    @Test
+    void identicalInFlightRequestsShareOneCall() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        handler = exchange -> {
+            await(release);
+            respond(exchange, 200, ONE_BOOK);
+        };
+        GoogleBooksClient client = client(Duration.ofSeconds(5), 8, 1);
+
+        ExecutorService callers = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<GoogleBooksVolumes>> results = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                results.add(callers.submit(() -> client.searchVolumes("мастер и маргарита", 0, 40)));
+            }
+            // даём всем вызовам встать в ожидание первого
+            Thread.sleep(300);
+            release.countDown();
+            for (Future<GoogleBooksVolumes> result : results) {
+                assertEquals(1, result.get(5, TimeUnit.SECONDS).items().size());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    void concurrentRequestsAreBounded() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        handler = exchange -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            sleep(100);
+            active.decrementAndGet();
+            respond(exchange, 200, ONE_BOOK);
+        };
+        GoogleBooksClient client = client(Duration.ofSeconds(5), 2, 1);
+
+        ExecutorService callers = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<GoogleBooksVolumes>> results = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                String query = "запрос " + i;
+                results.add(callers.submit(() -> client.searchVolumes(query, 0, 40)));
+            }
+            for (Future<GoogleBooksVolumes> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(6, hits.get());
+        assertTrue(maxActive.get() <= 2, "одновременно выполнялось " + maxActive.get());
+    }
+
+    private GoogleBooksClient client(Duration readTimeout, int maxConcurrent, int maxAttempts) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory(Map.of("meterRegistry", new SimpleMeterRegistry()));
+        return new GoogleBooksClient(
+                new OutboundCallMetrics(beans.getBeanProvider(MeterRegistry.class)),
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/volumes",
+                "test-key",
+                Duration.ofSeconds(1),
+                readTimeout,
+                maxConcurrent,
+                Duration.ofSeconds(5),
+                maxAttempts,
+                Duration.ofMillis(10),
+                Duration.ofMillis(50));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
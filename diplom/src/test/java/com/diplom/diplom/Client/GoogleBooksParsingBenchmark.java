@@ -0,0 +1,104 @@
+package com.diplom.diplom.Client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Сравнение разбора ответа volumes: прежний путь (весь JSON в Map и обход с
+ * приведениями типов) против потокового GoogleBooksResponseParser.
+ * Ответ на 40 книг лежит в src/test/resources/google-books.
+ *
+ * Запуск (gc.alloc.rate.norm — байт на операцию):
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.diplom.diplom.Client.GoogleBooksParsingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GoogleBooksParsingBenchmark {
+
+    private static final TypeReference<Map<String, Object>> JSON_OBJECT = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] response;
+
+    @Setup
+    public void loadResponse() throws IOException {
+        try (InputStream in = GoogleBooksParsingBenchmark.class.getResourceAsStream("/google-books/volumes-ru.json")) {
+            response = in.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public List<GoogleBooksVolumes.Volume> mapTree() throws IOException {
+        return fromMap(objectMapper.readValue(response, JSON_OBJECT));
+    }
+
+    @Benchmark
+    public List<GoogleBooksVolumes.Volume> streaming() throws IOException {
+        return GoogleBooksResponseParser.parse(response).items();
+    }
+
+    /**
+     * Тот же обход, что был в BookService.convertGoogleBookToDTO до перехода на записи.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<GoogleBooksVolumes.Volume> fromMap(Map<String, Object> body) {
+        List<GoogleBooksVolumes.Volume> volumes = new ArrayList<>();
+        List<Map<String, Object>> items = (List<Map<String, Object>>) body.get("items");
+        for (Map<String, Object> item : items) {
+            Map<String, Object> volumeInfo = (Map<String, Object>) item.get("volumeInfo");
+            List<Map<String, String>> identifiers = (List<Map<String, String>>) volumeInfo.get("industryIdentifiers");
+            Map<String, String> imageLinks = (Map<String, String>) volumeInfo.get("imageLinks");
+            Object pageCount = volumeInfo.get("pageCount");
+            volumes.add(new GoogleBooksVolumes.Volume((String) item.get("id"), new GoogleBooksVolumes.VolumeInfo(
+                    (String) volumeInfo.get("title"),
+                    (List<String>) volumeInfo.get("authors"),
+                    (String) volumeInfo.get("description"),
+                    (List<String>) volumeInfo.get("categories"),
+                    pageCount != null ? ((Number) pageCount).intValue() : null,
+                    (String) volumeInfo.get("publishedDate"),
+                    identifiers == null ? null : identifiers.stream()
+                            .map(id -> new GoogleBooksVolumes.IndustryIdentifier(id.get("type"), id.get("identifier")))
+                            .toList(),
+                    imageLinks == null ? null
+                            : new GoogleBooksVolumes.ImageLinks(imageLinks.get("smallThumbnail"),
+                                    imageLinks.get("thumbnail")))));
+        }
+        return volumes;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(GoogleBooksParsingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,59 @@
+package com.diplom.diplom.Client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class GoogleBooksResponseParserTests {
+
+    @Test
+    void parsesRecordedResponse() throws IOException {
+        GoogleBooksVolumes volumes;
+        try (InputStream in = getClass().getResourceAsStream("/google-books/volumes-ru.json")) {
+            volumes = GoogleBooksResponseParser.parse(in);
+        }
+
+        assertEquals(1874, volumes.totalItems());
+        assertEquals(40, volumes.items().size());
+        GoogleBooksVolumes.VolumeInfo first = volumes.items().get(0).volumeInfo();
+        assertEquals("Война и мир", first.title());
+        assertEquals(13, first.preferredIsbn().length());
+    }
+
+    @Test
+    void prefersIsbn13AndSkipsUnexpectedTypes() throws IOException {
+        String json = """
+                {"items":[{"id":"x","volumeInfo":{
+                  "title":"Идиот",
+                  "pageCount":"много",
+                  "authors":[{"name":"не строка"},"Фёдор Достоевский"],
+                  "industryIdentifiers":[
+                    {"type":"ISBN_10","identifier":"5170906301"},
+                    {"type":"ISBN_13","identifier":"9785170906307"}],
+                  "imageLinks":{"thumbnail":"http://example.org/c.jpg"},
+                  "unknown":{"deep":[1,2,{"a":null}]}}}]}
+                """;
+
+        GoogleBooksVolumes.VolumeInfo info = GoogleBooksResponseParser
+                .parse(json.getBytes(StandardCharsets.UTF_8)).items().get(0).volumeInfo();
+
+        assertEquals("9785170906307", info.preferredIsbn());
+        assertNull(info.pageCount());
+        assertEquals(List.of("Фёдор Достоевский"), info.authors());
+        assertEquals("http://example.org/c.jpg", info.imageLinks().thumbnail());
+    }
+
+    @Test
+    void responseWithoutItemsIsEmpty() throws IOException {
+        GoogleBooksVolumes volumes = GoogleBooksResponseParser
+                .parse("{\"kind\":\"books#volumes\",\"totalItems\":0}".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(0, volumes.items().size());
+    }
+}
@@ -0,0 +1,184 @@
+package com.diplom.diplom.Job;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import com.diplom.diplom.Entity.BackgroundJob;
+import com.diplom.diplom.Entity.JobStatus;
+import com.diplom.diplom.Entity.JobType;
+import com.diplom.diplom.Repository.BackgroundJobRepository;
+import com.diplom.diplom.Service.BackgroundJobService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Жизненный цикл фоновой задачи на H2: продолжение с контрольной точки,
+ * отмена, ошибка обработчика и повторная постановка задачи на весь каталог. JobRunner создаётся в тесте со своим
+ * обработчиком; свой JobRunner приложения опрашивает таблицу раз в час и не мешает.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:jobs;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "app.jobs.poll-interval=PT1H"
+})
+@ActiveProfiles("h2")
+class JobRunnerTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Autowired
+    private BackgroundJobService backgroundJobService;
+
+    @Autowired
+    private BackgroundJobRepository backgroundJobRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private JobRunner runner;
+
+    @AfterEach
+    void tearDown() {
+        if (runner != null) {
+            runner.shutdown();
+        }
+    }
+
+    @Test
+    void staleRunningJobIsRequeuedAndResumedFromCheckpoint() throws InterruptedException {
+        LocalDateTime longAgo = LocalDateTime.now().minusMinutes(5);
+        BackgroundJob stale = backgroundJobRepository.save(BackgroundJob.builder()
+                .type(JobType.SEARCH_REINDEX)
+                .status(JobStatus.RUNNING)
+                .checkpoint("42")
+                .total(50L)
+                .processed(42)
+                .createdAt(longAgo)
+                .startedAt(longAgo)
+                .updatedAt(longAgo)
+                .build());
+
+        AtomicReference<String> seenCheckpoint = new AtomicReference<>();
+        runner = runner(context -> {
+            seenCheckpoint.set(context.checkpoint());
+            context.setTotalIfUnknown(1000);
+            context.progress(8, 0, "50");
+            return "готово";
+        });
+        runner.poll();
+
+        BackgroundJob job = awaitFinished(stale.getId());
+        assertEquals("42", seenCheckpoint.get());
+        assertEquals(JobStatus.SUCCEEDED, job.getStatus());
+        assertEquals("50", job.getCheckpoint());
+        assertEquals(50, job.getProcessed());
+        assertEquals(50L, job.getTotal());
+        assertEquals(42, job.getProcessedAtRunStart());
+    }
+
+    @Test
+    void cancellationStopsRunningHandler() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger steps = new AtomicInteger();
+        runner = runner(context -> {
+            long deadline = System.nanoTime() + TIMEOUT.toNanos();
+            while (!context.isCancelled() && System.nanoTime() < deadline) {
+                context.progress(1, 0, String.valueOf(steps.incrementAndGet()));
+                started.countDown();
+                sleep(10);
+            }
+            return "остановлено на шаге " + steps.get();
+        });
+        BackgroundJob submitted = runner.submit(JobType.SEARCH_REINDEX, null);
+        assertTrue(started.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+
+        backgroundJobService.cancel(submitted.getId());
+
+        BackgroundJob job = awaitFinished(submitted.getId());
+        assertEquals(JobStatus.CANCELLED, job.getStatus());
+        assertEquals("остановлено на шаге " + steps.get(), job.getMessage());
+        assertEquals(steps.get(), job.getProcessed());
+    }
+
+    @Test
+    void handlerFailureMarksJobFailed() throws InterruptedException {
+        runner = runner(context -> {
+            context.progress(3, 1, "3");
+            throw new IllegalStateException("индекс недоступен");
+        });
+        BackgroundJob submitted = runner.submit(JobType.SEARCH_REINDEX, null);
+
+        BackgroundJob job = awaitFinished(submitted.getId());
+        assertEquals(JobStatus.FAILED, job.getStatus());
+        assertEquals("IllegalStateException: индекс недоступен", job.getMessage());
+        assertEquals("3", job.getCheckpoint());
+        assertEquals(1, job.getFailed());
+        assertNotNull(job.getFinishedAt());
+    }
+
+    @Test
+    void catalogWideJobIsNotQueuedTwiceAndQueuedJobIsCancelledAtOnce() {
+        BackgroundJob first = backgroundJobService.submit(JobType.SIMILAR_BOOKS_REBUILD, null);
+        assertEquals(first.getId(), backgroundJobService.submit(JobType.SIMILAR_BOOKS_REBUILD, null).getId());
+
+        BackgroundJob cancelled = backgroundJobService.cancel(first.getId());
+        assertEquals(JobStatus.CANCELLED, cancelled.getStatus());
+        assertNotNull(cancelled.getFinishedAt());
+        assertThrows(IllegalStateException.class, () -> backgroundJobService.cancel(first.getId()));
+
+        BackgroundJob next = backgroundJobService.submit(JobType.SIMILAR_BOOKS_REBUILD, null);
+        assertNotEquals(first.getId(), next.getId());
+        backgroundJobService.cancel(next.getId());
+    }
+
+    private JobRunner runner(Function<JobContext, String> body) {
+        JobHandler handler = new JobHandler() {
+            @Override
+            public JobType type() {
+                return JobType.SEARCH_REINDEX;
+            }
+
+            @Override
+            public String run(JobContext context) {
+                return body.apply(context);
+            }
+        };
+        return new JobRunner(backgroundJobService, objectMapper, List.of(handler), 1, Duration.ofSeconds(1));
+    }
+
+    private BackgroundJob awaitFinished(Long id) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            BackgroundJob job = backgroundJobService.get(id);
+            if (job.getFinishedAt() != null) {
+                return job;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Задача #" + id + " не завершилась за " + TIMEOUT);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
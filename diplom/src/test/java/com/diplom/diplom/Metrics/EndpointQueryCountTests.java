@@ -0,0 +1,186 @@
+package com.diplom.diplom.Metrics;
+
+import static com.diplom.diplom.Metrics.QueryCountAssert.assertMaxQueries;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.diplom.diplom.Entity.Book;
+import com.diplom.diplom.Entity.BookNeighbour;
+import com.diplom.diplom.Entity.Status;
+import com.diplom.diplom.Entity.Tag;
+import com.diplom.diplom.Entity.User;
+import com.diplom.diplom.Entity.UserBook;
+import com.diplom.diplom.Repository.BookNeighbourRepository;
+import com.diplom.diplom.Repository.BookRepository;
+import com.diplom.diplom.Repository.TagRepository;
+import com.diplom.diplom.Repository.UserBookRepository;
+import com.diplom.diplom.Repository.UserRepository;
+
+/**
+ * Регрессионные проверки числа SQL на запрос для основных эндпоинтов.
+ * Если лимит превышен — скорее всего, вернулся N+1.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+@WithMockUser(username = "admin2")
+class EndpointQueryCountTests {
+
+    private static final int SHELF_SIZE = 10;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserBookRepository userBookRepository;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private BookNeighbourRepository bookNeighbourRepository;
+
+    private Long bookId;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        if (userBookRepository.count() == 0) {
+            transactionTemplate.executeWithoutResult(status -> createShelf());
+        }
+        bookId = bookRepository.findAll().get(0).getId();
+    }
+
+    private void createShelf() {
+        User user = userRepository.findByUsername("admin2").orElseThrow();
+        Tag tag = new Tag();
+        tag.setName("на-отпуск");
+        tag.setUser(user);
+        tag = tagRepository.save(tag);
+
+        for (int i = 0; i < SHELF_SIZE; i++) {
+            Book book = bookRepository.save(Book.builder()
+                    .title("Книга " + i)
+                    .author("Автор " + i)
+                    .genres(List.of("Роман"))
+                    .build());
+            UserBook userBook = UserBook.builder()
+                    .user(user)
+                    .book(book)
+                    .progress(0)
+                    .currentPage(0)
+                    .status(Status.READING)
+                    .tags(new java.util.ArrayList<>(List.of(tag)))
+                    .build();
+            userBookRepository.save(userBook);
+        }
+
+        List<Book> books = bookRepository.findAll();
+        for (int i = 1; i <= 3; i++) {
+            bookNeighbourRepository.save(BookNeighbour.builder()
+                    .bookId(books.get(0).getId())
+                    .neighbourId(books.get(i).getId())
+                    .position(i - 1)
+                    .score(1.0 - i / 10.0)
+                    .build());
+        }
+    }
+
+    @Test
+    void catalogPageIsPageQueryPlusCount() throws Throwable {
+        assertMaxQueries(2, "GET /api/v1/books", () -> mockMvc.perform(get("/api/v1/books"))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    void catalogCursorPageIsSingleQuery() throws Throwable {
+        assertMaxQueries(1, "GET /api/v1/books?cursor=", () -> mockMvc.perform(get("/api/v1/books").param("cursor", ""))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    void bookDetailsDoNotDependOnShelfSize() throws Throwable {
+        assertMaxQueries(6, "GET /api/v1/books/{id}", () -> mockMvc.perform(get("/api/v1/books/" + bookId))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    void suggestDoesNotTouchDatabase() throws Throwable {
+        assertMaxQueries(0, "GET /api/v1/books/suggest", () -> mockMvc.perform(get("/api/v1/books/suggest")
+                .param("query", "кни"))
+                .andExpect(status().isOk()));
+    }
+
+    @Test
+    void shelfPageIsPagePlusCountPlusTags() throws Throwable {
+        assertMaxQueries(3, "GET /api/v1/shelf", () -> mockMvc.perform(get("/api/v1/shelf"))
+                .andExpect(status().isOk()));
+    }
+
+    /**
+     * scroll() не применяет fetch-граф для project("book"), поэтому книги окна
+     * догружаются отдельным пакетным запросом: окно + книги + теги.
+     */
+    @Test
+    void shelfCursorPageIsWindowPlusBooksPlusTags() throws Throwable {
+        assertMaxQueries(3, "GET /api/v1/shelf?cursor=", () -> mockMvc.perform(get("/api/v1/shelf").param("cursor", ""))
+                .andExpect(status().isOk()));
+    }
+
+    /**
+     * Первый запрос — книга, её соседи, карточки соседей; дальше ответ из кэша.
+     */
+    @Test
+    void similarBooksAreServedFromNeighbourTableAndCache() throws Throwable {
+        assertMaxQueries(3, "GET /api/v1/books/{id}/similar", () -> mockMvc.perform(get("/api/v1/books/" + bookId + "/similar"))
+                .andExpect(status().isOk()));
+        assertMaxQueries(0, "GET /api/v1/books/{id}/similar (кэш)", () -> mockMvc.perform(get("/api/v1/books/" + bookId + "/similar"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3)));
+    }
+
+    @Test
+    void userTagsAreLoadedWithoutPerTagQueries() throws Throwable {
+        assertMaxQueries(3, "GET /api/v1/tags", () -> mockMvc.perform(get("/api/v1/tags"))
+                .andExpect(status().isOk()));
+    }
+
+    /**
+     * SQL считаются на уровне DataSource: запросы JdbcTemplate (pgvector, куски
+     * текста, фрагменты) тоже попадают в статистику.
+     */
+    @Test
+    void jdbcTemplateStatementsAreCounted() {
+        QueryStatistics.Snapshot start = QueryStatistics.snapshot();
+        jdbcTemplate.queryForObject("SELECT count(*) FROM books", Long.class);
+        jdbcTemplate.batchUpdate("UPDATE books SET title = title WHERE id = ?", List.of(new Object[] { bookId },
+                new Object[] { bookId }));
+        assertEquals(2, QueryStatistics.snapshot().since(start).statements());
+    }
+}
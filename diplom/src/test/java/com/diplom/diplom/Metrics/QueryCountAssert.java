@@ -0,0 +1,26 @@
+package com.diplom.diplom.Metrics;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.function.ThrowingSupplier;
+
+/**
+ * Проверка "не больше N SQL-запросов" для участка кода, выполняемого в
+ * текущем потоке (MockMvc выполняет запрос именно в нём).
+ */
+public final class QueryCountAssert {
+
+    private QueryCountAssert() {
+    }
+
+    public static <T> T assertMaxQueries(long maxStatements, String description, ThrowingSupplier<T> action)
+            throws Throwable {
+        QueryStatistics.Snapshot start = QueryStatistics.snapshot();
+        T result = action.get();
+        QueryStatistics.Snapshot used = QueryStatistics.snapshot().since(start);
+        assertTrue(used.statements() <= maxStatements,
+                () -> description + ": ожидалось не больше " + maxStatements + " SQL, выполнено "
+                        + used.statements() + " (загружено сущностей: " + used.entitiesLoaded() + ")");
+        return result;
+    }
+}
@@ -0,0 +1,100 @@
+package com.diplom.diplom.Search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.diplom.diplom.Entity.Book;
+import com.diplom.diplom.Repository.BookRepository;
+
+class BookSearchIndexTests {
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final BookSearchIndex index = new BookSearchIndex(bookRepository);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(index, "enabled", true);
+        when(bookRepository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(List.of(
+                book(1L, "Мастер и Маргарита", "Михаил Булгаков", "Роман о дьяволе в Москве"),
+                book(2L, "Собачье сердце", "Михаил Булгаков", "Повесть"),
+                book(3L, "Москва-Петушки", "Венедикт Ерофеев", null))));
+        index.rebuild();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void ranksTitleAboveAnnotationAndRequiresAllWords() {
+        assertEquals(List.of(3L, 1L), index.search("москв", 0, 10).ids());
+        assertEquals(List.of(1L), index.search("булгаков москве", 0, 10).ids());
+        assertEquals(2, index.search("булгаков", 0, 10).total());
+        assertEquals(List.of(2L), index.search("булгаков", 1, 10).ids());
+    }
+
+    @Test
+    void matchesPrefixesAndTypos() {
+        assertEquals(List.of(1L), index.search("маргар", 0, 10).ids());
+        assertEquals(List.of(2L), index.search("сабачье", 0, 10).ids());
+    }
+
+    @Test
+    void indexAndRemoveReplaceTheDocument() {
+        index.index(book(2L, "Белая гвардия", "Михаил Булгаков", null));
+        assertEquals(List.of(), index.search("сердце", 0, 10).ids());
+        assertEquals(List.of(2L), index.search("гвардия", 0, 10).ids());
+
+        index.remove(2L);
+        assertEquals(List.of(), index.search("гвардия", 0, 10).ids());
+    }
+
+    @Test
+    void changesInsideTransactionApplyOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        index.index(book(4L, "Бег", "Михаил Булгаков", null));
+        assertEquals(List.of(), index.search("бег", 0, 10).ids());
+
+        // Откат: синхронизации отбрасываются, книга в индекс не попадает
+        TransactionSynchronizationManager.clearSynchronization();
+        assertEquals(List.of(), index.search("бег", 0, 10).ids());
+
+        TransactionSynchronizationManager.initSynchronization();
+        index.index(book(4L, "Бег", "Михаил Булгаков", null));
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(List.of(4L), index.search("бег", 0, 10).ids());
+    }
+
+    @Test
+    void changesMadeDuringRebuildSurviveTheSwap() {
+        when(bookRepository.findAll(any(Pageable.class))).thenAnswer(invocation -> {
+            index.remove(1L);
+            index.index(book(5L, "Театральный роман", "Михаил Булгаков", null));
+            return new PageImpl<>(List.of(book(1L, "Мастер и Маргарита", "Михаил Булгаков", null)));
+        });
+        index.rebuild();
+
+        assertEquals(List.of(), index.search("мастер", 0, 10).ids());
+        assertEquals(List.of(5L), index.search("театральный", 0, 10).ids());
+    }
+
+    private static Book book(Long id, String title, String author, String annotation) {
+        return Book.builder().id(id).title(title).author(author).annotation(annotation).build();
+    }
+}
@@ -0,0 +1,119 @@
+package com.diplom.diplom.Search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.diplom.diplom.Entity.Book;
+import com.diplom.diplom.Entity.DTO.BookSuggestionDTO;
+import com.diplom.diplom.Entity.User;
+import com.diplom.diplom.Repository.BookRepository;
+import com.diplom.diplom.Repository.UserBookRepository;
+
+class BookSuggestIndexTests {
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final UserBookRepository userBookRepository = mock(UserBookRepository.class);
+    private final BookSuggestIndex index = new BookSuggestIndex(bookRepository, userBookRepository);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(index, "enabled", true);
+        when(userBookRepository.countReadersByBook()).thenReturn(List.of(popularity(2L, 5)));
+    }
+
+    @Test
+    void suggestsByPrefixOfAnyWordOrderedByPopularity() {
+        catalogue(book(1L, "Война и мир", "Лев Толстой"), book(2L, "Война миров", "Герберт Уэллс"),
+                personalCopy(3L, "Война и мир"));
+        index.rebuild();
+
+        assertEquals(List.of(2L, 1L), ids(index.suggest("Вой", 10)));
+        assertEquals(List.of(1L), ids(index.suggest("толст", 10)));
+        assertEquals(List.of(2L), ids(index.suggest("миров", 10)));
+
+        index.changePopularity(1L, 10);
+        assertEquals(List.of(1L, 2L), ids(index.suggest("война", 10)));
+
+        index.remove(1L);
+        assertEquals(List.of(2L), ids(index.suggest("война", 10)));
+        assertEquals(List.of(), ids(index.suggest("толст", 10)));
+    }
+
+    @Test
+    void splitsAndMergesCompressedEdges() {
+        catalogue(book(1L, "Мир", null), book(2L, "Мирный атом", null), book(3L, "Миранда", null));
+        index.rebuild();
+
+        assertEquals(List.of(2L, 1L, 3L), ids(index.suggest("ми", 10)));
+        assertEquals(List.of(2L, 1L, 3L), ids(index.suggest("мир", 10)));
+        assertEquals(List.of(3L), ids(index.suggest("мира", 10)));
+        assertEquals(List.of(2L), ids(index.suggest("мирный ат", 10)));
+        assertEquals(List.of(), ids(index.suggest("мирт", 10)));
+
+        index.remove(3L);
+        index.remove(1L);
+        assertEquals(List.of(), ids(index.suggest("мира", 10)));
+        assertEquals(List.of(2L), ids(index.suggest("м", 10)));
+        assertEquals(List.of(2L), ids(index.suggest("мирн", 10)));
+
+        index.index(book(4L, "Мирон", null));
+        assertEquals(List.of(2L, 4L), ids(index.suggest("мир", 10)));
+        assertEquals(List.of(4L), ids(index.suggest("миро", 10)));
+    }
+
+    @Test
+    void changesMadeDuringRebuildSurviveTheSwap() {
+        // Пока перестройка читает каталог, книгу 1 удаляют, а книгу 3 добавляют
+        when(bookRepository.findAll(any(Pageable.class))).thenAnswer(invocation -> {
+            index.remove(1L);
+            index.index(book(3L, "Анна Каренина", "Лев Толстой"));
+            return new PageImpl<>(List.of(book(1L, "Война и мир", "Лев Толстой")));
+        });
+        index.rebuild();
+
+        assertEquals(List.of(), ids(index.suggest("война", 10)));
+        assertEquals(List.of(3L), ids(index.suggest("анна", 10)));
+    }
+
+    private void catalogue(Book... books) {
+        when(bookRepository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(List.of(books)));
+    }
+
+    private static Book book(Long id, String title, String author) {
+        return Book.builder().id(id).title(title).author(author).build();
+    }
+
+    private static Book personalCopy(Long id, String title) {
+        Book book = book(id, title, null);
+        book.setOwner(new User());
+        return book;
+    }
+
+    private static List<Long> ids(List<BookSuggestionDTO> suggestions) {
+        return suggestions.stream().map(BookSuggestionDTO::getId).toList();
+    }
+
+    private static UserBookRepository.BookPopularity popularity(Long bookId, long readers) {
+        return new UserBookRepository.BookPopularity() {
+            @Override
+            public Long getBookId() {
+                return bookId;
+            }
+
+            @Override
+            public Long getReaders() {
+                return readers;
+            }
+        };
+    }
+}
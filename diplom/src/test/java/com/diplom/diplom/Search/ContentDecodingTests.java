@@ -0,0 +1,62 @@
+package com.diplom.diplom.Search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class ContentDecodingTests {
+
+    private static final String RUSSIAN = "Мой дядя самых честных правил, когда не в шутку занемог";
+
+    @Test
+    void detectsCharsetByBomValidityAndLetterFrequency() {
+        assertDetected(StandardCharsets.UTF_8, 0, RUSSIAN.getBytes(StandardCharsets.UTF_8));
+        assertDetected(CharsetDetector.WINDOWS_1251, 0, RUSSIAN.getBytes(CharsetDetector.WINDOWS_1251));
+        assertDetected(CharsetDetector.KOI8_R, 0, RUSSIAN.getBytes(CharsetDetector.KOI8_R));
+        assertDetected(StandardCharsets.UTF_8, 3, ("﻿" + RUSSIAN).getBytes(StandardCharsets.UTF_8));
+        assertDetected(StandardCharsets.UTF_16LE, 2, ("﻿" + RUSSIAN).getBytes(StandardCharsets.UTF_16LE));
+
+        // Образец оборван посреди двухбайтовой буквы — всё ещё UTF-8
+        byte[] utf8 = RUSSIAN.getBytes(StandardCharsets.UTF_8);
+        assertEquals(StandardCharsets.UTF_8, CharsetDetector.detect(utf8, 3).charset());
+    }
+
+    @Test
+    void normalizesLineBreaksAndDropsControlCharactersAcrossReads() throws IOException {
+        String raw = "a\r\nb\rc\u0000d\u0007\te﻿\r";
+        // Читаем по одному символу, чтобы CRLF попадал на границу порций
+        Reader reader = new NormalizingReader(new StringReader(raw) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, 1));
+            }
+        });
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[8];
+        int read;
+        while ((read = reader.read(buffer, 0, buffer.length)) >= 0) {
+            text.append(buffer, 0, read);
+        }
+        assertEquals("a\nb\ncd\te\n", text.toString());
+    }
+
+    @Test
+    void skipCountsNormalizedCharacters() throws IOException {
+        Reader reader = new NormalizingReader(new StringReader("a\r\n\u0000b\r\nc"));
+        assertEquals(3, reader.skip(3));
+        assertEquals('\n', reader.read());
+        assertEquals(1, reader.skip(10));
+        assertEquals(-1, reader.read());
+        assertEquals(0, reader.skip(10));
+    }
+
+    private static void assertDetected(Charset charset, int bomLength, byte[] bytes) {
+        assertEquals(new CharsetDetector.Detected(charset, bomLength), CharsetDetector.detect(bytes, bytes.length));
+    }
+}
@@ -0,0 +1,41 @@
+package com.diplom.diplom.Search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ContentPagerTests {
+
+    @Test
+    void pagesCoverTextWithoutGapsAndBreakAfterWhitespace() {
+        String text = "слово ".repeat(500) + "😀".repeat(300);
+        ContentPager pager = new ContentPager(100);
+        int pages = pager.pageCount(text.length());
+
+        StringBuilder joined = new StringBuilder();
+        int expectedStart = 0;
+        for (int number = 0; number < pages; number++) {
+            ContentPager.Page page = pager.page(text, number);
+            assertEquals(expectedStart, page.start());
+            assertTrue(page.end() > page.start());
+            assertFalse(Character.isLowSurrogate(text.charAt(page.start())));
+            if (page.end() < 3000) {
+                assertEquals(' ', text.charAt(page.end() - 1));
+            }
+            assertEquals(number, pager.pageOf(text, page.start()));
+            assertEquals(number, pager.pageOf(text, page.end() - 1));
+            joined.append(text, page.start(), page.end());
+            expectedStart = page.end();
+        }
+        assertEquals(text, joined.toString());
+    }
+
+    @Test
+    void emptyTextHasOneEmptyPage() {
+        ContentPager pager = new ContentPager(100);
+        assertEquals(1, pager.pageCount(0));
+        assertEquals(new ContentPager.Page(0, 0, 0), pager.page("", 0));
+    }
+}
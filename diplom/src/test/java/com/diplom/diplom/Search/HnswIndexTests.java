@@ -0,0 +1,116 @@
+package com.diplom.diplom.Search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HnswIndexTests {
+
+    private static final int DIMENSIONS = 32;
+    private static final HnswIndex.Params PARAMS = new HnswIndex.Params(DIMENSIONS, 8, 64, 0.3);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findsExactNeighboursOnSmallSet() throws IOException {
+        float[][] vectors = randomVectors(2000, new Random(1));
+        try (HnswIndex index = HnswIndex.open(dir.resolve("index.hnsw"), PARAMS)) {
+            for (int i = 0; i < vectors.length; i++) {
+                index.put(new UUID(0, i), i, null, vectors[i]);
+            }
+
+            Random random = new Random(2);
+            int found = 0;
+            for (int q = 0; q < 50; q++) {
+                float[] query = vectors[random.nextInt(vectors.length)];
+                Set<Long> expected = Set.copyOf(exactTop(vectors, query, 10));
+                found += (int) index.search(query, 10, 64).stream()
+                        .filter(result -> expected.contains(result.bookId()))
+                        .count();
+            }
+            assertTrue(found >= 0.95 * 50 * 10, "recall@10 = " + found / 500.0);
+        }
+    }
+
+    @Test
+    void keepsVectorsAndHashesAcrossReopenAndSkipsRemoved() throws IOException {
+        Path path = dir.resolve("index.hnsw");
+        float[][] vectors = randomVectors(100, new Random(3));
+        String hash = "ab".repeat(32);
+        try (HnswIndex index = HnswIndex.open(path, PARAMS)) {
+            for (int i = 0; i < vectors.length; i++) {
+                index.put(new UUID(0, i), i, i == 7 ? hash : null, vectors[i]);
+            }
+            index.removeBooks(List.of(5L));
+        }
+
+        try (HnswIndex index = HnswIndex.open(path, PARAMS)) {
+            assertEquals(99, index.size());
+            assertEquals(Map.of(7L, Set.of(hash), 8L, Set.of("")), index.contentHashes(List.of(5L, 7L, 8L)));
+            assertTrue(index.vector(5L).isEmpty());
+            assertEquals(7L, index.search(vectors[7], 1, 16).get(0).bookId());
+            assertTrue(index.search(vectors[5], 10, 16).stream().noneMatch(result -> result.bookId() == 5L));
+        }
+    }
+
+    @Test
+    void rebuildsWhenTooManyNodesAreDeleted() throws IOException {
+        Path path = dir.resolve("index.hnsw");
+        float[][] vectors = randomVectors(100, new Random(4));
+        try (HnswIndex index = HnswIndex.open(path, PARAMS)) {
+            for (int i = 0; i < vectors.length; i++) {
+                index.put(new UUID(0, i), i, null, vectors[i]);
+            }
+            index.removeBooks(IntStream.range(0, 50).mapToObj(Long::valueOf).toList());
+        }
+
+        try (HnswIndex index = HnswIndex.open(path, PARAMS)) {
+            assertEquals(50, index.size());
+            assertEquals(60L, index.search(vectors[60], 1, 16).get(0).bookId());
+        }
+    }
+
+    private static float[][] randomVectors(int count, Random random) {
+        float[][] vectors = new float[count][DIMENSIONS];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+
+    private static List<Long> exactTop(float[][] vectors, float[] query, int k) {
+        return IntStream.range(0, vectors.length)
+                .boxed()
+                .sorted(Comparator.comparingDouble(i -> -cosine(vectors[i], query)))
+                .limit(k)
+                .map(Long::valueOf)
+                .toList();
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+}
@@ -0,0 +1,228 @@
+package com.diplom.diplom.Search;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Полнота и задержка HnswIndex против pgvector на одних и тех же векторах.
+ * Точный ответ (top-k полным перебором) считается в Java, полнота — доля
+ * совпавших с ним книг среди k найденных. Запросы — случайные сохранённые
+ * векторы с небольшим шумом.
+ *
+ * Без аргументов векторы синтетические (кластеры в 768 измерениях), сравнение
+ * только HNSW с перебором. С аргументами jdbcUrl user password векторы берутся
+ * из vector_store, и тот же набор запросов выполняется в pgvector с разными
+ * hnsw.ef_search.
+ *
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.diplom.diplom.Search.HnswRecallBenchmark \
+ *     [jdbc:postgresql://localhost:5432/bookshelf user password]
+ */
+public class HnswRecallBenchmark {
+
+    private static final int K = 10;
+    private static final int QUERIES = 200;
+    private static final int[] EF_SEARCH = {10, 20, 40, 80, 160};
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(42);
+        List<float[]> vectors;
+        if (args.length >= 3) {
+            vectors = loadVectors(args[0], args[1], args[2]);
+        } else {
+            vectors = syntheticVectors(20_000, 768, 200, random);
+        }
+        System.out.printf("Векторов: %d, размерность: %d%n", vectors.size(), vectors.get(0).length);
+
+        List<float[]> queries = new ArrayList<>(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            float[] base = vectors.get(random.nextInt(vectors.size()));
+            float[] query = new float[base.length];
+            for (int d = 0; d < base.length; d++) {
+                query[d] = base[d] + (float) (random.nextGaussian() * 0.01);
+            }
+            queries.add(query);
+        }
+        List<Set<Integer>> exact = queries.stream().map(query -> exactTop(vectors, query)).toList();
+
+        Path file = Files.createTempFile("hnsw-benchmark", ".hnsw");
+        Files.delete(file);
+        try (HnswIndex index = HnswIndex.open(file, new HnswIndex.Params(vectors.get(0).length, 16, 100, 0.3))) {
+            long started = System.nanoTime();
+            for (int i = 0; i < vectors.size(); i++) {
+                index.put(new UUID(0, i), i, null, vectors.get(i));
+            }
+            System.out.printf("HNSW: построение %.1f с, файл %.1f МБ%n", (System.nanoTime() - started) / 1e9,
+                    Files.size(file) / 1024.0 / 1024.0);
+
+            for (int ef : EF_SEARCH) {
+                for (float[] query : queries) {
+                    index.search(query, K, ef);
+                }
+                long[] latencies = new long[queries.size()];
+                int found = 0;
+                for (int q = 0; q < queries.size(); q++) {
+                    long start = System.nanoTime();
+                    List<HnswIndex.Result> results = index.search(queries.get(q), K, ef);
+                    latencies[q] = System.nanoTime() - start;
+                    Set<Integer> expected = exact.get(q);
+                    found += (int) results.stream().filter(result -> expected.contains((int) result.bookId())).count();
+                }
+                report("HNSW", ef, found, latencies);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        if (args.length >= 3) {
+            benchmarkPgvector(args[0], args[1], args[2], queries, exact);
+        }
+    }
+
+    private static void benchmarkPgvector(String url, String user, String password, List<float[]> queries,
+            List<Set<Integer>> exact) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, user, password)) {
+            connection.setAutoCommit(false);
+            Map<String, Integer> positions = loadPositions(connection);
+            for (int ef : EF_SEARCH) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SET LOCAL hnsw.ef_search = " + ef);
+                }
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT id FROM vector_store ORDER BY embedding <=> ?::vector LIMIT " + K)) {
+                    for (float[] query : queries) {
+                        query(statement, query);
+                    }
+                    long[] latencies = new long[queries.size()];
+                    int found = 0;
+                    for (int q = 0; q < queries.size(); q++) {
+                        long start = System.nanoTime();
+                        List<String> result = query(statement, queries.get(q));
+                        latencies[q] = System.nanoTime() - start;
+                        for (String id : result) {
+                            if (exact.get(q).contains(positions.get(id))) {
+                                found++;
+                            }
+                        }
+                    }
+                    report("pgvector", ef, found, latencies);
+                }
+                connection.commit();
+            }
+        }
+    }
+
+    private static List<String> query(PreparedStatement statement, float[] query) throws SQLException {
+        statement.setString(1, Arrays.toString(query).replace(" ", ""));
+        List<String> ids = new ArrayList<>(K);
+        try (ResultSet rows = statement.executeQuery()) {
+            while (rows.next()) {
+                ids.add(rows.getString(1));
+            }
+        }
+        return ids;
+    }
+
+    static List<float[]> loadVectors(String url, String user, String password) throws SQLException {
+        List<float[]> vectors = new ArrayList<>();
+        try (Connection connection = DriverManager.getConnection(url, user, password);
+                Statement statement = connection.createStatement();
+                ResultSet rows = statement.executeQuery("SELECT embedding::text FROM vector_store ORDER BY id")) {
+            while (rows.next()) {
+                String literal = rows.getString(1);
+                String[] parts = literal.substring(1, literal.length() - 1).split(",");
+                float[] vector = new float[parts.length];
+                for (int i = 0; i < parts.length; i++) {
+                    vector[i] = Float.parseFloat(parts[i]);
+                }
+                vectors.add(vector);
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * id строки vector_store -> номер вектора в том же порядке, что и loadVectors.
+     */
+    static Map<String, Integer> loadPositions(Connection connection) throws SQLException {
+        Map<String, Integer> positions = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+                ResultSet rows = statement.executeQuery("SELECT id::text FROM vector_store ORDER BY id")) {
+            while (rows.next()) {
+                positions.put(rows.getString(1), positions.size());
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Кластеры вокруг случайных центров: на равномерном шуме в высокой размерности
+     * все точки почти равноудалены, и полнота любого индекса выглядит хуже, чем на эмбеддингах.
+     */
+    static List<float[]> syntheticVectors(int count, int dimensions, int clusters, Random random) {
+        float[][] centers = new float[clusters][dimensions];
+        for (float[] center : centers) {
+            for (int d = 0; d < dimensions; d++) {
+                center[d] = (float) random.nextGaussian();
+            }
+        }
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] center = centers[random.nextInt(clusters)];
+            float[] vector = new float[dimensions];
+            for (int d = 0; d < dimensions; d++) {
+                vector[d] = center[d] + (float) (random.nextGaussian() * 0.5);
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    private static Set<Integer> exactTop(List<float[]> vectors, float[] query) {
+        double[] scores = new double[vectors.size()];
+        for (int i = 0; i < vectors.size(); i++) {
+            scores[i] = cosine(vectors.get(i), query);
+        }
+        Integer[] order = new Integer[vectors.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+        return new HashSet<>(Arrays.asList(order).subList(0, Math.min(K, order.length)));
+    }
+
+    static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    private static void report(String name, int ef, int found, long[] latencies) {
+        Arrays.sort(latencies);
+        System.out.printf("%-8s ef_search=%-4d recall@%d=%.3f p50=%.2f мс p95=%.2f мс%n", name, ef, K,
+                found / (double) (latencies.length * K),
+                latencies[latencies.length / 2] / 1e6,
+                latencies[(int) (latencies.length * 0.95)] / 1e6);
+    }
+}
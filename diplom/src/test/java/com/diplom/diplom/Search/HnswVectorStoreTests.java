@@ -0,0 +1,93 @@
+package com.diplom.diplom.Search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+class HnswVectorStoreTests {
+
+    private static final int DIMENSIONS = 16;
+    private static final HnswIndex.Params PARAMS = new HnswIndex.Params(DIMENSIONS, 8, 64, 0.3);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void filteredSearchReturnsOnlyMatchingBooksEvenWhenTheyAreFar() throws IOException {
+        float[][] vectors = randomVectors(500, new Random(1));
+        EmbeddingModel model = mock(EmbeddingModel.class);
+        when(model.embed(anyString())).thenReturn(vectors[0]);
+        try (HnswIndex index = HnswIndex.open(dir.resolve("index.hnsw"), PARAMS)) {
+            for (int i = 0; i < vectors.length; i++) {
+                index.put(new UUID(0, i), i, null, vectors[i]);
+            }
+            HnswVectorStore store = new HnswVectorStore(model, index, 32);
+            FilterExpressionBuilder b = new FilterExpressionBuilder();
+
+            List<Document> found = store.similaritySearch(SearchRequest.builder()
+                    .query("q").topK(3)
+                    .filterExpression(b.in("book_id", 100L, 200L, 300L, 400L).build())
+                    .build());
+            assertEquals(3, found.size());
+            assertTrue(found.stream().allMatch(document ->
+                    List.of(100L, 200L, 300L, 400L).contains(document.getMetadata().get("book_id"))));
+
+            List<Document> excluded = store.similaritySearch(SearchRequest.builder()
+                    .query("q").topK(5)
+                    .filterExpression(b.not(b.eq("book_id", 0L)).build())
+                    .build());
+            assertEquals(5, excluded.size());
+            assertTrue(excluded.stream().noneMatch(document -> document.getMetadata().get("book_id").equals(0L)));
+        }
+    }
+
+    @Test
+    void deletesByBookIdFilterAndRejectsOtherKeys() throws IOException {
+        float[][] vectors = randomVectors(50, new Random(2));
+        EmbeddingModel model = mock(EmbeddingModel.class);
+        when(model.embed(anyString())).thenReturn(vectors[7]);
+        try (HnswIndex index = HnswIndex.open(dir.resolve("index.hnsw"), PARAMS)) {
+            for (int i = 0; i < vectors.length; i++) {
+                index.put(new UUID(0, i), i, null, vectors[i]);
+            }
+            HnswVectorStore store = new HnswVectorStore(model, index, 32);
+            FilterExpressionBuilder b = new FilterExpressionBuilder();
+
+            store.delete(b.or(b.eq("book_id", 7L), b.in("book_id", 8L, 9L)).build());
+            assertEquals(47, index.size());
+            store.delete("book_id == 10");
+            assertEquals(46, index.size());
+            assertTrue(store.similaritySearch(SearchRequest.builder().query("q").topK(10).build()).stream()
+                    .noneMatch(document -> List.of(7L, 8L, 9L, 10L).contains(document.getMetadata().get("book_id"))));
+
+            assertThrows(IllegalArgumentException.class, () -> store.delete(b.eq("genre", "fantasy").build()));
+            assertEquals(46, index.size());
+        }
+    }
+
+    private static float[][] randomVectors(int count, Random random) {
+        float[][] vectors = new float[count][DIMENSIONS];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] = (float) Math.abs(random.nextGaussian());
+            }
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,53 @@
+package com.diplom.diplom.Search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PassageSplitterTests {
+
+    @Test
+    void coversWholeTextWithOverlappingPassagesWithinSize() {
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 50_000) {
+            int words = 3 + random.nextInt(15);
+            for (int w = 0; w < words; w++) {
+                text.append("слово".repeat(1 + random.nextInt(3))).append(w + 1 < words ? " " : "");
+            }
+            text.append(random.nextInt(10) == 0 ? ".\n\n" : ". ");
+        }
+
+        List<PassageSplitter.Span> spans = new PassageSplitter(500, 100).split(text);
+
+        assertEquals(0, spans.get(0).start());
+        assertEquals(text.toString().stripTrailing().length(), spans.get(spans.size() - 1).end());
+        for (int i = 0; i < spans.size(); i++) {
+            PassageSplitter.Span span = spans.get(i);
+            assertEquals(i, span.ordinal());
+            assertTrue(span.end() - span.start() <= 500, "фрагмент длиннее окна: " + span);
+            assertTrue(span.end() - span.start() >= 250 || i == spans.size() - 1, "слишком короткий: " + span);
+            if (i > 0) {
+                assertTrue(span.start() <= spans.get(i - 1).end(), "пропущен текст перед " + span);
+                assertTrue(span.start() > spans.get(i - 1).start());
+                assertTrue(Character.isWhitespace(text.charAt(span.start() - 1)), "начало не на границе слова: " + span);
+            }
+        }
+    }
+
+    @Test
+    void prefersSentenceEndAndCutsWordlessTextBySize() {
+        String text = "Первое предложение. Второе предложение подлиннее";
+        List<PassageSplitter.Span> spans = new PassageSplitter(30, 5).split(text);
+        assertEquals("Первое предложение.", spans.get(0).text(text));
+
+        List<PassageSplitter.Span> solid = new PassageSplitter(10, 2).split("x".repeat(25));
+        assertEquals(List.of(new PassageSplitter.Span(0, 0, 10), new PassageSplitter.Span(1, 8, 18),
+                new PassageSplitter.Span(2, 16, 25)), solid);
+        assertEquals(List.of(), new PassageSplitter(10, 2).split("  \n "));
+    }
+}
@@ -0,0 +1,24 @@
+package com.diplom.diplom.Search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class RankFusionTests {
+
+    @Test
+    void documentFoundByBothRetrieversWinsOverSingleTopHit() {
+        List<Long> lexical = List.of(1L, 2L, 3L);
+        List<Long> semantic = List.of(4L, 3L, 5L);
+
+        assertEquals(List.of(3L, 1L, 4L, 2L, 5L), RankFusion.fuse(RankFusion.DEFAULT_K, lexical, semantic));
+    }
+
+    @Test
+    void equalScoresKeepArgumentOrder() {
+        assertEquals(List.of(1L, 2L, 3L), RankFusion.fuse(60, List.of(1L, 3L), List.of(2L)));
+        assertEquals(List.of(), RankFusion.fuse(60, List.of(), List.of()));
+    }
+}
@@ -0,0 +1,267 @@
+package com.diplom.diplom.Search;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import com.diplom.diplom.Repository.PgVectorIndex;
+import com.diplom.diplom.Repository.PgVectorIndex.Quantization;
+
+/**
+ * recall@10 против размера индекса и задержки для вариантов PgVectorIndex:
+ * halfvec, бинарное квантование, Matryoshka-усечение, с rerank по полному
+ * вектору и без. Точный ответ — полный перебор по полным векторам.
+ *
+ * Первая часть — моделирование в JVM полным перебором по сжатым векторам:
+ * показывает потерю полноты от самого сжатия, без погрешности HNSW. Без
+ * аргументов векторы синтетические, с убывающей по номеру измерения
+ * дисперсией (как у Matryoshka-эмбеддингов), поэтому цифры для усечения лишь
+ * ориентировочные — для решений нужен прогон на каталоге.
+ *
+ * С аргументами jdbcUrl user password векторы берутся из vector_store, и для
+ * каждого варианта строится индекс (CREATE INDEX IF NOT EXISTS, на большом
+ * каталоге это долго), печатаются его размер, задержка и полнота запроса в
+ * той же форме, что в PgBookVectorRepository.
+ *
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.diplom.diplom.Search.VectorQuantizationBenchmark \
+ *     [jdbc:postgresql://localhost:5432/bookshelf user password]
+ */
+public class VectorQuantizationBenchmark {
+
+    private static final int K = 10;
+    private static final int QUERIES = 200;
+    private static final int EF_SEARCH = 40;
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(42);
+        List<float[]> vectors = args.length >= 3
+                ? HnswRecallBenchmark.loadVectors(args[0], args[1], args[2])
+                : matryoshkaLike(HnswRecallBenchmark.syntheticVectors(20_000, 768, 200, random));
+        int full = vectors.get(0).length;
+        System.out.printf("Векторов: %d, размерность: %d%n", vectors.size(), full);
+
+        List<float[]> queries = new ArrayList<>(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            float[] base = vectors.get(random.nextInt(vectors.size()));
+            float[] query = new float[full];
+            for (int d = 0; d < full; d++) {
+                query[d] = base[d] + (float) (random.nextGaussian() * 0.05 * Math.abs(base[d]));
+            }
+            queries.add(query);
+        }
+        List<Object> fullVectors = new ArrayList<>(vectors);
+        List<Set<Integer>> exact = queries.stream().map(query -> top(fullVectors, query, K, null)).toList();
+
+        List<PgVectorIndex> variants = new ArrayList<>();
+        variants.add(new PgVectorIndex(Quantization.NONE, full, full, 1));
+        for (int dimensions : new int[] {full, full / 2, full / 3}) {
+            variants.add(new PgVectorIndex(Quantization.HALFVEC, dimensions, full, 4));
+            variants.add(new PgVectorIndex(Quantization.BINARY, dimensions, full, 1));
+            variants.add(new PgVectorIndex(Quantization.BINARY, dimensions, full, 4));
+            variants.add(new PgVectorIndex(Quantization.BINARY, dimensions, full, 10));
+        }
+        variants.add(new PgVectorIndex(Quantization.NONE, full / 3, full, 4));
+
+        System.out.println("Моделирование полным перебором (без погрешности HNSW):");
+        for (PgVectorIndex variant : variants) {
+            List<Object> encoded = vectors.stream().map(vector -> encode(vector, variant)).toList();
+            int found = 0;
+            for (int q = 0; q < queries.size(); q++) {
+                float[] query = queries.get(q);
+                Set<Integer> candidates = top(encoded, query, K * variant.rerankFactor(), variant);
+                Set<Integer> result = variant.rerankFactor() > 1 ? rerank(vectors, query, candidates) : candidates;
+                found += (int) result.stream().filter(exact.get(q)::contains).count();
+            }
+            System.out.printf("  %-9s d=%-4d rerank x%-3d байт/вектор=%-5d recall@%d=%.3f%n",
+                    variant.quantization(), variant.dimensions(), variant.rerankFactor(), bytes(variant), K,
+                    found / (double) (queries.size() * K));
+        }
+
+        if (args.length >= 3) {
+            benchmarkPgvector(args[0], args[1], args[2], variants, queries, exact);
+        }
+    }
+
+    private static void benchmarkPgvector(String url, String user, String password, List<PgVectorIndex> variants,
+            List<float[]> queries, List<Set<Integer>> exact) throws SQLException {
+        System.out.println("pgvector (HNSW):");
+        try (Connection connection = DriverManager.getConnection(url, user, password)) {
+            Map<String, Integer> positions = HnswRecallBenchmark.loadPositions(connection);
+            for (PgVectorIndex variant : variants) {
+                String indexName = variant.reranked() ? variant.indexName() : null;
+                if (variant.reranked()) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute(variant.createIndexSql());
+                    }
+                }
+                int candidates = K * variant.rerankFactor();
+                String sql = variant.reranked()
+                        ? """
+                                SELECT c.id FROM (SELECT v.id, v.embedding FROM vector_store v
+                                                  ORDER BY %s %s %s LIMIT %d) c
+                                ORDER BY c.embedding <=> ?::vector LIMIT %d
+                                """.formatted(variant.expression("v.embedding"), variant.operator(),
+                                variant.expression("?::vector"), candidates, K)
+                        : "SELECT id FROM vector_store ORDER BY embedding <=> ?::vector LIMIT " + K;
+                if (variant.reranked() && variant.rerankFactor() == 1) {
+                    // Без rerank порядок берётся прямо из сжатого индекса
+                    sql = "SELECT v.id FROM vector_store v ORDER BY %s %s %s LIMIT %d".formatted(
+                            variant.expression("v.embedding"), variant.operator(),
+                            variant.expression("?::vector"), K);
+                }
+
+                connection.setAutoCommit(false);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SET LOCAL hnsw.ef_search = " + Math.max(EF_SEARCH, candidates));
+                }
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    int parameters = statement.getParameterMetaData().getParameterCount();
+                    long[] latencies = new long[queries.size()];
+                    int found = 0;
+                    for (int round = 0; round < 2; round++) {
+                        for (int q = 0; q < queries.size(); q++) {
+                            String literal = Arrays.toString(queries.get(q)).replace(" ", "");
+                            for (int p = 1; p <= parameters; p++) {
+                                statement.setString(p, literal);
+                            }
+                            long start = System.nanoTime();
+                            try (ResultSet rows = statement.executeQuery()) {
+                                while (rows.next()) {
+                                    if (round == 1 && exact.get(q).contains(positions.get(rows.getString(1)))) {
+                                        found++;
+                                    }
+                                }
+                            }
+                            latencies[q] = System.nanoTime() - start;
+                        }
+                    }
+                    Arrays.sort(latencies);
+                    System.out.printf("  %-9s d=%-4d rerank x%-3d индекс=%-10s recall@%d=%.3f p50=%.2f мс p95=%.2f мс%n",
+                            variant.quantization(), variant.dimensions(), variant.rerankFactor(),
+                            indexSize(connection, indexName), K, found / (double) (queries.size() * K),
+                            latencies[latencies.length / 2] / 1e6,
+                            latencies[(int) (latencies.length * 0.95)] / 1e6);
+                }
+                connection.commit();
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Размер сжатого индекса; для полного — самого большого HNSW-индекса vector_store (его создаёт PgVectorStore).
+     */
+    private static String indexSize(Connection connection, String indexName) throws SQLException {
+        String sql = indexName != null
+                ? "SELECT pg_size_pretty(pg_relation_size('" + indexName + "'))"
+                : """
+                        SELECT pg_size_pretty(max(pg_relation_size(i.indexrelid)))
+                        FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid JOIN pg_am a ON a.oid = c.relam
+                        WHERE i.indrelid = 'vector_store'::regclass AND a.amname = 'hnsw' AND i.indexprs IS NULL
+                        """;
+        try (Statement statement = connection.createStatement(); ResultSet rows = statement.executeQuery(sql)) {
+            return rows.next() ? rows.getString(1) : "-";
+        }
+    }
+
+    /**
+     * Ближайшие по представлению из индекса; variant == null — по полному вектору.
+     *
+     * @param encoded векторы, уже переведённые в представление variant
+     */
+    private static Set<Integer> top(List<Object> encoded, float[] query, int k, PgVectorIndex variant) {
+        Object encodedQuery = encode(query, variant);
+        double[] distances = new double[encoded.size()];
+        for (int i = 0; i < encoded.size(); i++) {
+            distances[i] = distance(encoded.get(i), encodedQuery);
+        }
+        return IntStream.range(0, encoded.size())
+                .boxed()
+                .sorted(Comparator.comparingDouble(i -> distances[i]))
+                .limit(k)
+                .collect(HashSet::new, Set::add, Set::addAll);
+    }
+
+    private static Set<Integer> rerank(List<float[]> vectors, float[] query, Set<Integer> candidates) {
+        return candidates.stream()
+                .sorted(Comparator.comparingDouble(i -> -HnswRecallBenchmark.cosine(vectors.get(i), query)))
+                .limit(K)
+                .collect(HashSet::new, Set::add, Set::addAll);
+    }
+
+    private static Object encode(float[] vector, PgVectorIndex variant) {
+        if (variant == null) {
+            return vector;
+        }
+        float[] reduced = Arrays.copyOf(vector, variant.dimensions());
+        return switch (variant.quantization()) {
+            case NONE -> reduced;
+            case HALFVEC -> {
+                for (int d = 0; d < reduced.length; d++) {
+                    reduced[d] = toHalfPrecision(reduced[d]);
+                }
+                yield reduced;
+            }
+            case BINARY -> {
+                long[] bits = new long[(reduced.length + 63) / 64];
+                for (int d = 0; d < reduced.length; d++) {
+                    if (reduced[d] > 0) {
+                        bits[d / 64] |= 1L << (d % 64);
+                    }
+                }
+                yield bits;
+            }
+        };
+    }
+
+    private static double distance(Object a, Object b) {
+        if (a instanceof long[] bitsA) {
+            long[] bitsB = (long[]) b;
+            int hamming = 0;
+            for (int i = 0; i < bitsA.length; i++) {
+                hamming += Long.bitCount(bitsA[i] ^ bitsB[i]);
+            }
+            return hamming;
+        }
+        return 1 - HnswRecallBenchmark.cosine((float[]) a, (float[]) b);
+    }
+
+    /**
+     * Округление до 10 бит мантиссы, как у float16 (диапазон порядка у
+     * компонент эмбеддингов float16 не превышает).
+     */
+    private static float toHalfPrecision(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        return Float.intBitsToFloat((bits + 0x1000) & 0xFFFFE000);
+    }
+
+    private static int bytes(PgVectorIndex variant) {
+        return switch (variant.quantization()) {
+            case NONE -> 4 * variant.dimensions();
+            case HALFVEC -> 2 * variant.dimensions();
+            case BINARY -> (variant.dimensions() + 7) / 8;
+        };
+    }
+
+    private static List<float[]> matryoshkaLike(List<float[]> vectors) {
+        for (float[] vector : vectors) {
+            for (int d = 0; d < vector.length; d++) {
+                vector[d] /= (float) Math.sqrt(1 + d / 32.0);
+            }
+        }
+        return vectors;
+    }
+}
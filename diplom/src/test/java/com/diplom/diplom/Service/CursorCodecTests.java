@@ -0,0 +1,72 @@
+package com.diplom.diplom.Service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import com.diplom.diplom.Exception.BadRequestException;
+
+class CursorCodecTests {
+
+    private static final Sort BY_PROGRESS = Sort.by(Sort.Direction.DESC, "progress", "updatedAt", "id");
+
+    @Test
+    void roundTripKeepsKeyOrderAndValueTypes() {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("progress", 42);
+        keys.put("updatedAt", LocalDateTime.of(2025, 3, 1, 12, 30, 15));
+        keys.put("id", 7L);
+
+        KeysetScrollPosition decoded = CursorCodec.decode(CursorCodec.encode(ScrollPosition.forward(keys), BY_PROGRESS),
+                BY_PROGRESS);
+
+        assertEquals(keys, decoded.getKeys());
+        assertEquals(Integer.class, decoded.getKeys().get("progress").getClass());
+        assertEquals(Long.class, decoded.getKeys().get("id").getClass());
+    }
+
+    @Test
+    void emptyCursorStartsFromTheBeginning() {
+        assertTrue(CursorCodec.decode(null, BY_PROGRESS).isInitial());
+        assertTrue(CursorCodec.decode(" ", BY_PROGRESS).isInitial());
+    }
+
+    @Test
+    void malformedCursorIsBadRequest() {
+        String unknownType = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("id:ASC|id=X:1".getBytes(StandardCharsets.UTF_8));
+        String notANumber = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("id:ASC|id=L:abc".getBytes(StandardCharsets.UTF_8));
+        Sort byId = Sort.by("id");
+
+        assertThrows(BadRequestException.class, () -> CursorCodec.decode("не base64!", byId));
+        assertThrows(BadRequestException.class, () -> CursorCodec.decode(unknownType, byId));
+        assertThrows(BadRequestException.class, () -> CursorCodec.decode(notANumber, byId));
+    }
+
+    @Test
+    void cursorFromAnotherSortIsBadRequest() {
+        Sort byId = Sort.by("id");
+        String idCursor = CursorCodec.encode(ScrollPosition.forward(Map.of("id", 7L)), byId);
+        // Те же ключи, но подделанная сигнатура сортировки
+        String forged = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("progress:DESC,id:DESC|id=L:7".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Map.of("id", 7L), CursorCodec.decode(idCursor, byId).getKeys());
+        assertThrows(BadRequestException.class, () -> CursorCodec.decode(idCursor, BY_PROGRESS));
+        assertThrows(BadRequestException.class, () -> CursorCodec.decode(idCursor, Sort.by(Sort.Direction.DESC, "id")));
+        assertThrows(BadRequestException.class,
+                () -> CursorCodec.decode(forged, Sort.by(Sort.Direction.DESC, "progress", "id")));
+    }
+}